@@ -0,0 +1,100 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A compact, read-only snapshot of the successors (or predecessors) of
+ *  each vertex of a Graph, stored in primitive arrays.  The neighbors of
+ *  vertex V occupy target(start(V)) .. target(end(V) - 1).  The snapshot
+ *  does not track later changes to the graph.  It is intended for the
+ *  bulk algorithms in this package that would otherwise make repeated
+ *  calls on successors and unbox each vertex number.
+ *  @author Jacob Lin
+ */
+final class Adjacency {
+
+    /** A snapshot of the successors of each vertex of G, or of the
+     *  predecessors if REVERSE. */
+    Adjacency(Graph G, boolean reverse) {
+        _maxVertex = G.maxVertex();
+        _present = new boolean[_maxVertex + 1];
+        _offsets = new int[_maxVertex + 2];
+        int[] targets = new int[Math.max(16, G.vertexSize())];
+        int n;
+        n = 0;
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            _offsets[v] = n;
+            if (G.contains(v)) {
+                _present[v] = true;
+                _size += 1;
+                for (int w : reverse ? G.predecessors(v) : G.successors(v)) {
+                    if (n == targets.length) {
+                        targets = Arrays.copyOf(targets, 2 * n);
+                    }
+                    targets[n] = w;
+                    n += 1;
+                }
+            }
+        }
+        _offsets[_maxVertex + 1] = n;
+        _targets = Arrays.copyOf(targets, n);
+    }
+
+    /** A snapshot of the successors of each vertex of G. */
+    Adjacency(Graph G) {
+        this(G, false);
+    }
+
+    /** Returns the maximum vertex number of the graph at the time of the
+     *  snapshot. */
+    int maxVertex() {
+        return _maxVertex;
+    }
+
+    /** Returns the number of vertices in the snapshot. */
+    int vertexSize() {
+        return _size;
+    }
+
+    /** Returns the total number of (directed) adjacencies stored. */
+    int size() {
+        return _targets.length;
+    }
+
+    /** Returns true iff V was a vertex of the graph. */
+    boolean contains(int v) {
+        return v > 0 && v <= _maxVertex && _present[v];
+    }
+
+    /** Returns the index of the first neighbor of V. */
+    int start(int v) {
+        return _offsets[v];
+    }
+
+    /** Returns one more than the index of the last neighbor of V. */
+    int end(int v) {
+        return _offsets[v + 1];
+    }
+
+    /** Returns the number of neighbors of V. */
+    int degree(int v) {
+        return _offsets[v + 1] - _offsets[v];
+    }
+
+    /** Returns the neighbor at index K. */
+    int target(int k) {
+        return _targets[k];
+    }
+
+    /** Maximum vertex number. */
+    private final int _maxVertex;
+    /** Number of vertices. */
+    private int _size;
+    /** _present[v] is true iff V is a vertex. */
+    private final boolean[] _present;
+    /** Index into _targets of the first neighbor of each vertex. */
+    private final int[] _offsets;
+    /** Concatenated neighbor lists. */
+    private final int[] _targets;
+}
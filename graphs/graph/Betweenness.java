@@ -0,0 +1,349 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Betweenness centrality of the vertices of a graph: for each vertex v,
+ *  the sum over all pairs of other vertices (s, t) of the fraction of
+ *  shortest paths from s to t that pass through v.  For undirected
+ *  graphs, each unordered pair is counted once.  Paths are measured in
+ *  edges, or by the weights of an EdgeWeight (which must be nonnegative)
+ *  as for ShortestPaths.getWeight.
+ *
+ *  Uses Brandes' algorithm: one breadth-first search (Dijkstra's algorithm
+ *  for weighted graphs) from each source, followed by a pass back over the
+ *  vertices in order of decreasing distance to accumulate dependencies.
+ *  Sources are divided among the threads of a ForkJoin pool, each of which
+ *  keeps its own search state and accumulator, which are summed at the end.
+ *  For large graphs, the values may be estimated from a random sample of
+ *  sources.
+ *  @author Jacob Lin
+ */
+public class Betweenness {
+
+    /** Betweenness over unweighted graph G, computed on the common
+     *  ForkJoin pool. */
+    public Betweenness(Graph G) {
+        this(G, null, ForkJoinPool.commonPool());
+    }
+
+    /** Betweenness over G where each edge (u, v) has length
+     *  WEIGHTS.weight(u, v), or 1 if WEIGHTS is null, computed on POOL. */
+    public Betweenness(Graph G, EdgeWeight weights, ForkJoinPool pool) {
+        _G = new Adjacency(G);
+        _directed = G.isDirected();
+        _pool = pool;
+        if (weights == null) {
+            _length = null;
+        } else {
+            _length = new double[_G.size()];
+            Parallel.forRange(pool, 1, _G.maxVertex() + 1, GRAIN, (v) -> {
+                for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                    _length[e] = weights.weight(v, _G.target(e));
+                }
+            });
+        }
+        int[] vertices = new int[_G.vertexSize()];
+        int k;
+        k = 0;
+        for (int v = 1; v <= _G.maxVertex(); v += 1) {
+            if (_G.contains(v)) {
+                vertices[k] = v;
+                k += 1;
+            }
+        }
+        _vertices = vertices;
+    }
+
+    /** Returns an array B such that B[v] is the exact betweenness of
+     *  vertex v (0 for non-vertices). */
+    public double[] compute() {
+        return accumulate(_vertices, 1.0);
+    }
+
+    /** Returns an estimate of the betweenness of each vertex, made from K
+     *  sources chosen uniformly at random (with replacement) using SEED,
+     *  and scaled to estimate the full sum. */
+    public double[] sample(int k, long seed) {
+        if (k <= 0 || _vertices.length == 0) {
+            return new double[_G.maxVertex() + 1];
+        }
+        Random rand = new Random(seed);
+        int[] sources = new int[k];
+        for (int i = 0; i < k; i += 1) {
+            sources[i] = _vertices[rand.nextInt(_vertices.length)];
+        }
+        return accumulate(sources, (double) _vertices.length / k);
+    }
+
+    /** Returns an estimate of the betweenness of each vertex that, with
+     *  probability at least 1 - DELTA, is within EPSILON * (n - 1) * (n - 2)
+     *  of the exact value for every vertex simultaneously (n being the
+     *  number of vertices), using random seed SEED.  That is, the
+     *  normalized betweenness is within EPSILON. */
+    public double[] estimate(double epsilon, double delta, long seed) {
+        int k = sampleSize(_vertices.length, epsilon, delta);
+        if (k >= _vertices.length) {
+            return compute();
+        }
+        return sample(k, seed);
+    }
+
+    /** Returns the number of sampled sources needed so that, for a graph
+     *  of N vertices, the normalized betweenness of every vertex is
+     *  estimated within EPSILON with probability at least 1 - DELTA.  The
+     *  bound follows from Hoeffding's inequality (each source contributes
+     *  a normalized dependency in [0, 1]) and a union bound over the
+     *  vertices. */
+    public static int sampleSize(int n, double epsilon, double delta) {
+        if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("bad error bound");
+        }
+        double k = Math.log(2.0 * Math.max(n, 1) / delta)
+            / (2 * epsilon * epsilon);
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(k));
+    }
+
+    /** Returns the sum of the dependencies of all vertices on each of
+     *  SOURCES, scaled by SCALE (and halved for undirected graphs). */
+    private double[] accumulate(int[] sources, double scale) {
+        int grain = Math.max(1, sources.length
+                             / (4 * _pool.getParallelism()));
+        double[] result =
+            _pool.invoke(new SourceTask(sources, 0, sources.length, grain));
+        double factor = _directed ? scale : scale / 2;
+        for (int v = 0; v < result.length; v += 1) {
+            result[v] *= factor;
+        }
+        return result;
+    }
+
+    /** Accumulates the dependencies on a range of sources, splitting the
+     *  range among subtasks. */
+    private class SourceTask extends RecursiveTask<double[]> {
+        /** Accumulate dependencies on SOURCES[LO .. HI-1], in pieces of
+         *  at most GRAIN sources. */
+        SourceTask(int[] sources, int lo, int hi, int grain) {
+            _sources = sources;
+            _lo = lo;
+            _hi = hi;
+            _grain = grain;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (_hi - _lo > _grain) {
+                int mid = (_lo + _hi) >>> 1;
+                SourceTask left = new SourceTask(_sources, _lo, mid, _grain);
+                left.fork();
+                double[] right =
+                    new SourceTask(_sources, mid, _hi, _grain).compute();
+                double[] sum = left.join();
+                for (int v = 0; v < sum.length; v += 1) {
+                    sum[v] += right[v];
+                }
+                return sum;
+            }
+            SearchState state = new SearchState();
+            for (int i = _lo; i < _hi; i += 1) {
+                state.search(_sources[i]);
+            }
+            return state._centrality;
+        }
+
+        /** All sources. */
+        private final int[] _sources;
+        /** Range of sources handled. */
+        private final int _lo, _hi;
+        /** Maximum number of sources handled without splitting. */
+        private final int _grain;
+    }
+
+    /** The per-thread state of the searches from one or more sources, and
+     *  the accumulated dependencies. */
+    private class SearchState {
+        /** Fresh state. */
+        SearchState() {
+            int n = _G.maxVertex() + 1;
+            _centrality = new double[n];
+            _dist = new double[n];
+            _sigma = new double[n];
+            _delta = new double[n];
+            _order = new int[n];
+            Arrays.fill(_dist, -1.0);
+            _heapKey = _length == null ? null : new double[_G.size() + 1];
+            _heapVal = _length == null ? null : new int[_G.size() + 1];
+        }
+
+        /** Add the dependencies of every vertex on source S to
+         *  _centrality. */
+        void search(int s) {
+            int count = _length == null ? bfs(s) : dijkstra(s);
+            for (int i = count - 1; i >= 0; i -= 1) {
+                int v = _order[i];
+                double sum;
+                sum = 0.0;
+                for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                    int w = _G.target(e);
+                    if (w != v && _dist[w] >= 0
+                        && _dist[w] == _dist[v] + length(e)) {
+                        sum += _sigma[v] / _sigma[w] * (1.0 + _delta[w]);
+                    }
+                }
+                _delta[v] = sum;
+                if (v != s) {
+                    _centrality[v] += sum;
+                }
+            }
+            for (int i = 0; i < count; i += 1) {
+                int v = _order[i];
+                _dist[v] = -1.0;
+                _sigma[v] = 0.0;
+                _delta[v] = 0.0;
+            }
+        }
+
+        /** Breadth-first search from S, setting _dist and _sigma for the
+         *  vertices reached and listing them in _order in order of
+         *  distance.  Returns the number of vertices reached. */
+        private int bfs(int s) {
+            int head = 0, tail = 0;
+            _dist[s] = 0;
+            _sigma[s] = 1;
+            _order[tail] = s;
+            tail += 1;
+            while (head < tail) {
+                int v = _order[head];
+                head += 1;
+                for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                    int w = _G.target(e);
+                    if (_dist[w] < 0) {
+                        _dist[w] = _dist[v] + 1;
+                        _order[tail] = w;
+                        tail += 1;
+                    }
+                    if (_dist[w] == _dist[v] + 1) {
+                        _sigma[w] += _sigma[v];
+                    }
+                }
+            }
+            return tail;
+        }
+
+        /** Dijkstra's algorithm from S, setting _dist and _sigma for the
+         *  vertices reached and listing them in _order in order of
+         *  distance.  Returns the number of vertices reached. */
+        private int dijkstra(int s) {
+            int settled;
+            settled = 0;
+            _heapSize = 0;
+            _dist[s] = 0;
+            _sigma[s] = 1;
+            push(0.0, s);
+            while (_heapSize > 0) {
+                double d = _heapKey[0];
+                int v = pop();
+                if (d > _dist[v] || _delta[v] != 0) {
+                    continue;
+                }
+                _delta[v] = 1;
+                _order[settled] = v;
+                settled += 1;
+                for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                    int w = _G.target(e);
+                    double dw = d + _length[e];
+                    if (_dist[w] < 0 || dw < _dist[w]) {
+                        _dist[w] = dw;
+                        _sigma[w] = _sigma[v];
+                        push(dw, w);
+                    } else if (dw == _dist[w] && _delta[w] == 0) {
+                        _sigma[w] += _sigma[v];
+                    }
+                }
+            }
+            for (int i = 0; i < settled; i += 1) {
+                _delta[_order[i]] = 0;
+            }
+            return settled;
+        }
+
+        /** Returns the length of the edge at index E of _G. */
+        private double length(int e) {
+            return _length == null ? 1.0 : _length[e];
+        }
+
+        /** Add V to the heap with key KEY. */
+        private void push(double key, int v) {
+            int i = _heapSize;
+            _heapSize += 1;
+            while (i > 0 && _heapKey[(i - 1) / 2] > key) {
+                _heapKey[i] = _heapKey[(i - 1) / 2];
+                _heapVal[i] = _heapVal[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            _heapKey[i] = key;
+            _heapVal[i] = v;
+        }
+
+        /** Remove and return the value with the smallest key. */
+        private int pop() {
+            int result = _heapVal[0];
+            _heapSize -= 1;
+            double key = _heapKey[_heapSize];
+            int v = _heapVal[_heapSize];
+            int i = 0;
+            while (2 * i + 1 < _heapSize) {
+                int c = 2 * i + 1;
+                if (c + 1 < _heapSize && _heapKey[c + 1] < _heapKey[c]) {
+                    c += 1;
+                }
+                if (_heapKey[c] >= key) {
+                    break;
+                }
+                _heapKey[i] = _heapKey[c];
+                _heapVal[i] = _heapVal[c];
+                i = c;
+            }
+            _heapKey[i] = key;
+            _heapVal[i] = v;
+            return result;
+        }
+
+        /** Accumulated dependencies. */
+        private final double[] _centrality;
+        /** Distance from the current source, or -1 if not reached. */
+        private final double[] _dist;
+        /** Number of shortest paths from the current source. */
+        private final double[] _sigma;
+        /** Dependency of the current source on each vertex.  During
+         *  dijkstra, nonzero for settled vertices. */
+        private final double[] _delta;
+        /** Vertices reached, in order of nondecreasing distance. */
+        private final int[] _order;
+        /** Keys and values of a binary heap of (distance, vertex). */
+        private final double[] _heapKey;
+        /** Values of the heap. */
+        private final int[] _heapVal;
+        /** Number of heap entries. */
+        private int _heapSize;
+    }
+
+    /** Number of vertices below which weight extraction is not split
+     *  among threads. */
+    static final int GRAIN = 4096;
+
+    /** Snapshot of the graph. */
+    private final Adjacency _G;
+    /** True iff the graph is directed. */
+    private final boolean _directed;
+    /** Pool on which searches run. */
+    private final ForkJoinPool _pool;
+    /** Length of the edge at each index of _G, or null if unweighted. */
+    private final double[] _length;
+    /** All vertices. */
+    private final int[] _vertices;
+}
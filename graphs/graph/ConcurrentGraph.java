@@ -0,0 +1,488 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToIntFunction;
+
+/** A thread-safe Graph for concurrent, write-heavy construction.  The
+ *  vertices are divided among a number of lock stripes (vertex v belongs
+ *  to stripe v mod the number of stripes), each guarded by a StampedLock.
+ *  Each vertex holds its successors (and, if directed, predecessors) in
+ *  Neighbors lists, which add and remove edges in amortized constant
+ *  time whatever the degree.  Adding or removing an edge locks only the
+ *  stripes of its two end points, acquired in increasing stripe order,
+ *  so that insertions on different vertices proceed in parallel.  Queries
+ *  use optimistic reads, falling back to a read lock only if a writer
+ *  intervenes; iterations return a consistent copy of each adjacency list
+ *  as of the call.  Removing a vertex, which may affect vertices in any
+ *  stripe, locks all stripes.
+ *
+ *  Vertex numbers are allocated atomically.  Numbers of removed vertices
+ *  are reused, smallest first, before new ones are issued, so that in the
+ *  absence of concurrent additions add() returns the smallest unused
+ *  number, as for other Graphs.  maxVertex() is the largest number ever
+ *  allocated, which may exceed the largest current vertex.
+ *  @author Jacob Lin
+ */
+public class ConcurrentGraph extends Graph {
+
+    /** An empty graph that is directed iff DIRECTED, with a number of
+     *  lock stripes suited to the available processors. */
+    public ConcurrentGraph(boolean directed) {
+        this(directed, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /** An empty graph that is directed iff DIRECTED, with at least
+     *  STRIPES lock stripes. */
+    public ConcurrentGraph(boolean directed, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("bad stripe count");
+        }
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) {
+            n *= 2;
+        }
+        _directed = directed;
+        _stripes = new StampedLock[n];
+        for (int i = 0; i < n; i += 1) {
+            _stripes[i] = new StampedLock();
+        }
+        _chunks = new AtomicReferenceArray<>(1);
+    }
+
+    @Override
+    public int vertexSize() {
+        return _vertexSize.intValue();
+    }
+
+    @Override
+    public int maxVertex() {
+        return _maxVertex.get();
+    }
+
+    @Override
+    public int edgeSize() {
+        return _edgeSize.intValue();
+    }
+
+    @Override
+    public boolean isDirected() {
+        return _directed;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return read(v, (r) -> r.live ? r.succ.size() : 0);
+    }
+
+    @Override
+    public int inDegree(int v) {
+        if (!_directed) {
+            return outDegree(v);
+        }
+        return read(v, (r) -> r.live ? r.pred.size() : 0);
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return read(u, (r) -> r.live ? 1 : 0) != 0;
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return edgeId(u, v) != 0;
+    }
+
+    @Override
+    public int add() {
+        Integer free = _freeVertices.pollFirst();
+        int v;
+        if (free != null) {
+            v = free;
+        } else {
+            v = _maxVertex.incrementAndGet();
+        }
+        StampedLock lock = stripe(v);
+        long stamp = lock.writeLock();
+        try {
+            Vertex r = vertex(v);
+            if (r == null) {
+                r = install(v);
+            }
+            r.live = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        _vertexSize.increment();
+        return v;
+    }
+
+    @Override
+    public int add(int u, int v) {
+        int i = stripeIndex(u), j = stripeIndex(v);
+        long s1 = _stripes[Math.min(i, j)].writeLock();
+        long s2 = i == j ? 0 : _stripes[Math.max(i, j)].writeLock();
+        try {
+            Vertex ru = vertex(u), rv = vertex(v);
+            if (ru == null || !ru.live || rv == null || !rv.live) {
+                throw new IllegalArgumentException("vertex not from Graph");
+            }
+            int k = ru.succ.find(v);
+            if (k >= 0) {
+                return ru.succ.id(k);
+            }
+            int id = newEdgeId();
+            ru.succ.add(v, id);
+            if (_directed) {
+                rv.pred.add(u, 0);
+            } else if (u != v) {
+                rv.succ.add(u, id);
+            }
+            _edgeSize.increment();
+            return id;
+        } finally {
+            if (i != j) {
+                _stripes[Math.max(i, j)].unlockWrite(s2);
+            }
+            _stripes[Math.min(i, j)].unlockWrite(s1);
+        }
+    }
+
+    @Override
+    public void remove(int v) {
+        long[] stamps = new long[_stripes.length];
+        for (int i = 0; i < _stripes.length; i += 1) {
+            stamps[i] = _stripes[i].writeLock();
+        }
+        boolean removed;
+        try {
+            Vertex r = vertex(v);
+            removed = r != null && r.live;
+            if (removed) {
+                for (int k = 0; k < r.succ.size(); k += 1) {
+                    int w = r.succ.vertex(k);
+                    _freeIds.add(r.succ.id(k));
+                    _edgeSize.decrement();
+                    if (w != v) {
+                        if (_directed) {
+                            vertex(w).pred.remove(v);
+                        } else {
+                            vertex(w).succ.remove(v);
+                        }
+                    }
+                }
+                for (int k = 0; _directed && k < r.pred.size(); k += 1) {
+                    int u = r.pred.vertex(k);
+                    if (u != v) {
+                        _freeIds.add(vertex(u).succ.remove(v));
+                        _edgeSize.decrement();
+                    }
+                }
+                r.clear();
+            }
+        } finally {
+            for (int i = _stripes.length - 1; i >= 0; i -= 1) {
+                _stripes[i].unlockWrite(stamps[i]);
+            }
+        }
+        if (removed) {
+            _vertexSize.decrement();
+            _freeVertices.add(v);
+        }
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        int i = stripeIndex(u), j = stripeIndex(v);
+        long s1 = _stripes[Math.min(i, j)].writeLock();
+        long s2 = i == j ? 0 : _stripes[Math.max(i, j)].writeLock();
+        try {
+            Vertex ru = vertex(u), rv = vertex(v);
+            if (ru == null || !ru.live || rv == null || !rv.live
+                || ru.succ.find(v) < 0) {
+                return;
+            }
+            _freeIds.add(ru.succ.remove(v));
+            if (_directed) {
+                rv.pred.remove(u);
+            } else if (u != v) {
+                rv.succ.remove(u);
+            }
+            _edgeSize.decrement();
+        } finally {
+            if (i != j) {
+                _stripes[Math.max(i, j)].unlockWrite(s2);
+            }
+            _stripes[Math.min(i, j)].unlockWrite(s1);
+        }
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        int max = maxVertex();
+        return new Iteration<Integer>() {
+            @Override
+            public boolean hasNext() {
+                while (_next <= max && !contains(_next)) {
+                    _next += 1;
+                }
+                return _next <= max;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _next += 1;
+                return _next - 1;
+            }
+
+            /** Next vertex number to examine. */
+            private int _next = 1;
+        };
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        return new IntIteration(adjacent(v, false));
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        return new IntIteration(adjacent(v, _directed));
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        int max = maxVertex();
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (true) {
+                    while (_k < _succ.length) {
+                        if (_directed || _u <= _succ[_k]) {
+                            return true;
+                        }
+                        _k += 1;
+                    }
+                    if (_u >= max) {
+                        return false;
+                    }
+                    _u += 1;
+                    _succ = adjacent(_u, false);
+                    _k = 0;
+                }
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _k += 1;
+                return new int[] { _u, _succ[_k - 1] };
+            }
+
+            /** Current source vertex. */
+            private int _u;
+            /** Copy of the successors of _u. */
+            private int[] _succ = NO_INTS;
+            /** Index of the next successor of _u. */
+            private int _k;
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        return read(u, (r) -> {
+            if (!r.live) {
+                return 0;
+            }
+            int k = r.succ.find(v);
+            return k < 0 ? 0 : r.succ.id(k);
+        });
+    }
+
+    /** Returns QUERY applied to the record of vertex V, or 0 if V has no
+     *  record.  Reads optimistically, repeating the query under a read
+     *  lock if a writer to V's stripe intervened.  QUERY must tolerate
+     *  seeing an inconsistent record, whose result is then discarded. */
+    private int read(int v, ToIntFunction<Vertex> query) {
+        Vertex r = vertex(v);
+        if (r == null) {
+            return 0;
+        }
+        StampedLock lock = stripe(v);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int result = query.applyAsInt(r);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException excp) {
+                /* Inconsistent read: fall through. */
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return query.applyAsInt(r);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns a copy of the predecessors of V if PRED, and otherwise of
+     *  its successors.  Empty if V is not one of my vertices. */
+    private int[] adjacent(int v, boolean pred) {
+        Vertex r = vertex(v);
+        if (r == null) {
+            return NO_INTS;
+        }
+        StampedLock lock = stripe(v);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int[] result = r.copy(pred);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException excp) {
+                /* Inconsistent read: fall through. */
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return r.copy(pred);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns the index of the stripe of vertex V. */
+    private int stripeIndex(int v) {
+        return v & (_stripes.length - 1);
+    }
+
+    /** Returns the lock of the stripe of vertex V. */
+    private StampedLock stripe(int v) {
+        return _stripes[stripeIndex(v)];
+    }
+
+    /** Returns the record of vertex V, or null if none has been
+     *  created. */
+    private Vertex vertex(int v) {
+        if (v < 1) {
+            return null;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<Vertex>> chunks = _chunks;
+        int c = v >>> CHUNK_BITS;
+        if (c >= chunks.length()) {
+            return null;
+        }
+        AtomicReferenceArray<Vertex> chunk = chunks.get(c);
+        return chunk == null ? null : chunk.get(v & CHUNK_MASK);
+    }
+
+    /** Create and return a record for vertex V.  The caller must hold the
+     *  write lock of V's stripe. */
+    private Vertex install(int v) {
+        int c = v >>> CHUNK_BITS;
+        AtomicReferenceArray<Vertex> chunk;
+        synchronized (_directoryLock) {
+            AtomicReferenceArray<AtomicReferenceArray<Vertex>> chunks =
+                _chunks;
+            if (c >= chunks.length()) {
+                int n = Math.max(c + 1, 2 * chunks.length());
+                AtomicReferenceArray<AtomicReferenceArray<Vertex>> bigger =
+                    new AtomicReferenceArray<>(n);
+                for (int i = 0; i < chunks.length(); i += 1) {
+                    bigger.set(i, chunks.get(i));
+                }
+                _chunks = chunks = bigger;
+            }
+            chunk = chunks.get(c);
+            if (chunk == null) {
+                chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+                chunks.set(c, chunk);
+            }
+        }
+        Vertex r = new Vertex();
+        chunk.set(v & CHUNK_MASK, r);
+        return r;
+    }
+
+    /** Returns an unused edge identifier. */
+    private int newEdgeId() {
+        Integer id = _freeIds.poll();
+        return id != null ? id : _nextEdgeId.incrementAndGet();
+    }
+
+    /** The adjacency of one vertex, guarded by the lock of its stripe. */
+    private static final class Vertex {
+        /** Returns a copy of my predecessors if PREDECESSORS, and
+         *  otherwise of my successors. */
+        int[] copy(boolean predecessors) {
+            if (!live) {
+                return NO_INTS;
+            }
+            return (predecessors ? pred : succ).vertices(true);
+        }
+
+        /** Make me an absent vertex with no edges. */
+        void clear() {
+            live = false;
+            succ = new Neighbors(true);
+            pred = new Neighbors(false);
+        }
+
+        /** True iff I am currently a vertex. */
+        private boolean live;
+        /** Successors, with the identifiers of their edges. */
+        private Neighbors succ = new Neighbors(true);
+        /** Predecessors (directed graphs only). */
+        private Neighbors pred = new Neighbors(false);
+    }
+
+    /** Log2 of the number of vertex records per chunk. */
+    static final int CHUNK_BITS = 12;
+    /** Number of vertex records per chunk. */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /** Mask giving the index of a vertex within its chunk. */
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** An empty int array. */
+    private static final int[] NO_INTS = new int[0];
+
+    /** True iff I am directed. */
+    private final boolean _directed;
+    /** Stripe locks. */
+    private final StampedLock[] _stripes;
+    /** Chunks of vertex records, replaced only under _directoryLock. */
+    private volatile AtomicReferenceArray<AtomicReferenceArray<Vertex>>
+        _chunks;
+    /** Guards growth of _chunks and creation of chunks. */
+    private final Object _directoryLock = new Object();
+    /** Largest vertex number allocated. */
+    private final AtomicInteger _maxVertex = new AtomicInteger();
+    /** Vertex numbers available for reuse. */
+    private final ConcurrentSkipListSet<Integer> _freeVertices =
+        new ConcurrentSkipListSet<>();
+    /** Number of vertices. */
+    private final LongAdder _vertexSize = new LongAdder();
+    /** Number of edges. */
+    private final LongAdder _edgeSize = new LongAdder();
+    /** Largest edge identifier issued. */
+    private final AtomicInteger _nextEdgeId = new AtomicInteger();
+    /** Edge identifiers available for reuse. */
+    private final ConcurrentLinkedQueue<Integer> _freeIds =
+        new ConcurrentLinkedQueue<>();
+}
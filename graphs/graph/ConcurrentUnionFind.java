@@ -0,0 +1,76 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** A disjoint-sets (union-find) structure over the integers 0 .. N-1 that
+ *  may be updated and queried from many threads at once without locking.
+ *  Each set is represented by its smallest member, and roots are always
+ *  linked from a larger to a smaller index, so that concurrent unions
+ *  cannot create cycles.  Finds compress paths by halving.
+ *  @author Jacob Lin
+ */
+final class ConcurrentUnionFind {
+
+    /** N singleton sets {0}, {1}, ..., {N-1}. */
+    ConcurrentUnionFind(int n) {
+        _parent = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i += 1) {
+            _parent.set(i, i);
+        }
+    }
+
+    /** Returns the number of elements. */
+    int size() {
+        return _parent.length();
+    }
+
+    /** Returns the representative of the set containing X. */
+    int find(int x) {
+        while (true) {
+            int p = _parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int gp = _parent.get(p);
+            if (gp != p) {
+                _parent.compareAndSet(x, p, gp);
+            }
+            x = gp;
+        }
+    }
+
+    /** Returns true iff X and Y are in the same set. */
+    boolean sameSet(int x, int y) {
+        while (true) {
+            x = find(x);
+            y = find(y);
+            if (x == y) {
+                return true;
+            }
+            if (_parent.get(x) == x) {
+                return false;
+            }
+        }
+    }
+
+    /** Merge the sets containing X and Y.  Returns true iff they were
+     *  previously distinct (that is, iff this call merged them). */
+    boolean union(int x, int y) {
+        while (true) {
+            x = find(x);
+            y = find(y);
+            if (x == y) {
+                return false;
+            }
+            int hi = Math.max(x, y), lo = Math.min(x, y);
+            if (_parent.compareAndSet(hi, hi, lo)) {
+                return true;
+            }
+        }
+    }
+
+    /** Parent links.  Element I is a root iff _parent[I] == I. */
+    private final AtomicIntegerArray _parent;
+}
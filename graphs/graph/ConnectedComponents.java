@@ -0,0 +1,200 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The connected components of a graph.  For a directed graph, these are
+ *  the weakly connected components (edge directions are ignored).
+ *
+ *  The components are found by merging the end points of every edge in a
+ *  lock-free union-find structure, with the edges divided among the
+ *  threads of a ForkJoin pool.  Afterwards, further edges may be absorbed
+ *  incrementally with add(u, v), which is also safe to call from many
+ *  threads at once.  The component structure does not track changes to
+ *  the original graph; edges added to the graph must also be reported
+ *  here with add.
+ *  @author Jacob Lin
+ */
+public class ConnectedComponents {
+
+    /** The components of G, computed on the common ForkJoin pool. */
+    public ConnectedComponents(Graph G) {
+        this(G, G.maxVertex(), ForkJoinPool.commonPool());
+    }
+
+    /** The components of G, computed on POOL.  Allows for vertex numbers
+     *  up to CAPACITY (at least G.maxVertex()) in later calls on add. */
+    public ConnectedComponents(Graph G, int capacity, ForkJoinPool pool) {
+        Adjacency adj = new Adjacency(G);
+        int n = Math.max(capacity, adj.maxVertex()) + 1;
+        _sets = new ConcurrentUnionFind(n);
+        _present = new AtomicIntegerArray(n);
+        for (int v = 1; v <= adj.maxVertex(); v += 1) {
+            if (adj.contains(v)) {
+                _present.set(v, 1);
+            }
+        }
+        pool.invoke(new UnionTask(adj, 1, adj.maxVertex() + 1));
+    }
+
+    /** Returns the largest vertex number that may be used with me. */
+    public int capacity() {
+        return _sets.size() - 1;
+    }
+
+    /** Record a new edge between U and V, merging their components if
+     *  needed.  U and V are treated as vertices if they were not already.
+     *  Returns true iff two components were merged. */
+    public boolean add(int u, int v) {
+        checkVertex(u);
+        checkVertex(v);
+        boolean fresh = _present.getAndSet(u, 1) == 0;
+        fresh |= _present.getAndSet(v, 1) == 0;
+        boolean merged = _sets.union(u, v);
+        if (merged || fresh) {
+            _version.incrementAndGet();
+        }
+        return merged;
+    }
+
+    /** Returns true iff U and V are known vertices in the same component. */
+    public boolean connected(int u, int v) {
+        return isVertex(u) && isVertex(v) && _sets.sameSet(u, v);
+    }
+
+    /** Returns the number of components. */
+    public int componentCount() {
+        return labelling().count;
+    }
+
+    /** Returns the component number (from 1 to componentCount()) of V, or
+     *  0 if V is not a vertex.  Components are numbered in order of their
+     *  smallest vertex. */
+    public int component(int v) {
+        if (!isVertex(v)) {
+            return 0;
+        }
+        return labels()[v];
+    }
+
+    /** Returns an array L such that L[v] is component(v) for every
+     *  vertex number v from 0 to capacity().  The result is shared
+     *  and must not be modified. */
+    public int[] labels() {
+        return labelling().labels;
+    }
+
+    /** Returns an up-to-date Labelling, computing it if necessary. */
+    private Labelling labelling() {
+        Labelling result = _labelling;
+        if (result == null || result.version != _version.get()) {
+            synchronized (this) {
+                result = _labelling;
+                if (result == null || result.version != _version.get()) {
+                    result = computeLabelling();
+                    _labelling = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns a fresh labelling of all vertices. */
+    private Labelling computeLabelling() {
+        long version = _version.get();
+        int[] labels = new int[_sets.size()];
+        int count;
+        count = 0;
+        for (int v = 1; v < labels.length; v += 1) {
+            if (_present.get(v) != 0) {
+                int r = _sets.find(v);
+                if (r == v) {
+                    count += 1;
+                    labels[v] = count;
+                } else {
+                    labels[v] = labels[r];
+                }
+            }
+        }
+        return new Labelling(version, labels, count);
+    }
+
+    /** Returns true iff V is a known vertex. */
+    private boolean isVertex(int v) {
+        return v > 0 && v < _sets.size() && _present.get(v) != 0;
+    }
+
+    /** Throw an exception if V is not a valid vertex number for me. */
+    private void checkVertex(int v) {
+        if (v <= 0 || v >= _sets.size()) {
+            throw new IllegalArgumentException("vertex out of range");
+        }
+    }
+
+    /** Merges the end points of the edges leaving a range of vertices,
+     *  splitting the range among subtasks. */
+    private class UnionTask extends RecursiveAction {
+        /** Merge the edges of ADJ leaving vertices LO .. HI-1. */
+        UnionTask(Adjacency adj, int lo, int hi) {
+            _adj = adj;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > GRAIN
+                && _adj.end(_hi - 1) - _adj.start(_lo) > GRAIN) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new UnionTask(_adj, _lo, mid),
+                          new UnionTask(_adj, mid, _hi));
+                return;
+            }
+            for (int v = _lo; v < _hi; v += 1) {
+                for (int e = _adj.start(v); e < _adj.end(v); e += 1) {
+                    _sets.union(v, _adj.target(e));
+                }
+            }
+        }
+
+        /** The graph. */
+        private final Adjacency _adj;
+        /** Range of vertices handled. */
+        private final int _lo, _hi;
+    }
+
+    /** The component numbers of all vertices as of some version of
+     *  the component structure. */
+    private static class Labelling {
+        /** Component numbers LABELS, giving COUNT components, as of
+         *  VERSION. */
+        Labelling(long version, int[] labels, int count) {
+            this.version = version;
+            this.labels = labels;
+            this.count = count;
+        }
+
+        /** Value of _version when computed. */
+        private final long version;
+        /** Component number of each vertex. */
+        private final int[] labels;
+        /** Number of components. */
+        private final int count;
+    }
+
+    /** Number of vertices or edges below which a UnionTask is not split. */
+    static final int GRAIN = 4096;
+
+    /** Components, as disjoint sets of vertex numbers. */
+    private final ConcurrentUnionFind _sets;
+    /** _present[v] is nonzero iff V is a vertex. */
+    private final AtomicIntegerArray _present;
+    /** Incremented whenever the components change. */
+    private final AtomicLong _version = new AtomicLong();
+    /** Most recently computed labelling, or null. */
+    private volatile Labelling _labelling;
+}
@@ -0,0 +1,590 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/** A LabeledGraph kept durably in a directory, surviving restarts and
+ *  crashes.  Every modification (adding or removing a vertex or edge, or
+ *  setting a label) is appended to a write-ahead log as a record carrying
+ *  a sequence number and a CRC.  Records are buffered and written and
+ *  forced to disk together (group commit): whenever GROUPSIZE records
+ *  have accumulated, or on an explicit call to commit().  A modification
+ *  is thus durable once the commit that includes it returns.
+ *
+ *  Periodically (every CHECKPOINTINTERVAL records, or on an explicit call
+ *  to checkpoint()), the whole graph is written in a compact binary form
+ *  to a new checkpoint file that atomically replaces the old one, after
+ *  which the log is truncated.  On opening, the graph is restored from
+ *  the checkpoint, and only the log records after it are replayed; a
+ *  torn or corrupt record at the end of the log (from a crash during a
+ *  write) ends the replay and is discarded.  Restoration preserves vertex
+ *  numbers and edge identifiers exactly.
+ *
+ *  Labels are stored using client-supplied Codecs.  I/O errors during
+ *  modifications are reported as UncheckedIOExceptions, since the Graph
+ *  methods cannot throw IOException.
+ *  @author Jacob Lin
+ */
+public class DurableGraph<VL, EL> extends LabeledGraph<VL, EL>
+    implements Closeable {
+
+    /** Converts labels of type T to and from bytes. */
+    public interface Codec<T> {
+        /** Write VALUE, which is not null, to OUT. */
+        void write(DataOutput out, T value) throws IOException;
+
+        /** Read and return a value written by write from IN. */
+        T read(DataInput in) throws IOException;
+    }
+
+    /** A Codec for String labels. */
+    public static final Codec<String> STRING_CODEC = new Codec<String>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /** A graph (directed iff DIRECTED) stored in directory DIR, created
+     *  if it does not exist, and otherwise recovered from it.  Vertex and
+     *  edge labels are encoded by VCODEC and ECODEC.  Uses default group
+     *  and checkpoint sizes. */
+    public DurableGraph(Path dir, boolean directed, Codec<VL> vcodec,
+                        Codec<EL> ecodec) throws IOException {
+        this(dir, directed, vcodec, ecodec, DEFAULT_GROUP_SIZE,
+             DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /** A graph (directed iff DIRECTED) stored in directory DIR, created
+     *  if it does not exist, and otherwise recovered from it.  Vertex and
+     *  edge labels are encoded by VCODEC and ECODEC.  The log is committed
+     *  every GROUPSIZE records, and a checkpoint taken every
+     *  CHECKPOINTINTERVAL records (never, if CHECKPOINTINTERVAL <= 0). */
+    public DurableGraph(Path dir, boolean directed, Codec<VL> vcodec,
+                        Codec<EL> ecodec, int groupSize,
+                        int checkpointInterval) throws IOException {
+        this(directed ? new DirectedGraph() : new UndirectedGraph(), dir,
+             vcodec, ecodec, groupSize, checkpointInterval);
+    }
+
+    /** A graph stored in DIR over the empty graph G; the remaining
+     *  arguments are as for the public constructors. */
+    private DurableGraph(GraphObj G, Path dir, Codec<VL> vcodec,
+                         Codec<EL> ecodec, int groupSize,
+                         int checkpointInterval) throws IOException {
+        super(G);
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("bad group size");
+        }
+        _base = G;
+        _vcodec = vcodec;
+        _ecodec = ecodec;
+        _groupSize = groupSize;
+        _checkpointInterval = checkpointInterval;
+        Files.createDirectories(dir);
+        _checkpointFile = dir.resolve(CHECKPOINT_NAME);
+        _logFile = dir.resolve(LOG_NAME);
+        _depth = 1;
+        try {
+            if (Files.exists(_checkpointFile)) {
+                _checkpointLsn = _lsn = readCheckpoint();
+            }
+            boolean created = !Files.exists(_logFile);
+            _log = FileChannel.open(_logFile, StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+            if (created) {
+                forceDirectory();
+            }
+            long end = replay();
+            _log.truncate(end);
+            _log.position(end);
+        } finally {
+            _depth = 0;
+        }
+    }
+
+    @Override
+    public int add() {
+        if (_depth > 0) {
+            return super.add();
+        }
+        return add((VL) null);
+    }
+
+    @Override
+    public int add(VL lab) {
+        int v = apply(() -> super.add(lab));
+        log((out) -> {
+            out.writeByte(ADD_VERTEX);
+            writeLabel(out, _vcodec, lab);
+        });
+        return v;
+    }
+
+    @Override
+    public int add(int u, int v) {
+        int e = apply(() -> super.add(u, v));
+        if (_depth == 0) {
+            log((out) -> {
+                out.writeByte(ADD_EDGE);
+                out.writeInt(u);
+                out.writeInt(v);
+            });
+        }
+        return e;
+    }
+
+    @Override
+    public int add(int u, int v, EL lab) {
+        int e = apply(() -> super.add(u, v, lab));
+        log((out) -> {
+            out.writeByte(ADD_LABELED_EDGE);
+            out.writeInt(u);
+            out.writeInt(v);
+            writeLabel(out, _ecodec, lab);
+        });
+        return e;
+    }
+
+    @Override
+    public void remove(int v) {
+        apply(() -> {
+            super.remove(v);
+            return 0;
+        });
+        log((out) -> {
+            out.writeByte(REMOVE_VERTEX);
+            out.writeInt(v);
+        });
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        apply(() -> {
+            super.remove(u, v);
+            return 0;
+        });
+        log((out) -> {
+            out.writeByte(REMOVE_EDGE);
+            out.writeInt(u);
+            out.writeInt(v);
+        });
+    }
+
+    @Override
+    public void setLabel(int v, VL lab) {
+        apply(() -> {
+            super.setLabel(v, lab);
+            return 0;
+        });
+        log((out) -> {
+            out.writeByte(SET_VERTEX_LABEL);
+            out.writeInt(v);
+            writeLabel(out, _vcodec, lab);
+        });
+    }
+
+    @Override
+    public void setLabel(int u, int v, EL lab) {
+        apply(() -> {
+            super.setLabel(u, v, lab);
+            return 0;
+        });
+        log((out) -> {
+            out.writeByte(SET_EDGE_LABEL);
+            out.writeInt(u);
+            out.writeInt(v);
+            writeLabel(out, _ecodec, lab);
+        });
+    }
+
+    /** Write and force all buffered log records to disk.  On return, all
+     *  modifications so far are durable. */
+    public void commit() throws IOException {
+        if (_pending.size() > 0) {
+            ByteBuffer buf = ByteBuffer.wrap(_pending.toByteArray());
+            while (buf.hasRemaining()) {
+                _log.write(buf);
+            }
+            _pending.reset();
+            _log.force(false);
+        }
+        _uncommitted = 0;
+    }
+
+    /** Write a checkpoint of the entire graph, atomically replacing the
+     *  previous one, and truncate the log. */
+    public void checkpoint() throws IOException {
+        commit();
+        Path tmp = _checkpointFile.resolveSibling(CHECKPOINT_NAME + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked =
+                new CheckedOutputStream(new BufferedOutputStream(file),
+                                        new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            writeCheckpoint(out);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(tmp, _checkpointFile, StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        _checkpointLsn = _lsn;
+        _log.truncate(0);
+        _log.position(0);
+        _log.force(true);
+        _sinceCheckpoint = 0;
+    }
+
+    /** Returns the sequence number of the last modification logged. */
+    public long lastSequenceNumber() {
+        return _lsn;
+    }
+
+    /** Returns the sequence number of the last modification included in
+     *  the current checkpoint (0 if none). */
+    public long checkpointSequenceNumber() {
+        return _checkpointLsn;
+    }
+
+    /** Commit any buffered records and close the log.  The graph may not
+     *  be modified afterwards. */
+    @Override
+    public void close() throws IOException {
+        if (_log.isOpen()) {
+            commit();
+            _log.close();
+        }
+    }
+
+    /** An operation on the graph returning an int. */
+    private interface Operation {
+        /** Perform the operation, returning its result. */
+        int run();
+    }
+
+    /** Writes the body of a log record. */
+    private interface RecordWriter {
+        /** Write the record body to OUT. */
+        void write(DataOutput out) throws IOException;
+    }
+
+    /** Perform OP on the underlying labeled graph without logging any
+     *  modifications it makes through my other methods, and return its
+     *  result. */
+    private int apply(Operation op) {
+        _depth += 1;
+        try {
+            return op.run();
+        } finally {
+            _depth -= 1;
+        }
+    }
+
+    /** Append a record whose body is written by BODY to the log, unless
+     *  it belongs to an enclosing modification or to recovery, committing
+     *  or checkpointing if due. */
+    private void log(RecordWriter body) {
+        if (_depth > 0) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream rec = new DataOutputStream(bytes);
+            _lsn += 1;
+            rec.writeLong(_lsn);
+            body.write(rec);
+            rec.flush();
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            DataOutputStream out = new DataOutputStream(_pending);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            _uncommitted += 1;
+            _sinceCheckpoint += 1;
+            if (_checkpointInterval > 0
+                && _sinceCheckpoint >= _checkpointInterval) {
+                checkpoint();
+            } else if (_uncommitted >= _groupSize) {
+                commit();
+            }
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+
+    /** Apply all valid log records following the checkpoint.  Returns the
+     *  byte offset of the end of the last valid record. */
+    private long replay() throws IOException {
+        long end;
+        end = 0;
+        _log.position(0);
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(_log)));
+        long size = _log.size();
+        while (size - end >= 2 * Integer.BYTES + Long.BYTES) {
+            int len = in.readInt();
+            if (len < Long.BYTES || len > size - end - 2 * Integer.BYTES) {
+                break;
+            }
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            int crc = in.readInt();
+            CRC32 check = new CRC32();
+            check.update(payload);
+            if ((int) check.getValue() != crc) {
+                break;
+            }
+            DataInputStream rec =
+                new DataInputStream(new ByteArrayInputStream(payload));
+            long lsn = rec.readLong();
+            if (lsn > _lsn) {
+                redo(rec);
+                _lsn = lsn;
+            }
+            end += 2 * Integer.BYTES + len;
+        }
+        return end;
+    }
+
+    /** Reapply the modification whose body is in IN. */
+    private void redo(DataInput in) throws IOException {
+        int op = in.readByte();
+        switch (op) {
+        case ADD_VERTEX:
+            add(readLabel(in, _vcodec));
+            break;
+        case ADD_EDGE:
+            add(in.readInt(), in.readInt());
+            break;
+        case ADD_LABELED_EDGE:
+            add(in.readInt(), in.readInt(), readLabel(in, _ecodec));
+            break;
+        case REMOVE_VERTEX:
+            remove(in.readInt());
+            break;
+        case REMOVE_EDGE:
+            remove(in.readInt(), in.readInt());
+            break;
+        case SET_VERTEX_LABEL:
+            setLabel(in.readInt(), readLabel(in, _vcodec));
+            break;
+        case SET_EDGE_LABEL:
+            setLabel(in.readInt(), in.readInt(), readLabel(in, _ecodec));
+            break;
+        default:
+            throw new IOException("bad log record type: " + op);
+        }
+    }
+
+    /** Force the entries of my directory to disk, so that a renamed or
+     *  created file is found there after a crash. */
+    private void forceDirectory() throws IOException {
+        try (FileChannel dir = FileChannel.open(_logFile.getParent(),
+                                                StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    /** Write the graph to OUT in checkpoint format: the sequence number,
+     *  the maximum vertex and the current vertices, every edge ever given
+     *  an identifier (in identifier order) with a flag saying whether it
+     *  is present, and the labels of the vertices and present edges. */
+    private void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(_lsn);
+        out.writeBoolean(isDirected());
+        out.writeInt(maxVertex());
+        for (int v = 1; v <= maxVertex(); v += 1) {
+            out.writeBoolean(contains(v));
+        }
+        ArrayList<GraphObj.Edge> edges = _base.getAllMyEdge();
+        out.writeInt(edges.size());
+        for (GraphObj.Edge e : edges) {
+            out.writeInt(e.getStart());
+            out.writeInt(e.getEnd());
+            out.writeBoolean(contains(e.getStart(), e.getEnd()));
+        }
+        for (int v = 1; v <= maxVertex(); v += 1) {
+            if (contains(v)) {
+                writeLabel(out, _vcodec, getLabel(v));
+            }
+        }
+        for (GraphObj.Edge e : edges) {
+            if (contains(e.getStart(), e.getEnd())) {
+                writeLabel(out, _ecodec, getLabel(e.getStart(), e.getEnd()));
+            }
+        }
+    }
+
+    /** Restore the graph from the checkpoint file, and return its
+     *  sequence number.  Removed edges may end at vertices above the
+     *  saved maximum, which are recreated to replay them.  At least one
+     *  vertex above the maximum is created, so that the absent vertices
+     *  up to it are removed as holes; those above it are then removed
+     *  from the top down, leaving the maximum as it was. */
+    private long readCheckpoint() throws IOException {
+        try (InputStream file = Files.newInputStream(_checkpointFile)) {
+            CheckedInputStream checked =
+                new CheckedInputStream(new BufferedInputStream(file),
+                                       new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a graph checkpoint");
+            }
+            long lsn = in.readLong();
+            if (in.readBoolean() != isDirected()) {
+                throw new IOException("checkpoint has wrong graph kind");
+            }
+            int maxVertex = in.readInt();
+            boolean[] present = new boolean[maxVertex + 1];
+            for (int v = 1; v <= maxVertex; v += 1) {
+                present[v] = in.readBoolean();
+            }
+            int n = in.readInt();
+            int[] ends = new int[2 * n];
+            boolean[] live = new boolean[n];
+            int top = maxVertex + 1;
+            for (int i = 0; i < n; i += 1) {
+                ends[2 * i] = in.readInt();
+                ends[2 * i + 1] = in.readInt();
+                live[i] = in.readBoolean();
+                top = Math.max(top, Math.max(ends[2 * i], ends[2 * i + 1]));
+            }
+            for (int v = 1; v <= top; v += 1) {
+                add();
+            }
+            for (int i = 0; i < n; i += 1) {
+                add(ends[2 * i], ends[2 * i + 1]);
+            }
+            for (int i = 0; i < n; i += 1) {
+                if (!live[i]) {
+                    remove(ends[2 * i], ends[2 * i + 1]);
+                }
+            }
+            for (int v = 1; v <= maxVertex; v += 1) {
+                if (!present[v]) {
+                    remove(v);
+                }
+            }
+            for (int v = top; v > maxVertex; v -= 1) {
+                remove(v);
+            }
+            for (int v = 1; v <= maxVertex; v += 1) {
+                if (present[v]) {
+                    setLabel(v, readLabel(in, _vcodec));
+                }
+            }
+            for (int i = 0; i < n; i += 1) {
+                if (live[i]) {
+                    setLabel(ends[2 * i], ends[2 * i + 1],
+                             readLabel(in, _ecodec));
+                }
+            }
+            long sum = checked.getChecksum().getValue();
+            if (in.readLong() != sum) {
+                throw new IOException("corrupt graph checkpoint");
+            }
+            return lsn;
+        }
+    }
+
+    /** Write LAB, which may be null, to OUT using CODEC. */
+    private static <T> void writeLabel(DataOutput out, Codec<T> codec, T lab)
+        throws IOException {
+        out.writeBoolean(lab != null);
+        if (lab != null) {
+            codec.write(out, lab);
+        }
+    }
+
+    /** Read a label written by writeLabel from IN using CODEC. */
+    private static <T> T readLabel(DataInput in, Codec<T> codec)
+        throws IOException {
+        return in.readBoolean() ? codec.read(in) : null;
+    }
+
+    /** Default number of records per group commit. */
+    static final int DEFAULT_GROUP_SIZE = 64;
+    /** Default number of records between checkpoints. */
+    static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 16;
+    /** Name of the checkpoint file. */
+    static final String CHECKPOINT_NAME = "graph.checkpoint";
+    /** Name of the log file. */
+    static final String LOG_NAME = "graph.wal";
+    /** Identifies checkpoint files. */
+    private static final int MAGIC = 0x47524350;
+
+    /** Log record types. */
+    private static final int
+        ADD_VERTEX = 1, ADD_EDGE = 2, ADD_LABELED_EDGE = 3,
+        REMOVE_VERTEX = 4, REMOVE_EDGE = 5, SET_VERTEX_LABEL = 6,
+        SET_EDGE_LABEL = 7;
+
+    /** The underlying graph. */
+    private final GraphObj _base;
+    /** Codec for vertex labels. */
+    private final Codec<VL> _vcodec;
+    /** Codec for edge labels. */
+    private final Codec<EL> _ecodec;
+    /** Number of records per group commit. */
+    private final int _groupSize;
+    /** Number of records between automatic checkpoints. */
+    private final int _checkpointInterval;
+    /** The checkpoint file. */
+    private final Path _checkpointFile;
+    /** The log file. */
+    private final Path _logFile;
+    /** The open log. */
+    private final FileChannel _log;
+    /** Encoded records not yet written to the log. */
+    private final ByteArrayOutputStream _pending =
+        new ByteArrayOutputStream();
+    /** Number of records since the last commit. */
+    private int _uncommitted;
+    /** Number of records since the last checkpoint. */
+    private int _sinceCheckpoint;
+    /** Sequence number of the last record. */
+    private long _lsn;
+    /** Sequence number of the last record in the checkpoint. */
+    private long _checkpointLsn;
+    /** Nesting depth of modifications; records are logged only at
+     *  depth 0. */
+    private int _depth;
+}
@@ -0,0 +1,17 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A weighting of the edges of a graph, for algorithms that need edge
+ *  weights but do not otherwise care how they are represented (as labels
+ *  of a LabeledGraph, an array indexed by edge, or a computation).
+ *  @author Jacob Lin
+ */
+public interface EdgeWeight {
+
+    /** Returns the weight of the edge (U, V), which is assumed to be in
+     *  the graph.  Implementations used by parallel algorithms must be
+     *  safe to call from several threads at once. */
+    double weight(int u, int v);
+
+}
@@ -0,0 +1,459 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Breadth-first search of a graph too large to hold in memory, stored
+ *  as an edge file: a sequence of pairs of big-endian ints (u, v), one
+ *  for each edge from vertex u to vertex v (vertices being positive), in
+ *  any order.  All working data is kept in files in a given directory,
+ *  and memory use stays within a budget given in bytes.
+ *
+ *  The edges are first sorted by source into an adjacency file, with a
+ *  sparse in-memory index of every INDEX_STRIDE-th source.  Each level of
+ *  the search is then a merge of the (sorted) frontier file against the
+ *  adjacency file, seeking forward past long runs of edges whose sources
+ *  are not in the frontier.  The (vertex, parent) candidates produced are
+ *  sorted externally, duplicates are eliminated, and vertices already
+ *  visited are dropped to form the next frontier.  The visited set is a
+ *  bit set if one fits in a quarter of the budget (semi-external search)
+ *  and otherwise a sorted file merged with each new frontier (fully
+ *  external search).  Half the budget holds the values being sorted,
+ *  and an eighth each goes to the file buffers of the sorts' merges and
+ *  of the other files open at once, so that the (off-heap) I/O buffers
+ *  count against the budget too.  Very small budgets are rounded up to
+ *  a floor of some tens of kilobytes, since each buffer has a minimum
+ *  size.
+ *
+ *  Results are written as triples of big-endian ints (vertex, level,
+ *  parent), in order of level and then vertex.  The source has level 0
+ *  and parent 0.  Among several possible parents, the smallest is
+ *  reported.
+ *  @author Jacob Lin
+ */
+public class ExternalBFS implements Closeable {
+
+    /** A search of the directed graph whose edges are in the file EDGES,
+     *  using directory WORKDIR for temporary files and at most about
+     *  MEMORYBUDGET bytes of memory for its data. */
+    public ExternalBFS(Path edges, Path workDir, long memoryBudget) {
+        this(edges, workDir, memoryBudget, false);
+    }
+
+    /** A search of the graph whose edges are in the file EDGES, using
+     *  directory WORKDIR for temporary files and at most about
+     *  MEMORYBUDGET bytes of memory for its data.  If UNDIRECTED, each
+     *  edge may be followed in both directions. */
+    public ExternalBFS(Path edges, Path workDir, long memoryBudget,
+                       boolean undirected) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("bad memory budget");
+        }
+        _edges = edges;
+        _workDir = workDir;
+        _budget = memoryBudget;
+        _undirected = undirected;
+        _bufferSize = (int) Math.max(MIN_BUFFER,
+                                     Math.min(Integer.MAX_VALUE - 8,
+                                              memoryBudget / 2 / Long.BYTES));
+        _ioBuffer = LongFile.bufferSize(memoryBudget / 8, OPEN_FILES);
+    }
+
+    /** Perform a breadth-first search from SOURCE, writing the vertices
+     *  reached to the file OUTPUT as described above.  Returns the number
+     *  of vertices reached (including SOURCE). */
+    public long search(int source, Path output) throws IOException {
+        if (source <= 0) {
+            throw new IllegalArgumentException("bad vertex: " + source);
+        }
+        prepare();
+        Visited visited;
+        if ((long) _maxVertex / Byte.SIZE + 1 <= _budget / 4) {
+            visited = new BitVisited();
+        } else {
+            visited = new FileVisited();
+        }
+        Path frontier = Files.createTempFile(_workDir, "frontier", ".bin");
+        long reached;
+        try (LongFile.Writer out = new LongFile.Writer(output, _ioBuffer)) {
+            try (LongFile.Writer f = new LongFile.Writer(frontier, _ioBuffer)) {
+                f.writeLong(source);
+            }
+            visited.begin();
+            visited.add(source);
+            visited.end();
+            out.writeInt(source);
+            out.writeInt(0);
+            out.writeInt(0);
+            reached = 1;
+            _levels = 1;
+            long size = 1;
+            while (size > 0) {
+                Path next = Files.createTempFile(_workDir, "frontier",
+                                                 ".bin");
+                size = expand(frontier, next, visited, out, _levels);
+                Files.delete(frontier);
+                frontier = next;
+                reached += size;
+                if (size > 0) {
+                    _levels += 1;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(frontier);
+            visited.close();
+        }
+        return reached;
+    }
+
+    /** Returns the number of levels (distinct distances from the source)
+     *  found by the last search. */
+    public int levels() {
+        return _levels;
+    }
+
+    /** Returns the largest vertex number in the edge file.  Sorts the
+     *  edge file if that has not yet been done. */
+    public int maxVertex() throws IOException {
+        prepare();
+        return _maxVertex;
+    }
+
+    /** Returns the number of edges in the adjacency file (twice the
+     *  number in the edge file for undirected searches).  Sorts the edge
+     *  file if that has not yet been done. */
+    public long edgeSize() throws IOException {
+        prepare();
+        return _edgeSize;
+    }
+
+    /** Delete the sorted adjacency file. */
+    @Override
+    public void close() throws IOException {
+        if (_adjacency != null) {
+            Files.deleteIfExists(_adjacency);
+            _adjacency = null;
+        }
+    }
+
+    /** Sort the edge file into the adjacency file and build its index, if
+     *  not already done. */
+    private void prepare() throws IOException {
+        if (_adjacency != null) {
+            return;
+        }
+        Path adjacency = Files.createTempFile(_workDir, "adjacency", ".bin");
+        int[] index = new int[16];
+        long n;
+        n = 0;
+        int maxVertex;
+        maxVertex = 0;
+        try (ExternalSorter sorter = newSorter()) {
+            try (LongFile.Reader in = new LongFile.Reader(_edges, _ioBuffer)) {
+                while (in.hasRemaining(2 * Integer.BYTES)) {
+                    int u = in.readInt(), v = in.readInt();
+                    if (u <= 0 || v <= 0) {
+                        throw new IllegalArgumentException(
+                            String.format("bad edge: (%d, %d)", u, v));
+                    }
+                    maxVertex = Math.max(maxVertex, Math.max(u, v));
+                    sorter.add(pack(u, v));
+                    if (_undirected) {
+                        sorter.add(pack(v, u));
+                    }
+                }
+            }
+            try (ExternalSorter.Cursor edges = sorter.sorted();
+                 LongFile.Writer out =
+                     new LongFile.Writer(adjacency, _ioBuffer)) {
+                while (edges.hasNext()) {
+                    long e = edges.next();
+                    if (n % INDEX_STRIDE == 0) {
+                        int k = (int) (n / INDEX_STRIDE);
+                        if (k == index.length) {
+                            index = Arrays.copyOf(index, 2 * k);
+                        }
+                        index[k] = high(e);
+                    }
+                    out.writeLong(e);
+                    n += 1;
+                }
+            }
+        } catch (IOException | RuntimeException excp) {
+            Files.deleteIfExists(adjacency);
+            throw excp;
+        }
+        _index = Arrays.copyOf(index,
+                               (int) ((n + INDEX_STRIDE - 1) / INDEX_STRIDE));
+        _edgeSize = n;
+        _maxVertex = maxVertex;
+        _adjacency = adjacency;
+    }
+
+    /** Find the unvisited successors of the vertices in the file
+     *  FRONTIER, mark them in VISITED, write them to the file NEXT, and
+     *  record them as being at LEVEL in OUT.  Returns the number of
+     *  vertices found. */
+    private long expand(Path frontier, Path next, Visited visited,
+                        LongFile.Writer out, int level) throws IOException {
+        long count;
+        count = 0;
+        try (ExternalSorter candidates = newSorter()) {
+            join(frontier, candidates);
+            try (ExternalSorter.Cursor c = candidates.sorted();
+                 LongFile.Writer f = new LongFile.Writer(next, _ioBuffer)) {
+                visited.begin();
+                int prev;
+                prev = 0;
+                while (c.hasNext()) {
+                    long x = c.next();
+                    int v = high(x);
+                    if (v == prev) {
+                        continue;
+                    }
+                    prev = v;
+                    if (visited.contains(v)) {
+                        continue;
+                    }
+                    visited.add(v);
+                    f.writeLong(v);
+                    out.writeInt(v);
+                    out.writeInt(level);
+                    out.writeInt(low(x));
+                    count += 1;
+                }
+                visited.end();
+            }
+        }
+        return count;
+    }
+
+    /** Add (v, u) to CANDIDATES for every edge (u, v) in the adjacency
+     *  file whose source u is in the file FRONTIER. */
+    private void join(Path frontier, ExternalSorter candidates)
+        throws IOException {
+        try (LongFile.Reader f = new LongFile.Reader(frontier, _ioBuffer);
+             LongFile.Reader adj = new LongFile.Reader(_adjacency, _ioBuffer)) {
+            long e;
+            e = -1;
+            while (f.hasRemaining(Long.BYTES)) {
+                int u = (int) f.readLong();
+                if (e >= 0 && high(e) > u) {
+                    continue;
+                }
+                long block = block(u);
+                long pos = block * INDEX_STRIDE * Long.BYTES;
+                if (pos > adj.position()) {
+                    adj.seek(pos);
+                    e = -1;
+                }
+                while (e < 0 || high(e) < u) {
+                    if (!adj.hasRemaining(Long.BYTES)) {
+                        return;
+                    }
+                    e = adj.readLong();
+                }
+                while (high(e) == u) {
+                    candidates.add(pack(low(e), u));
+                    if (!adj.hasRemaining(Long.BYTES)) {
+                        return;
+                    }
+                    e = adj.readLong();
+                }
+            }
+        }
+    }
+
+    /** Returns the index of the last block of the adjacency file whose
+     *  first source is less than U (or 0). */
+    private long block(int u) {
+        int lo = 0, hi = _index.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_index[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return Math.max(0, lo - 1);
+    }
+
+    /** Returns the long whose high half is U and low half V. */
+    private static long pack(int u, int v) {
+        return ((long) u << Integer.SIZE) | v;
+    }
+
+    /** Returns the high half of X. */
+    private static int high(long x) {
+        return (int) (x >>> Integer.SIZE);
+    }
+
+    /** Returns the low half of X. */
+    private static int low(long x) {
+        return (int) x;
+    }
+
+    /** The set of visited vertices.  Within each level, vertices are
+     *  queried and added in increasing order between calls to begin and
+     *  end. */
+    private interface Visited extends Closeable {
+        /** Start a pass over the set. */
+        void begin() throws IOException;
+
+        /** Returns true iff V has been visited. */
+        boolean contains(int v) throws IOException;
+
+        /** Mark V as visited. */
+        void add(int v) throws IOException;
+
+        /** Finish a pass over the set. */
+        void end() throws IOException;
+    }
+
+    /** A Visited set held in memory. */
+    private class BitVisited implements Visited {
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public boolean contains(int v) {
+            return _bits.get(v);
+        }
+
+        @Override
+        public void add(int v) {
+            _bits.set(v);
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** The marks. */
+        private final BitSet _bits = new BitSet(_maxVertex + 1);
+    }
+
+    /** A Visited set held in a sorted file, which each pass merges with
+     *  the vertices added. */
+    private class FileVisited implements Visited {
+        @Override
+        public void begin() throws IOException {
+            _next = Files.createTempFile(_workDir, "visited", ".bin");
+            _out = new LongFile.Writer(_next, _ioBuffer);
+            _in = _file == null ? null : new LongFile.Reader(_file, _ioBuffer);
+            _head = 0;
+        }
+
+        @Override
+        public boolean contains(int v) throws IOException {
+            while (_in != null && _head < v) {
+                if (_head > 0) {
+                    _out.writeLong(_head);
+                }
+                if (_in.hasRemaining(Long.BYTES)) {
+                    _head = _in.readLong();
+                } else {
+                    _in.close();
+                    _in = null;
+                    _head = 0;
+                }
+            }
+            return _head == v;
+        }
+
+        @Override
+        public void add(int v) throws IOException {
+            contains(v);
+            _out.writeLong(v);
+        }
+
+        @Override
+        public void end() throws IOException {
+            contains(Integer.MAX_VALUE);
+            if (_head > 0) {
+                _out.writeLong(_head);
+                _head = 0;
+            }
+            _out.close();
+            if (_file != null) {
+                Files.delete(_file);
+            }
+            _file = _next;
+            _next = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_in != null) {
+                _in.close();
+            }
+            if (_next != null) {
+                _out.close();
+                Files.deleteIfExists(_next);
+            }
+            if (_file != null) {
+                Files.deleteIfExists(_file);
+            }
+        }
+
+        /** Sorted visited vertices as of the last pass. */
+        private Path _file;
+        /** File being written by the current pass. */
+        private Path _next;
+        /** Reader of _file during a pass, or null when exhausted. */
+        private LongFile.Reader _in;
+        /** Writer of _next during a pass. */
+        private LongFile.Writer _out;
+        /** Last value read from _in and not yet copied, or 0. */
+        private long _head;
+    }
+
+    /** Returns a new sorter within my budget. */
+    private ExternalSorter newSorter() {
+        return new ExternalSorter(_workDir, _bufferSize, _budget / 8);
+    }
+
+    /** Largest number of files, other than those of a sort, open at
+     *  once. */
+    static final int OPEN_FILES = 4;
+    /** Number of adjacency records per entry in the sparse index. */
+    static final int INDEX_STRIDE = 1024;
+    /** Minimum number of longs buffered by each sort. */
+    static final int MIN_BUFFER = 16;
+
+    /** The edge file. */
+    private final Path _edges;
+    /** Directory for temporary files. */
+    private final Path _workDir;
+    /** Memory budget in bytes. */
+    private final long _budget;
+    /** True iff edges are followed in both directions. */
+    private final boolean _undirected;
+    /** Number of longs buffered in memory by each sort. */
+    private final int _bufferSize;
+    /** Size in bytes of the buffer of each file other than a sort's. */
+    private final int _ioBuffer;
+    /** The edges sorted by source, packed as (source, target), or null
+     *  if not yet built. */
+    private Path _adjacency;
+    /** The source of every INDEX_STRIDE-th edge of _adjacency. */
+    private int[] _index;
+    /** Number of records in _adjacency. */
+    private long _edgeSize;
+    /** Largest vertex number. */
+    private int _maxVertex;
+    /** Number of levels found by the last search. */
+    private int _levels;
+}
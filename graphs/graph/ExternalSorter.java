@@ -0,0 +1,244 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/** Sorts a stream of longs too large to hold in memory.  Values are
+ *  collected in a buffer of bounded size; each time it fills, it is
+ *  sorted and written to a temporary run file.  The runs are then merged
+ *  (in several passes, if there are many) and delivered in nondecreasing
+ *  order through a Cursor.
+ *  @author Jacob Lin
+ */
+class ExternalSorter implements Closeable {
+
+    /** A sequence of longs delivered in nondecreasing order. */
+    interface Cursor extends Closeable {
+        /** Returns true iff there is another value. */
+        boolean hasNext() throws IOException;
+
+        /** Returns the next value. */
+        long next() throws IOException;
+    }
+
+    /** A sorter buffering at most MAXBUFFERED values in memory and placing
+     *  its temporary files in directory TMPDIR, with full-sized I/O
+     *  buffers and merges of up to MAX_FAN_IN runs. */
+    ExternalSorter(Path tmpDir, int maxBuffered) {
+        this(tmpDir, maxBuffered,
+             (long) (MAX_FAN_IN + 1) * LongFile.BUFFER_SIZE);
+    }
+
+    /** A sorter buffering at most MAXBUFFERED values in memory and placing
+     *  its temporary files in directory TMPDIR, whose file buffers take
+     *  about IOBUDGET bytes at most.  A smaller IOBUDGET means smaller
+     *  buffers and, below MAX_FAN_IN + 1 buffers of the least size, fewer
+     *  runs merged at once (but never fewer than two), and hence more
+     *  merge passes. */
+    ExternalSorter(Path tmpDir, int maxBuffered, long ioBudget) {
+        _tmpDir = tmpDir;
+        _buffer = new long[Math.max(16, maxBuffered)];
+        _ioBuffer = LongFile.bufferSize(ioBudget, MAX_FAN_IN + 1);
+        _fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN,
+                                            ioBudget / _ioBuffer - 1));
+    }
+
+    /** Add X to the values being sorted. */
+    void add(long x) throws IOException {
+        if (_size == _buffer.length) {
+            spill();
+        }
+        _buffer[_size] = x;
+        _size += 1;
+    }
+
+    /** Returns the total number of values added. */
+    long count() {
+        return _count + _size;
+    }
+
+    /** Returns a Cursor over all values added, in order.  No more values
+     *  may be added. */
+    Cursor sorted() throws IOException {
+        if (_runs.isEmpty()) {
+            Arrays.sort(_buffer, 0, _size);
+            return new ArrayCursor(_buffer, _size);
+        }
+        spill();
+        while (_runs.size() > _fanIn) {
+            ArrayList<Path> merged = new ArrayList<>();
+            for (int i = 0; i < _runs.size(); i += _fanIn) {
+                Path out = Files.createTempFile(_tmpDir, "run", ".bin");
+                try (Cursor in = new MergeCursor(_runs.subList(i,
+                         Math.min(_runs.size(), i + _fanIn)), _ioBuffer);
+                     LongFile.Writer w = new LongFile.Writer(out,
+                                                            _ioBuffer)) {
+                    while (in.hasNext()) {
+                        w.writeLong(in.next());
+                    }
+                }
+                merged.add(out);
+            }
+            deleteRuns();
+            _runs.addAll(merged);
+        }
+        return new MergeCursor(_runs, _ioBuffer);
+    }
+
+    /** Delete any temporary files. */
+    @Override
+    public void close() throws IOException {
+        deleteRuns();
+    }
+
+    /** Sort the buffer and write it to a new run file. */
+    private void spill() throws IOException {
+        if (_size == 0) {
+            return;
+        }
+        Arrays.sort(_buffer, 0, _size);
+        Path run = Files.createTempFile(_tmpDir, "run", ".bin");
+        try (LongFile.Writer w = new LongFile.Writer(run, _ioBuffer)) {
+            for (int i = 0; i < _size; i += 1) {
+                w.writeLong(_buffer[i]);
+            }
+        }
+        _runs.add(run);
+        _count += _size;
+        _size = 0;
+    }
+
+    /** Delete all run files. */
+    private void deleteRuns() throws IOException {
+        for (Path run : _runs) {
+            Files.deleteIfExists(run);
+        }
+        _runs.clear();
+    }
+
+    /** A Cursor over a sorted prefix of an array. */
+    private static class ArrayCursor implements Cursor {
+        /** The first N values of DATA. */
+        ArrayCursor(long[] data, int n) {
+            _data = data;
+            _n = n;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _k < _n;
+        }
+
+        @Override
+        public long next() {
+            _k += 1;
+            return _data[_k - 1];
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** Values. */
+        private final long[] _data;
+        /** Number of values. */
+        private final int _n;
+        /** Index of next value. */
+        private int _k;
+    }
+
+    /** A Cursor merging several sorted run files. */
+    private static class MergeCursor implements Cursor {
+        /** A merge of the files RUNS, each read through a buffer of
+         *  BUFFERSIZE bytes. */
+        MergeCursor(java.util.List<Path> runs, int bufferSize)
+            throws IOException {
+            _heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> Long.compare(a.head, b.head));
+            for (Path run : runs) {
+                Source s = new Source(new LongFile.Reader(run, bufferSize));
+                if (s.advance()) {
+                    _heap.add(s);
+                } else {
+                    s.reader.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !_heap.isEmpty();
+        }
+
+        @Override
+        public long next() throws IOException {
+            Source s = _heap.poll();
+            long result = s.head;
+            if (s.advance()) {
+                _heap.add(s);
+            } else {
+                s.reader.close();
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Source s : _heap) {
+                s.reader.close();
+            }
+            _heap.clear();
+        }
+
+        /** One run being merged. */
+        private static class Source {
+            /** A source reading from READER. */
+            Source(LongFile.Reader reader) {
+                this.reader = reader;
+            }
+
+            /** Read the next value into head.  Returns false at end of
+             *  file. */
+            boolean advance() throws IOException {
+                if (!reader.hasRemaining(Long.BYTES)) {
+                    return false;
+                }
+                head = reader.readLong();
+                return true;
+            }
+
+            /** The run. */
+            private final LongFile.Reader reader;
+            /** Next value of the run. */
+            private long head;
+        }
+
+        /** Runs ordered by their next values. */
+        private final PriorityQueue<Source> _heap;
+    }
+
+    /** Maximum number of runs merged at once. */
+    static final int MAX_FAN_IN = 64;
+
+    /** Size in bytes of each file buffer. */
+    private final int _ioBuffer;
+    /** Maximum number of runs merged at once. */
+    private final int _fanIn;
+    /** Directory for run files. */
+    private final Path _tmpDir;
+    /** Values not yet written to a run. */
+    private final long[] _buffer;
+    /** Number of values in _buffer. */
+    private int _size;
+    /** Number of values written to runs. */
+    private long _count;
+    /** Run files. */
+    private final ArrayList<Path> _runs = new ArrayList<>();
+}
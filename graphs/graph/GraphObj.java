@@ -1,6 +1,7 @@
 package graph;
 
 import java.util.ArrayList;
+import java.util.TreeSet;
 
 /** A partial implementation of Graph containing elements common to
  *  directed and undirected graphs.
@@ -15,6 +16,8 @@ abstract class GraphObj extends Graph {
         arrayList2D = new ArrayList<>();
         arrayList2D.add(new Node(0));
         allMyEdge = new ArrayList<>();
+        edgeIndex = new LongIntMap();
+        holes = new TreeSet<>();
     }
 
     @Override
@@ -72,13 +75,12 @@ abstract class GraphObj extends Graph {
 
     @Override
     public int add() {
-        for (int i = 1; i < arrayList2D.size(); i++) {
-            if (arrayList2D.get(i).nodeName == 0) {
-                arrayList2D.get(i).nodeName = i;
-                arrayList2D.get(i).mychild = new ArrayList<>();
-                numVer++;
-                return i;
-            }
+        if (!holes.isEmpty()) {
+            int i = holes.pollFirst();
+            arrayList2D.get(i).nodeName = i;
+            arrayList2D.get(i).mychild = new ArrayList<>();
+            numVer++;
+            return i;
         }
         arrayList2D.add(new Node(arrayList2D.size()));
         numVer++;
@@ -100,15 +102,12 @@ abstract class GraphObj extends Graph {
             v = u;
             u = swap;
         }
-        for (int i = 0; i < allMyEdge.size(); i++) {
-            Edge thisone = allMyEdge.get(i);
-            if (u == thisone.start && v == thisone.end) {
-                return edgeId(u, v);
-            }
+        int i = edgeIndex.putIfAbsent(key(u, v), allMyEdge.size());
+        if (i < 0) {
+            allMyEdge.add(new Edge(u, v));
+            return allMyEdge.size();
         }
-        Edge thisedge = new Edge(u, v);
-        allMyEdge.add(thisedge);
-        return edgeId(u, v);
+        return i + 1;
     }
 
     @Override
@@ -122,6 +121,7 @@ abstract class GraphObj extends Graph {
         } else {
             arrayList2D.get(v).nodeName = 0;
             arrayList2D.get(v).mychild.clear();
+            holes.add(v);
             numVer--;
         }
         for (int i = 0; i < arrayList2D.size(); i++) {
@@ -201,26 +201,15 @@ abstract class GraphObj extends Graph {
         if (!contains(u, v)) {
             return 0;
         }
-        if (isDirected()) {
-            for (int i = 0; i < allMyEdge.size(); i++) {
-                Edge thisone = allMyEdge.get(i);
-                if (u == thisone.start && v == thisone.end) {
-                    return i + 1;
-                }
-            }
-            return 0;
-        } else {
-            if (u > v) {
-                return edgeId(v, u);
-            }
-            for (int i = 0; i < allMyEdge.size(); i++) {
-                Edge thisone = allMyEdge.get(i);
-                if (u == thisone.start && v == thisone.end) {
-                    return i + 1;
-                }
-            }
-            return 0;
+        if (!isDirected() && u > v) {
+            return edgeId(v, u);
         }
+        return edgeIndex.get(key(u, v)) + 1;
+    }
+
+    /** Return the key of the edge from U to V in edgeIndex. */
+    private static long key(int u, int v) {
+        return ((long) u << 32) | (v & 0xffffffffL);
     }
     /** Return package-private arrayList2D. */
     ArrayList<Node> getMasterL() {
@@ -240,6 +229,10 @@ abstract class GraphObj extends Graph {
     private ArrayList<Node> arrayList2D;
     /** An ArrayList to store all my edges. */
     private ArrayList<Edge> allMyEdge;
+    /** The index in allMyEdge of each edge, keyed by its end points. */
+    private LongIntMap edgeIndex;
+    /** The vertex numbers below maxVertex() not now in use. */
+    private TreeSet<Integer> holes;
     /** My private Node class. */
     protected class Node {
         /** Return my nodename. */
@@ -2,10 +2,17 @@ package graph;
 
 import org.junit.Test;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Collections;
 import java.util.ArrayDeque;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -538,7 +545,7 @@ public class GraphTest {
             }
             @Override
             protected boolean visit(int v) {
-                return false;
+                return true;
             }
 
             @Override
@@ -695,4 +702,964 @@ public class GraphTest {
         assertEquals(0, g.vertexSize());
         assertEquals(0, g.maxVertex());
     }
+
+    @Test
+    public void maskedGraph() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 5; i++) {
+            g.add();
+        }
+        g.add(1, 2);
+        g.add(2, 3);
+        g.add(1, 4);
+        g.add(4, 3);
+        g.add(3, 5);
+        MaskedGraph m = new MaskedGraph(g);
+        m.hide(4);
+        assertFalse(m.contains(4));
+        assertFalse(m.contains(1, 4));
+        assertEquals(4, m.vertexSize());
+        assertEquals(3, m.edgeSize());
+        assertEquals(1, m.outDegree(1));
+        assertEquals(1, m.inDegree(3));
+        m.hide(2, 3);
+        assertFalse(m.contains(2, 3));
+        assertTrue(m.contains(2));
+        assertEquals(0, m.outDegree(2));
+        m.show(4);
+        m.setEdgeFilter((u, v) -> v != 5);
+        ArrayList<Integer> succ = new ArrayList<>();
+        for (int v : m.successors(1)) {
+            succ.add(v);
+        }
+        assertEquals(2, succ.size());
+        assertEquals(0, m.outDegree(3));
+        assertEquals(5, g.edgeSize());
+        m.setVertexFilter((v) -> v != 1);
+        assertFalse(m.isHidden(0));
+        assertFalse(m.isHidden(-3));
+        assertEquals(5, m.maxVertex());
+        assertEquals(0, m.inDegree(2));
+        m.showAll();
+        m.setVertexFilter(null);
+        m.setEdgeFilter(null);
+        assertEquals(5, m.edgeSize());
+    }
+
+    @Test
+    public void multiSourceBFS() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 100; i++) {
+            g.add();
+        }
+        for (int i = 1; i < 100; i++) {
+            g.add(i, i + 1);
+        }
+        g.add(1, 50);
+        int[] sources = new int[150];
+        for (int k = 0; k < sources.length; k++) {
+            sources[k] = k % 100 + 1;
+        }
+        MultiSourceBFS bfs = new MultiSourceBFS(g, 1,
+            java.util.concurrent.ForkJoinPool.commonPool());
+        int[][] dist = bfs.distances(sources);
+        assertEquals(0, dist[0][1]);
+        assertEquals(1, dist[0][50]);
+        assertEquals(25, dist[0][26]);
+        assertEquals(24, dist[0][27]);
+        assertEquals(dist[3][77], dist[103][77]);
+        assertEquals(Math.abs(77 - 60), dist[59][77]);
+        assertEquals(-1, dist[0][0]);
+    }
+
+    @Test
+    public void connectedComponents() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 8; i++) {
+            g.add();
+        }
+        g.add(1, 3);
+        g.add(3, 5);
+        g.add(2, 4);
+        g.add(7, 7);
+        ConnectedComponents cc = new ConnectedComponents(g, 10,
+            java.util.concurrent.ForkJoinPool.commonPool());
+        assertEquals(5, cc.componentCount());
+        assertTrue(cc.connected(1, 5));
+        assertFalse(cc.connected(1, 2));
+        assertEquals(1, cc.component(5));
+        assertEquals(2, cc.component(4));
+        assertEquals(0, cc.component(9));
+        assertTrue(cc.add(5, 4));
+        assertFalse(cc.add(1, 2));
+        assertEquals(4, cc.componentCount());
+        cc.add(8, 9);
+        assertEquals(4, cc.componentCount());
+        assertEquals(4, cc.labels()[9]);
+    }
+
+    @Test
+    public void minimumSpanningForest() {
+        LabeledGraph<String, Double> g =
+            new LabeledGraph<>(new UndirectedGraph());
+        for (int i = 0; i < 7; i++) {
+            g.add("v" + i);
+        }
+        g.add(1, 2, 4.0);
+        g.add(1, 3, 1.0);
+        g.add(2, 3, 2.0);
+        g.add(3, 4, 5.0);
+        g.add(2, 4, 8.0);
+        g.add(4, 4, 0.5);
+        g.add(5, 6, 3.0);
+        MinimumSpanningForest msf =
+            new MinimumSpanningForest(g, (u, v) -> g.getLabel(u, v));
+        assertEquals(4, msf.edgeSize());
+        assertEquals(11.0, msf.totalWeight(), 1e-9);
+        int n = 0;
+        for (int[] e : msf.edges()) {
+            assertTrue(e[0] <= e[1]);
+            assertFalse(e[0] == 2 && e[1] == 4);
+            n += 1;
+        }
+        assertEquals(4, n);
+        int[] c = msf.clusters(4);
+        assertEquals(c[1], c[3]);
+        assertEquals(c[1], c[2]);
+        assertFalse(c[1] == c[4]);
+        assertEquals(c[5], c[6]);
+        assertEquals(4, c[7]);
+        double[] w = new double[g.edgeSize() + 1];
+        for (int[] e : g.edges()) {
+            w[g.edgeId(e[0], e[1])] = g.getLabel(e[0], e[1]);
+        }
+        MinimumSpanningForest msf2 = new MinimumSpanningForest(g, w,
+            java.util.concurrent.ForkJoinPool.commonPool());
+        assertEquals(11.0, msf2.totalWeight(), 1e-9);
+    }
+
+    @Test
+    public void pregelLabelPropagation() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 6; i++) {
+            g.add();
+        }
+        g.add(2, 4);
+        g.add(4, 6);
+        g.add(3, 5);
+        Pregel.Program minLabel = new Pregel.Program() {
+            @Override
+            protected double initialValue(int v) {
+                return v;
+            }
+
+            @Override
+            protected double compute(Pregel.Superstep step, int v,
+                                     double value, double message) {
+                double result = Math.min(value, message);
+                if (step.number() == 0 || result < value) {
+                    step.sendToSuccessors(v, result);
+                }
+                step.voteToHalt(v);
+                return result;
+            }
+
+            @Override
+            protected double combine(double m1, double m2) {
+                return Math.min(m1, m2);
+            }
+
+            @Override
+            protected double noMessage() {
+                return Double.POSITIVE_INFINITY;
+            }
+        };
+        Pregel engine = new Pregel(g);
+        double[] labels = engine.run(minLabel, 100);
+        assertTrue(engine.converged());
+        assertEquals(1.0, labels[1], 0.0);
+        assertEquals(2.0, labels[6], 0.0);
+        assertEquals(3.0, labels[5], 0.0);
+    }
+
+    @Test
+    public void pregelPageRank() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 3; i++) {
+            g.add();
+        }
+        g.add(1, 2);
+        g.add(2, 3);
+        g.add(3, 1);
+        g.add(1, 3);
+        Pregel.Program rank = new Pregel.Program() {
+            @Override
+            protected double initialValue(int v) {
+                return 1.0 / 3;
+            }
+
+            @Override
+            protected double compute(Pregel.Superstep step, int v,
+                                     double value, double message) {
+                double r = step.number() == 0 ? value
+                    : 0.15 / step.vertexSize() + 0.85 * message;
+                step.sendToSuccessors(v, r / step.outDegree(v));
+                return r;
+            }
+
+            @Override
+            protected double tolerance() {
+                return 1e-10;
+            }
+        };
+        Pregel engine = new Pregel(g);
+        double[] r = engine.run(rank, 1000);
+        assertTrue(engine.converged());
+        assertEquals(1.0, r[1] + r[2] + r[3], 1e-6);
+        assertTrue(r[3] > r[2]);
+    }
+
+    @Test
+    public void triangleCount() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 6; i++) {
+            g.add();
+        }
+        g.add(1, 2);
+        g.add(2, 3);
+        g.add(1, 3);
+        g.add(3, 4);
+        g.add(1, 4);
+        g.add(4, 5);
+        g.add(5, 5);
+        TriangleCount t = new TriangleCount(g);
+        assertEquals(2, t.triangles());
+        assertEquals(2, t.triangles(1));
+        assertEquals(1, t.triangles(2));
+        assertEquals(0, t.triangles(5));
+        assertEquals(1.0, t.clustering(2), 1e-9);
+        assertEquals(2.0 / 3, t.clustering(1), 1e-9);
+        assertEquals(1.0 / 3, t.clustering(4), 1e-9);
+        assertEquals(0.0, t.clustering(6), 0.0);
+        assertEquals((1.0 + 2.0 / 3 + 2.0 / 3 + 1.0 / 3) / 6,
+                     t.averageClustering(), 1e-9);
+    }
+
+    @Test
+    public void betweenness() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 5; i++) {
+            g.add();
+        }
+        g.add(1, 2);
+        g.add(2, 3);
+        g.add(3, 4);
+        g.add(2, 5);
+        g.add(5, 4);
+        double[] b = new Betweenness(g).compute();
+        assertEquals(0.0, b[1], 1e-9);
+        assertEquals(3.5, b[2], 1e-9);
+        assertEquals(1.0, b[3], 1e-9);
+        assertEquals(0.5, b[4], 1e-9);
+        assertEquals(1.0, b[5], 1e-9);
+        double[] w = new Betweenness(g, (u, v) -> u * v == 10 ? 0.5 : 1.0,
+            java.util.concurrent.ForkJoinPool.commonPool()).compute();
+        assertEquals(4.0, w[2], 1e-9);
+        assertEquals(0.0, w[3], 1e-9);
+        assertEquals(2.0, w[5], 1e-9);
+        double[] s = new Betweenness(g).sample(1000, 42);
+        assertEquals(3.5, s[2], 0.5);
+        assertTrue(Betweenness.sampleSize(5, 0.1, 0.1) > 100);
+    }
+
+    @Test
+    public void implicitSearch() {
+        ImplicitGraph g = (n, out) -> {
+            if (n < 1000) {
+                out.accept(n + 1);
+                out.accept(2 * n);
+            }
+        };
+        ImplicitShortestPaths paths = new ImplicitShortestPaths(g, 1) {
+            @Override
+            protected double getWeight(long u, long v) {
+                return 1.0;
+            }
+
+            @Override
+            protected boolean isDestination(long v) {
+                return v == 100;
+            }
+        };
+        paths.setPaths();
+        assertTrue(paths.foundDestination());
+        assertEquals(8.0, paths.getWeight(100L), 0.0);
+        assertEquals(9, paths.pathTo().size());
+        assertEquals(50L, paths.getPredecessor(100L));
+        assertTrue(paths.settledCount() < 1000);
+
+        ArrayList<Long> seen = new ArrayList<>();
+        ImplicitTraversal bfs = new ImplicitTraversal(g, false) {
+            @Override
+            protected boolean visit(long v) {
+                seen.add(v);
+                return v != 12;
+            }
+        };
+        assertFalse(bfs.traverse(1L));
+        assertEquals(Long.valueOf(1), seen.get(0));
+        assertEquals(Long.valueOf(12), seen.get(seen.size() - 1));
+        assertTrue(bfs.markedCount() < 20);
+        bfs.clear();
+        ImplicitTraversal all = new ImplicitTraversal(g, true) { };
+        assertTrue(all.traverse(0L));
+        assertEquals(1500, all.markedCount());
+    }
+
+    @Test
+    public void externalBFS() throws IOException {
+        Random rand = new Random(34);
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 600; i += 1) {
+            g.add();
+        }
+        Path dir = Files.createTempDirectory("ebfs");
+        Path edges = dir.resolve("edges.bin");
+        try (DataOutputStream out =
+                 new DataOutputStream(Files.newOutputStream(edges))) {
+            for (int i = 0; i < 1500; i += 1) {
+                int u = rand.nextInt(600) + 1, v = rand.nextInt(600) + 1;
+                g.add(u, v);
+                out.writeInt(u);
+                out.writeInt(v);
+            }
+        }
+        int[] dist = new MultiSourceBFS(g).distances(1)[0];
+        for (long budget : new long[] { 128, 1 << 20 }) {
+            Path result = dir.resolve("levels.bin");
+            long reached;
+            try (ExternalBFS bfs = new ExternalBFS(edges, dir, budget)) {
+                reached = bfs.search(1, result);
+                assertEquals(600, bfs.maxVertex());
+            }
+            long expected = 0;
+            for (int v = 1; v <= 600; v += 1) {
+                if (dist[v] >= 0) {
+                    expected += 1;
+                }
+            }
+            assertEquals(expected, reached);
+            try (LongFile.Reader in = new LongFile.Reader(result)) {
+                int lastLevel = 0;
+                for (long k = 0; k < reached; k += 1) {
+                    int v = in.readInt(), level = in.readInt(),
+                        parent = in.readInt();
+                    assertEquals(dist[v], level);
+                    assertTrue(level >= lastLevel);
+                    lastLevel = level;
+                    if (v != 1) {
+                        assertEquals(level - 1, dist[parent]);
+                        assertTrue(g.contains(parent, v));
+                    }
+                }
+                assertFalse(in.hasRemaining(1));
+            }
+            Files.delete(result);
+        }
+        Files.delete(edges);
+        try (java.util.stream.Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void traversalCursor() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 1000; i += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 1000; v += 1) {
+            g.add(v, v + 1);
+        }
+        ArrayList<Integer> seen = new ArrayList<>();
+        class Search extends BreadthFirstTraversal {
+            Search() {
+                super(g);
+            }
+            @Override
+            protected boolean visit(int v) {
+                seen.add(v);
+                if (v == 20) {
+                    pause();
+                }
+                return v != 10;
+            }
+        }
+        Search search = new Search();
+        assertFalse(search.traverse(1));
+        assertEquals(10, seen.size());
+        assertTrue(search.finished());
+        search.start(1);
+        assertFalse(search.step());
+        assertEquals(10, seen.size());
+        search.start(11);
+        assertTrue(search.step());
+        assertEquals(Integer.valueOf(11), seen.get(seen.size() - 1));
+        assertTrue(search.resume());
+        assertEquals(Integer.valueOf(20), seen.get(seen.size() - 1));
+        assertFalse(search.finished());
+        assertTrue(search.resume());
+        assertTrue(search.finished());
+        assertEquals(1000, seen.size());
+    }
+
+    @Test
+    public void versionedGraph() throws InterruptedException {
+        VersionedGraph g = new VersionedGraph(true);
+        for (int i = 0; i < 200; i += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 200; v += 1) {
+            g.add(v, v + 1);
+        }
+        VersionedGraph.Snapshot s1 = g.publish();
+        g.remove(100, 101);
+        g.remove(50);
+        g.add(1, 150);
+        VersionedGraph.Snapshot s2 = g.publish();
+        assertSame(s2, g.snapshot());
+        assertTrue(s2.version() > s1.version());
+        assertEquals(199, s1.edgeSize());
+        assertTrue(s1.contains(100, 101));
+        assertTrue(s1.contains(50));
+        assertEquals(1, s1.outDegree(1));
+        assertEquals(197, s2.edgeSize());
+        assertFalse(s2.contains(100, 101));
+        assertFalse(s2.contains(50));
+        assertEquals(0, s2.inDegree(51));
+        assertEquals(2, s2.outDegree(1));
+        assertEquals(50, g.add());
+        assertFalse(s2.contains(50));
+
+        ArrayList<Integer> seen = new ArrayList<>();
+        Traversal t = new BreadthFirstTraversal(s1) {
+            @Override
+            protected boolean visit(int v) {
+                seen.add(v);
+                return true;
+            }
+        };
+        t.traverse(1);
+        assertEquals(200, seen.size());
+
+        VersionedGraph u = new VersionedGraph(false);
+        for (int i = 0; i < 5; i += 1) {
+            u.add();
+        }
+        int e = u.add(2, 4);
+        assertEquals(e, u.add(4, 2));
+        u.add(3, 3);
+        assertEquals(2, u.edgeSize());
+        int count = 0;
+        for (int[] edge : u.edges()) {
+            assertTrue(edge[0] <= edge[1]);
+            count += 1;
+        }
+        assertEquals(2, count);
+
+        Thread[] readers = new Thread[4];
+        boolean[] ok = new boolean[readers.length];
+        for (int r = 0; r < readers.length; r += 1) {
+            int id = r;
+            readers[r] = new Thread(() -> {
+                boolean good = true;
+                for (int k = 0; k < 200; k += 1) {
+                    VersionedGraph.Snapshot s = g.snapshot();
+                    int edges = 0;
+                    for (int v : s.vertices()) {
+                        edges += s.outDegree(v);
+                    }
+                    good &= edges == s.edgeSize();
+                }
+                ok[id] = good;
+            });
+            readers[r].start();
+        }
+        for (int k = 0; k < 500; k += 1) {
+            int v = k % 199 + 1;
+            if (g.contains(v, v + 1)) {
+                g.remove(v, v + 1);
+            } else if (g.contains(v) && g.contains(v + 1)) {
+                g.add(v, v + 1);
+            }
+            g.publish();
+        }
+        for (Thread r : readers) {
+            r.join();
+        }
+        for (boolean b : ok) {
+            assertTrue(b);
+        }
+    }
+
+    @Test
+    public void concurrentGraph() throws InterruptedException {
+        ConcurrentGraph g = new ConcurrentGraph(true, 8);
+        int n = 2000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < n / threads.length; i += 1) {
+                    g.add();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(n, g.vertexSize());
+        assertEquals(n, g.maxVertex());
+        for (int t = 0; t < threads.length; t += 1) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int v = 1; v <= n; v += 1) {
+                    g.add(v, (v + id) % n + 1);
+                    g.add(v, (v * 7) % n + 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        int total = 0, ins = 0;
+        for (int v : g.vertices()) {
+            total += g.outDegree(v);
+            ins += g.inDegree(v);
+        }
+        assertEquals(g.edgeSize(), total);
+        assertEquals(total, ins);
+        assertEquals(9996, g.edgeSize());
+        assertTrue(g.contains(1, 3));
+        assertTrue(g.contains(10, 71));
+        g.remove(3);
+        assertFalse(g.contains(1, 3));
+        assertFalse(g.contains(3));
+        assertEquals(3, g.add());
+        assertEquals(0, g.outDegree(3));
+
+        ConcurrentGraph u = new ConcurrentGraph(false);
+        for (int i = 0; i < 4; i += 1) {
+            u.add();
+        }
+        int e = u.add(1, 2);
+        assertEquals(e, u.add(2, 1));
+        u.add(3, 3);
+        u.remove(2, 1);
+        assertEquals(1, u.edgeSize());
+        assertFalse(u.contains(1, 2));
+        assertTrue(u.contains(3, 3));
+    }
+
+    @Test
+    public void concurrentGraphHighDegree() throws InterruptedException {
+        ConcurrentGraph g = new ConcurrentGraph(true, 4);
+        int n = 4000;
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t += 1) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int v = 2 + id; v <= n; v += threads.length) {
+                    g.add(1, v);
+                    g.add(v, 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(n - 1, g.outDegree(1));
+        assertEquals(n - 1, g.inDegree(1));
+        assertEquals(2 * (n - 1), g.edgeSize());
+        int e = g.edgeId(1, 1000);
+        assertEquals(e, g.add(1, 1000));
+        for (int v = 2; v <= n; v += 2) {
+            g.remove(1, v);
+        }
+        g.remove(3);
+        for (int v = 2; v <= n; v += 1) {
+            boolean odd = v % 2 == 1 && v != 3;
+            assertEquals(odd, g.contains(1, v));
+            assertEquals(v != 3, g.contains(v, 1));
+        }
+        assertEquals(n / 2 - 2, g.outDegree(1));
+        assertEquals(n - 2, g.inDegree(1));
+        int count = 0;
+        for (int v : g.successors(1)) {
+            assertTrue(v % 2 == 1);
+            count += 1;
+        }
+        assertEquals(n / 2 - 2, count);
+        g.remove(1);
+        assertEquals(0, g.edgeSize());
+        assertEquals(0, g.inDegree(5));
+    }
+
+    @Test
+    public void sparseShortestPaths() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 5000; i += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 5000; v += 1) {
+            g.add(v, v + 1);
+            if (v + 3 <= 5000) {
+                g.add(v, v + 3);
+            }
+        }
+        SparseShortestPaths.Workspace ws = new SparseShortestPaths.Workspace();
+        for (int src : new int[] { 10, 2000 }) {
+            SparseShortestPaths sparse =
+                new SparseShortestPaths(g, src, src + 10, ws) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return v - u == 3 ? 2.5 : 1.0;
+                    }
+                };
+            SimpleShortestPaths dense =
+                new SimpleShortestPaths(g, src, src + 10) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return v - u == 3 ? 2.5 : 1.0;
+                    }
+                };
+            sparse.setPaths();
+            dense.setPaths();
+            assertEquals(dense.getWeight(src + 10), sparse.getWeight(src + 10),
+                         1e-9);
+            assertEquals(dense.pathTo(), sparse.pathTo());
+            assertTrue(sparse.reachedCount() < 40);
+            assertEquals(Double.POSITIVE_INFINITY, sparse.getWeight(1), 0.0);
+            assertEquals(0, sparse.getPredecessor(4000));
+        }
+        SparseShortestPaths all = new SparseShortestPaths(g, 4990) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return 1.0;
+            }
+        };
+        all.setPaths();
+        assertEquals(11, all.reachedCount());
+        assertEquals(4.0, all.getWeight(5000), 0.0);
+        assertEquals(Arrays.asList(4990, 4991, 4994, 4997, 5000),
+                     all.pathTo(5000));
+    }
+
+    @Test
+    public void reachabilityIndex() {
+        Random rand = new Random(39);
+        DirectedGraph g = new DirectedGraph();
+        int n = 300;
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        for (int i = 0; i < 450; i += 1) {
+            int u = rand.nextInt(n) + 1, v = rand.nextInt(n) + 1;
+            if (u < v || rand.nextInt(10) == 0) {
+                g.add(u, v);
+            }
+        }
+        g.remove(150);
+        ReachabilityIndex index = new ReachabilityIndex(g, 2, 1);
+        for (int u = 1; u <= n; u += 1) {
+            boolean[] reached = new boolean[n + 1];
+            if (g.contains(u)) {
+                new DepthFirstTraversal(g) {
+                    @Override
+                    protected boolean visit(int v) {
+                        reached[v] = true;
+                        return true;
+                    }
+                }.traverse(u);
+            }
+            for (int v = 1; v <= n; v += 1) {
+                assertEquals(reached[v], index.reachable(u, v));
+            }
+        }
+        assertTrue(index.searchCount() < n * n / 10);
+        assertFalse(index.reachable(150, 1));
+
+        DirectedGraph cyc = new DirectedGraph();
+        for (int i = 0; i < 4; i += 1) {
+            cyc.add();
+        }
+        cyc.add(1, 2);
+        cyc.add(2, 1);
+        cyc.add(2, 3);
+        ReachabilityIndex c = new ReachabilityIndex(cyc);
+        assertEquals(3, c.componentCount());
+        assertTrue(c.stronglyConnected(1, 2));
+        assertTrue(c.reachable(2, 3));
+        assertFalse(c.reachable(3, 1));
+        assertFalse(c.reachable(4, 1));
+        assertTrue(c.component(1) > c.component(3));
+    }
+
+    @Test
+    public void durableGraph() throws IOException {
+        Path dir = Files.createTempDirectory("durable");
+        DurableGraph.Codec<String> str = DurableGraph.STRING_CODEC;
+        DurableGraph<String, String> g =
+            new DurableGraph<>(dir, true, str, str, 4, 10);
+        for (int i = 0; i < 6; i += 1) {
+            g.add("v" + i);
+        }
+        int e12 = g.add(1, 2, "a");
+        g.add(2, 3);
+        g.add(3, 4, "c");
+        g.remove(2, 3);
+        g.remove(5);
+        g.add(4, 6, "x");
+        g.remove(4, 6);
+        assertEquals(1, g.checkpointSequenceNumber() > 0 ? 1 : 0);
+        g.add(4, 1, "d");
+        g.setLabel(4, "four");
+        g.add(6, 1);
+        g.commit();
+        int e = g.edgeId(4, 1);
+        g.add(1, 6, "last");
+        g.close();
+        Files.write(dir.resolve(DurableGraph.LOG_NAME),
+                    new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10,
+                                11, 12, 13},
+                    java.nio.file.StandardOpenOption.APPEND);
+
+        DurableGraph<String, String> h =
+            new DurableGraph<>(dir, true, str, str);
+        assertEquals(5, h.vertexSize());
+        assertFalse(h.contains(5));
+        assertEquals(5, h.edgeSize());
+        assertEquals(e12, h.edgeId(1, 2));
+        assertEquals(e, h.edgeId(4, 1));
+        assertEquals("a", h.getLabel(1, 2));
+        assertEquals("d", h.getLabel(4, 1));
+        assertEquals("last", h.getLabel(1, 6));
+        assertNull(h.getLabel(6, 1));
+        assertEquals("four", h.getLabel(4));
+        assertEquals("v5", h.getLabel(6));
+        assertEquals(5, h.add());
+        h.checkpoint();
+        assertEquals(0, Files.size(dir.resolve(DurableGraph.LOG_NAME)));
+        h.close();
+
+        DurableGraph<String, String> k =
+            new DurableGraph<>(dir, true, str, str);
+        assertEquals(6, k.vertexSize());
+        assertEquals("c", k.getLabel(3, 4));
+        assertFalse(k.contains(2, 3));
+        k.add(2, 3);
+        assertEquals(h.lastSequenceNumber() + 1, k.lastSequenceNumber());
+        k.close();
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void durableGraphRemovedMaxVertex() throws IOException {
+        Path dir = Files.createTempDirectory("durable");
+        DurableGraph.Codec<String> str = DurableGraph.STRING_CODEC;
+        DurableGraph<String, String> g =
+            new DurableGraph<>(dir, false, str, str);
+        g.add("a");
+        g.add("b");
+        g.add(1, 2, "ab");
+        g.remove(2);
+        g.checkpoint();
+        g.close();
+
+        DurableGraph<String, String> h =
+            new DurableGraph<>(dir, false, str, str);
+        assertEquals(1, h.vertexSize());
+        assertEquals(1, h.maxVertex());
+        assertEquals(0, h.edgeSize());
+        assertEquals("a", h.getLabel(1));
+        assertEquals(2, h.add());
+        h.close();
+        deleteDirectory(dir);
+
+        int[][] removals = { { 3, 2 }, { 2, 3 } };
+        for (int[] removal : removals) {
+            dir = Files.createTempDirectory("durable");
+            g = new DurableGraph<>(dir, true, str, str);
+            g.add("a");
+            g.add("b");
+            g.add("c");
+            g.add(1, 3);
+            g.add(1, 2);
+            for (int v : removal) {
+                g.remove(v);
+            }
+            int max = g.maxVertex();
+            g.checkpoint();
+            g.close();
+            h = new DurableGraph<>(dir, true, str, str);
+            assertEquals(max, h.maxVertex());
+            assertEquals(1, h.vertexSize());
+            assertEquals(0, h.edgeSize());
+            assertEquals(2, h.add());
+            h.close();
+            deleteDirectory(dir);
+        }
+    }
+
+    /** Delete the directory DIR and the files in it. */
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void minimumSpanningForestDirected() {
+        Random rand = new Random(29);
+        DirectedGraph g = new DirectedGraph();
+        int n = 40;
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        for (int i = 0; i < 120; i += 1) {
+            int u = rand.nextInt(n) + 1, v = rand.nextInt(n) + 1;
+            if (!g.contains(u, v) && !g.contains(v, u)) {
+                g.add(u, v);
+            }
+        }
+        double[] w = new double[4 * g.edgeSize() + 1];
+        Arrays.fill(w, 1000.0);
+        for (int[] e : g.edges()) {
+            w[g.edgeId(e[0], e[1])] = rand.nextInt(50) + 1;
+        }
+        MinimumSpanningForest msf = new MinimumSpanningForest(g, w,
+            java.util.concurrent.ForkJoinPool.commonPool());
+
+        ArrayList<int[]> edges = new ArrayList<>();
+        for (int[] e : g.edges()) {
+            if (e[0] != e[1]) {
+                edges.add(e);
+            }
+        }
+        edges.sort((e, f) -> Double.compare(w[g.edgeId(e[0], e[1])],
+                                            w[g.edgeId(f[0], f[1])]));
+        int[] parent = new int[n + 1];
+        for (int v = 0; v <= n; v += 1) {
+            parent[v] = v;
+        }
+        double total = 0.0;
+        int count = 0;
+        for (int[] e : edges) {
+            int a = e[0], b = e[1];
+            while (parent[a] != a) {
+                a = parent[a];
+            }
+            while (parent[b] != b) {
+                b = parent[b];
+            }
+            if (a != b) {
+                parent[a] = b;
+                total += w[g.edgeId(e[0], e[1])];
+                count += 1;
+            }
+        }
+        assertEquals(count, msf.edgeSize());
+        assertEquals(total, msf.totalWeight(), 1e-9);
+        for (int[] e : msf.edges()) {
+            assertTrue(e[0] < e[1]);
+            assertTrue(g.contains(e[0], e[1]) || g.contains(e[1], e[0]));
+        }
+    }
+
+    @Test
+    public void externalSorterBudget() throws IOException {
+        assertEquals(LongFile.MIN_BUFFER_SIZE, LongFile.bufferSize(100, 4));
+        assertEquals(LongFile.BUFFER_SIZE, LongFile.bufferSize(1L << 40, 4));
+        assertEquals(1 << 13, LongFile.bufferSize(1 << 15, 4));
+        Random rand = new Random(34);
+        Path dir = Files.createTempDirectory("esort");
+        long[] values = new long[5000];
+        for (long ioBudget : new long[] { 0, 1 << 14, 1 << 22 }) {
+            try (ExternalSorter sorter =
+                     new ExternalSorter(dir, 50, ioBudget)) {
+                for (int i = 0; i < values.length; i += 1) {
+                    values[i] = rand.nextLong();
+                    sorter.add(values[i]);
+                }
+                Arrays.sort(values);
+                try (ExternalSorter.Cursor c = sorter.sorted()) {
+                    for (long x : values) {
+                        assertTrue(c.hasNext());
+                        assertEquals(x, c.next());
+                    }
+                    assertFalse(c.hasNext());
+                }
+            }
+        }
+        try (java.util.stream.Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void versionedGraphHighDegree() {
+        VersionedGraph g = new VersionedGraph(true);
+        int n = 2000;
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        for (int v = 2; v <= n; v += 1) {
+            g.add(1, v);
+            g.add(v, 1);
+        }
+        VersionedGraph.Snapshot s1 = g.publish();
+        for (int v = 2; v <= n; v += 2) {
+            g.remove(1, v);
+        }
+        g.remove(3);
+        for (int v : g.successors(1)) {
+            g.remove(1, v);
+            g.add(v, 2);
+        }
+        VersionedGraph.Snapshot s2 = g.publish();
+        g.add(1, 4);
+        assertEquals(n - 1, s1.outDegree(1));
+        assertEquals(n - 1, s1.inDegree(1));
+        assertTrue(s1.contains(1, 3) && s1.contains(1, 1000));
+        assertEquals(0, s2.outDegree(1));
+        assertEquals(n - 2, s2.inDegree(1));
+        assertFalse(s2.contains(1, 3) || s2.contains(3));
+        assertEquals(n / 2 - 2, s2.inDegree(2));
+        assertTrue(s2.contains(5, 2) && !s2.contains(4, 2));
+        assertEquals(1, g.outDegree(1));
+        assertTrue(g.contains(1, 4));
+        int count = 0;
+        for (int[] edge : g.edges()) {
+            g.remove(edge[0], edge[1]);
+            count += 1;
+        }
+        assertEquals(s2.edgeSize() + 1, count);
+        assertEquals(0, g.edgeSize());
+        assertEquals(n - 2, s2.inDegree(1));
+    }
 }
@@ -0,0 +1,19 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.function.LongConsumer;
+
+/** A graph that is never materialized: its vertices are states encoded
+ *  as longs, and the successors of a state are generated on demand.  This
+ *  suits state spaces (such as puzzle or game positions) far too large to
+ *  build as a Graph.  See ImplicitTraversal and ImplicitShortestPaths.
+ *  @author Jacob Lin
+ */
+public interface ImplicitGraph {
+
+    /** Call OUT.accept(S) for each successor S of STATE.  May produce the
+     *  same successor more than once. */
+    void successors(long state, LongConsumer out);
+
+}
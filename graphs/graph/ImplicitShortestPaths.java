@@ -0,0 +1,310 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Shortest paths through an edge-weighted ImplicitGraph, analogous to
+ *  ShortestPaths.  The client supplies the edge weights through
+ *  getWeight, may stop the search at goal states by overriding
+ *  isDestination, and may supply an A* heuristic by overriding
+ *  estimatedDistance.  Search state is kept only for the states actually
+ *  reached, in an open-addressed hash table keyed by state.
+ *  @author Jacob Lin
+ */
+public abstract class ImplicitShortestPaths {
+
+    /** The shortest paths in G from SOURCE. */
+    public ImplicitShortestPaths(ImplicitGraph G, long source) {
+        _G = G;
+        _source = source;
+    }
+
+    /** Perform the search.  Stops when a state for which isDestination
+     *  is true has been reached by a shortest path, when all reachable
+     *  states have been settled, or when the limit on settled states
+     *  (see setLimit) is reached.  Must be called before using getWeight,
+     *  getPredecessor, and pathTo. */
+    public void setPaths() {
+        _table.clear();
+        _heapSize = 0;
+        _found = false;
+        _settled = 0;
+        int s = _table.find(_source, true);
+        _table.status[s] = OPEN;
+        _table.dist[s] = 0.0;
+        push(estimatedDistance(_source), _source);
+        while (_heapSize > 0 && _settled < _limit) {
+            long v = pop();
+            int i = _table.find(v, false);
+            if (_table.status[i] == CLOSED) {
+                continue;
+            }
+            _table.status[i] = CLOSED;
+            _settled += 1;
+            if (isDestination(v)) {
+                _found = true;
+                _dest = v;
+                return;
+            }
+            double d = _table.dist[i];
+            _G.successors(v, (w) -> relax(v, d, w));
+        }
+    }
+
+    /** Returns the starting state. */
+    public long getSource() {
+        return _source;
+    }
+
+    /** Returns true iff the last search reached a destination state. */
+    public boolean foundDestination() {
+        return _found;
+    }
+
+    /** Returns the destination state reached by the last search.  Valid
+     *  only if foundDestination(). */
+    public long getDest() {
+        if (!_found) {
+            throw new IllegalStateException("no destination found");
+        }
+        return _dest;
+    }
+
+    /** Returns the number of states settled by the last search. */
+    public long settledCount() {
+        return _settled;
+    }
+
+    /** Limit subsequent searches to settling at most LIMIT states. */
+    public void setLimit(long limit) {
+        _limit = limit;
+    }
+
+    /** Returns the current weight of state V: the length of the shortest
+     *  path to V found so far, or positive infinity if V has not been
+     *  reached. */
+    public double getWeight(long v) {
+        int i = _table.find(v, false);
+        return i < 0 ? Double.POSITIVE_INFINITY : _table.dist[i];
+    }
+
+    /** Returns true iff V has been reached. */
+    public boolean reached(long v) {
+        return _table.find(v, false) >= 0;
+    }
+
+    /** Returns the predecessor of V on the shortest path found to it.
+     *  V must have been reached and must not be the source. */
+    public long getPredecessor(long v) {
+        int i = _table.find(v, false);
+        if (i < 0 || v == _source) {
+            throw new IllegalArgumentException("no predecessor");
+        }
+        return _table.pred[i];
+    }
+
+    /** Returns a list of states starting at the source and ending at V
+     *  that represents a shortest path to V.  V must have been reached. */
+    public List<Long> pathTo(long v) {
+        if (!reached(v)) {
+            throw new IllegalArgumentException("Not a valid path");
+        }
+        ArrayList<Long> result = new ArrayList<>();
+        result.add(v);
+        while (v != _source) {
+            v = getPredecessor(v);
+            result.add(v);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Returns a list of states from the source to the destination state
+     *  found by the last search. */
+    public List<Long> pathTo() {
+        return pathTo(getDest());
+    }
+
+    /** Returns true iff V is a goal state, at which the search may stop.
+     *  By default, always false. */
+    protected boolean isDestination(long v) {
+        return false;
+    }
+
+    /** Returns an estimated heuristic weight of the shortest path from
+     *  state V to a destination.  This is assumed to be no more than the
+     *  actual weight, and is 0 by default. */
+    protected double estimatedDistance(long v) {
+        return 0.0;
+    }
+
+    /** Returns the weight of the edge (U, V), which must be nonnegative. */
+    protected abstract double getWeight(long u, long v);
+
+    /** Consider the edge from U, at distance D, to W. */
+    private void relax(long u, double d, long w) {
+        double dw = d + getWeight(u, w);
+        int i = _table.find(w, true);
+        if (_table.status[i] == CLOSED) {
+            return;
+        }
+        if (_table.status[i] == NEW || dw < _table.dist[i]) {
+            _table.status[i] = OPEN;
+            _table.dist[i] = dw;
+            _table.pred[i] = u;
+            push(dw + estimatedDistance(w), w);
+        }
+    }
+
+    /** Add state V to the heap with key KEY. */
+    private void push(double key, long v) {
+        if (_heapSize == _heapKey.length) {
+            _heapKey = Arrays.copyOf(_heapKey, 2 * _heapSize);
+            _heapVal = Arrays.copyOf(_heapVal, 2 * _heapSize);
+        }
+        int i = _heapSize;
+        _heapSize += 1;
+        while (i > 0 && _heapKey[(i - 1) / 2] > key) {
+            _heapKey[i] = _heapKey[(i - 1) / 2];
+            _heapVal[i] = _heapVal[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        _heapKey[i] = key;
+        _heapVal[i] = v;
+    }
+
+    /** Remove and return the state with the smallest key. */
+    private long pop() {
+        long result = _heapVal[0];
+        _heapSize -= 1;
+        double key = _heapKey[_heapSize];
+        long v = _heapVal[_heapSize];
+        int i = 0;
+        while (2 * i + 1 < _heapSize) {
+            int c = 2 * i + 1;
+            if (c + 1 < _heapSize && _heapKey[c + 1] < _heapKey[c]) {
+                c += 1;
+            }
+            if (_heapKey[c] >= key) {
+                break;
+            }
+            _heapKey[i] = _heapKey[c];
+            _heapVal[i] = _heapVal[c];
+            i = c;
+        }
+        _heapKey[i] = key;
+        _heapVal[i] = v;
+        return result;
+    }
+
+    /** Status of a state not yet in the table. */
+    private static final byte NEW = 0;
+    /** Status of a reached, unsettled state. */
+    private static final byte OPEN = 1;
+    /** Status of a settled state. */
+    private static final byte CLOSED = 2;
+
+    /** An open-addressed table of search state, keyed by state. */
+    private static class StateTable {
+        /** An empty table. */
+        StateTable() {
+            allocate(LongHashSet.INITIAL_CAPACITY);
+        }
+
+        /** Returns the index of KEY, or -1 if it is absent and not ADD.
+         *  If absent and ADD, inserts KEY with status NEW. */
+        int find(long key, boolean add) {
+            int mask = keys.length - 1;
+            for (int i = LongHashSet.slot(key, mask); ;
+                 i = (i + 1) & mask) {
+                if (!used[i]) {
+                    if (!add) {
+                        return -1;
+                    }
+                    if (_size + 1 > keys.length * LongHashSet.MAX_LOAD) {
+                        resize();
+                        return find(key, true);
+                    }
+                    used[i] = true;
+                    keys[i] = key;
+                    _size += 1;
+                    return i;
+                } else if (keys[i] == key && used[i]) {
+                    return i;
+                }
+            }
+        }
+
+        /** Remove all entries. */
+        void clear() {
+            if (_size > 0) {
+                allocate(LongHashSet.INITIAL_CAPACITY);
+            }
+        }
+
+        /** Set up empty arrays of size N. */
+        private void allocate(int n) {
+            keys = new long[n];
+            used = new boolean[n];
+            status = new byte[n];
+            dist = new double[n];
+            pred = new long[n];
+            _size = 0;
+        }
+
+        /** Double the size of the table. */
+        private void resize() {
+            long[] oldKeys = keys, oldPred = pred;
+            boolean[] oldUsed = used;
+            byte[] oldStatus = status;
+            double[] oldDist = dist;
+            allocate(2 * oldKeys.length);
+            for (int j = 0; j < oldKeys.length; j += 1) {
+                if (oldUsed[j]) {
+                    int i = find(oldKeys[j], true);
+                    status[i] = oldStatus[j];
+                    dist[i] = oldDist[j];
+                    pred[i] = oldPred[j];
+                }
+            }
+        }
+
+        /** State stored in each slot. */
+        private long[] keys;
+        /** used[i] iff slot I is occupied. */
+        private boolean[] used;
+        /** Search status (NEW, OPEN, CLOSED) of each state. */
+        private byte[] status;
+        /** Distance of each state from the source. */
+        private double[] dist;
+        /** Predecessor of each state. */
+        private long[] pred;
+        /** Number of occupied slots. */
+        private int _size;
+    }
+
+    /** The graph being searched. */
+    private final ImplicitGraph _G;
+    /** The starting state. */
+    private final long _source;
+    /** The destination state found, if _found. */
+    private long _dest;
+    /** True iff the last search reached a destination. */
+    private boolean _found;
+    /** Number of states settled by the last search. */
+    private long _settled;
+    /** Maximum number of states to settle. */
+    private long _limit = Long.MAX_VALUE;
+    /** Search state of each state reached. */
+    private final StateTable _table = new StateTable();
+    /** Keys of a binary heap of states. */
+    private double[] _heapKey = new double[64];
+    /** Values of the heap. */
+    private long[] _heapVal = new long[64];
+    /** Number of heap entries. */
+    private int _heapSize;
+}
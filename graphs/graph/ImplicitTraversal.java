@@ -0,0 +1,118 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A generalized traversal of an ImplicitGraph, analogous to Traversal.
+ *  The marks on visited states are kept in a compact hash set rather than
+ *  an array indexed by vertex, so the cost of a traversal depends only on
+ *  the number of states actually reached.
+ *
+ *  Generally, the client will extend ImplicitTraversal, overriding the
+ *  visit method to determine what happens when a state is visited (and
+ *  whether the traversal continues), and possibly processSuccessor to
+ *  prune the search.  Traversals may be restarted, remembering the
+ *  previously marked states.
+ *  @author Jacob Lin
+ */
+public abstract class ImplicitTraversal {
+
+    /** A traversal of G that is depth-first if DEPTHFIRST, and otherwise
+     *  breadth-first. */
+    protected ImplicitTraversal(ImplicitGraph G, boolean depthFirst) {
+        _G = G;
+        _depthFirst = depthFirst;
+    }
+
+    /** Unmark all states. */
+    public void clear() {
+        _marks.clear();
+        _head = _tail = 0;
+    }
+
+    /** Initialize the fringe to the states in V0 and perform a traversal.
+     *  Returns false iff the traversal was stopped by visit returning
+     *  false. */
+    public boolean traverse(long... v0) {
+        _head = _tail = 0;
+        for (long v : v0) {
+            push(v);
+        }
+        while (_head < _tail) {
+            long v;
+            if (_depthFirst) {
+                _tail -= 1;
+                v = _fringe[_tail];
+            } else {
+                v = _fringe[_head];
+                _head += 1;
+            }
+            if (!marked(v)) {
+                mark(v);
+                if (!visit(v)) {
+                    return false;
+                }
+                _G.successors(v, (w) -> {
+                    if (processSuccessor(v, w)) {
+                        push(w);
+                    }
+                });
+            }
+        }
+        return true;
+    }
+
+    /** Returns the number of states currently marked. */
+    public long markedCount() {
+        return _marks.size();
+    }
+
+    /** Returns true iff V has been marked. */
+    protected boolean marked(long v) {
+        return _marks.contains(v);
+    }
+
+    /** Mark state V. */
+    protected void mark(long v) {
+        _marks.add(v);
+    }
+
+    /** Perform a visit on state V.  Returns false iff the traversal is to
+     *  terminate immediately. */
+    protected boolean visit(long v) {
+        return true;
+    }
+
+    /** Process successor V to U.  Returns true iff V is then to be added
+     *  to the fringe.  By default, returns true iff V is unmarked. */
+    protected boolean processSuccessor(long u, long v) {
+        return !marked(v);
+    }
+
+    /** Add V to the fringe. */
+    private void push(long v) {
+        if (_tail == _fringe.length) {
+            if (_head > _fringe.length / 2) {
+                System.arraycopy(_fringe, _head, _fringe, 0, _tail - _head);
+                _tail -= _head;
+                _head = 0;
+            } else {
+                _fringe = Arrays.copyOf(_fringe, 2 * _fringe.length);
+            }
+        }
+        _fringe[_tail] = v;
+        _tail += 1;
+    }
+
+    /** The graph being traversed. */
+    private final ImplicitGraph _G;
+    /** True for a depth-first traversal. */
+    private final boolean _depthFirst;
+    /** Marked states. */
+    private final LongHashSet _marks = new LongHashSet();
+    /** The fringe, occupying _fringe[_head .. _tail-1]. */
+    private long[] _fringe = new long[64];
+    /** Bounds of the fringe. */
+    private int _head, _tail;
+}
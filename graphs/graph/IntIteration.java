@@ -0,0 +1,44 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.NoSuchElementException;
+
+/** An Iteration over the elements of an int array, or a prefix of one,
+ *  which the client must not modify afterwards.
+ *  @author Jacob Lin
+ */
+class IntIteration extends Iteration<Integer> {
+
+    /** An iteration over A. */
+    IntIteration(int[] a) {
+        this(a, a.length);
+    }
+
+    /** An iteration over the first N elements of A. */
+    IntIteration(int[] a, int n) {
+        _a = a;
+        _n = n;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return _k < _n;
+    }
+
+    @Override
+    public Integer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        _k += 1;
+        return _a[_k - 1];
+    }
+
+    /** The elements. */
+    private final int[] _a;
+    /** Number of elements. */
+    private final int _n;
+    /** Index of the next element. */
+    private int _k;
+}
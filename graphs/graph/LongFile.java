@@ -0,0 +1,167 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Buffered sequential reading and writing of binary files of ints and
+ *  longs (big-endian) through NIO channels.
+ *  @author Jacob Lin
+ */
+final class LongFile {
+
+    /** Not instantiable. */
+    private LongFile() {
+    }
+
+    /** Default, and largest useful, size of I/O buffers in bytes. */
+    static final int BUFFER_SIZE = 1 << 16;
+    /** Smallest size of I/O buffers in bytes. */
+    static final int MIN_BUFFER_SIZE = 1 << 12;
+
+    /** Returns the size of each buffer when STREAMS readers and writers
+     *  share BUDGET bytes of buffer space, between MIN_BUFFER_SIZE and
+     *  BUFFER_SIZE. */
+    static int bufferSize(long budget, int streams) {
+        return (int) Math.max(MIN_BUFFER_SIZE,
+                              Math.min(BUFFER_SIZE,
+                                       budget / Math.max(1, streams)));
+    }
+
+    /** Sequential reader of a binary file. */
+    static class Reader implements Closeable {
+        /** A reader positioned at the beginning of the file named PATH. */
+        Reader(Path path) throws IOException {
+            this(path, BUFFER_SIZE);
+        }
+
+        /** A reader positioned at the beginning of the file named PATH,
+         *  with a buffer of BUFFERSIZE bytes. */
+        Reader(Path path, int bufferSize) throws IOException {
+            _channel = FileChannel.open(path, StandardOpenOption.READ);
+            _buffer = ByteBuffer.allocateDirect(
+                Math.max(MIN_BUFFER_SIZE, bufferSize));
+            _buffer.limit(0);
+        }
+
+        /** Returns the size of the file in bytes. */
+        long size() throws IOException {
+            return _channel.size();
+        }
+
+        /** Position me at byte offset POS of the file. */
+        void seek(long pos) throws IOException {
+            _channel.position(pos);
+            _buffer.limit(0);
+        }
+
+        /** Returns the current byte offset of the reader. */
+        long position() throws IOException {
+            return _channel.position() - _buffer.remaining();
+        }
+
+        /** Returns true iff at least N more bytes remain. */
+        boolean hasRemaining(int n) throws IOException {
+            return _buffer.remaining() >= n || fill(n);
+        }
+
+        /** Returns the next long. */
+        long readLong() throws IOException {
+            if (!hasRemaining(Long.BYTES)) {
+                throw new EOFException();
+            }
+            return _buffer.getLong();
+        }
+
+        /** Returns the next int. */
+        int readInt() throws IOException {
+            if (!hasRemaining(Integer.BYTES)) {
+                throw new EOFException();
+            }
+            return _buffer.getInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _channel.close();
+        }
+
+        /** Refill the buffer.  Returns true iff at least N bytes are then
+         *  available. */
+        private boolean fill(int n) throws IOException {
+            _buffer.compact();
+            while (_buffer.position() < n) {
+                if (_channel.read(_buffer) < 0) {
+                    break;
+                }
+            }
+            _buffer.flip();
+            return _buffer.remaining() >= n;
+        }
+
+        /** The file. */
+        private final FileChannel _channel;
+        /** Bytes read but not yet consumed. */
+        private final ByteBuffer _buffer;
+    }
+
+    /** Sequential writer of a binary file. */
+    static class Writer implements Closeable {
+        /** A writer creating or replacing the file named PATH. */
+        Writer(Path path) throws IOException {
+            this(path, BUFFER_SIZE);
+        }
+
+        /** A writer creating or replacing the file named PATH, with a
+         *  buffer of BUFFERSIZE bytes. */
+        Writer(Path path, int bufferSize) throws IOException {
+            _channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+            _buffer = ByteBuffer.allocateDirect(
+                Math.max(MIN_BUFFER_SIZE, bufferSize));
+        }
+
+        /** Append X. */
+        void writeLong(long x) throws IOException {
+            if (_buffer.remaining() < Long.BYTES) {
+                flush();
+            }
+            _buffer.putLong(x);
+        }
+
+        /** Append X. */
+        void writeInt(int x) throws IOException {
+            if (_buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            _buffer.putInt(x);
+        }
+
+        /** Write out any buffered data. */
+        void flush() throws IOException {
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+            _buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            _channel.close();
+        }
+
+        /** The file. */
+        private final FileChannel _channel;
+        /** Bytes not yet written. */
+        private final ByteBuffer _buffer;
+    }
+}
@@ -0,0 +1,101 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A set of longs, stored in a single open-addressed table with linear
+ *  probing.  Uses about 8 to 16 bytes per element, with no per-element
+ *  objects.  Elements cannot be removed individually.
+ *  @author Jacob Lin
+ */
+class LongHashSet {
+
+    /** An empty set. */
+    LongHashSet() {
+        _keys = new long[INITIAL_CAPACITY];
+    }
+
+    /** Returns the number of elements. */
+    long size() {
+        return _size + (_hasZero ? 1 : 0);
+    }
+
+    /** Returns true iff X is in me. */
+    boolean contains(long x) {
+        if (x == 0) {
+            return _hasZero;
+        }
+        int mask = _keys.length - 1;
+        for (int i = slot(x, mask); ; i = (i + 1) & mask) {
+            if (_keys[i] == x) {
+                return true;
+            } else if (_keys[i] == 0) {
+                return false;
+            }
+        }
+    }
+
+    /** Add X to me.  Returns true iff X was not already present. */
+    boolean add(long x) {
+        if (x == 0) {
+            boolean fresh = !_hasZero;
+            _hasZero = true;
+            return fresh;
+        }
+        int mask = _keys.length - 1;
+        for (int i = slot(x, mask); ; i = (i + 1) & mask) {
+            if (_keys[i] == x) {
+                return false;
+            } else if (_keys[i] == 0) {
+                _keys[i] = x;
+                _size += 1;
+                if (_size > _keys.length * MAX_LOAD) {
+                    resize();
+                }
+                return true;
+            }
+        }
+    }
+
+    /** Remove all elements. */
+    void clear() {
+        Arrays.fill(_keys, 0L);
+        _size = 0;
+        _hasZero = false;
+    }
+
+    /** Double the size of the table. */
+    private void resize() {
+        long[] old = _keys;
+        _keys = new long[2 * old.length];
+        int mask = _keys.length - 1;
+        for (long x : old) {
+            if (x != 0) {
+                int i = slot(x, mask);
+                while (_keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = x;
+            }
+        }
+    }
+
+    /** Returns the home slot of X in a table with index mask MASK. */
+    static int slot(long x, int mask) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Initial table size (a power of 2). */
+    static final int INITIAL_CAPACITY = 64;
+    /** Maximum fraction of the table in use. */
+    static final double MAX_LOAD = 0.5;
+
+    /** Table of elements; 0 marks an empty slot. */
+    private long[] _keys;
+    /** Number of nonzero elements. */
+    private int _size;
+    /** True iff 0 is an element. */
+    private boolean _hasZero;
+}
@@ -0,0 +1,80 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A map from nonzero longs to nonnegative ints, stored in parallel
+ *  open-addressed tables with linear probing, like LongHashSet.  Uses
+ *  about 24 to 48 bytes per entry, with no per-entry objects.  Entries
+ *  cannot be removed.
+ *  @author Jacob Lin
+ */
+class LongIntMap {
+
+    /** An empty map. */
+    LongIntMap() {
+        _keys = new long[LongHashSet.INITIAL_CAPACITY];
+        _values = new int[LongHashSet.INITIAL_CAPACITY];
+    }
+
+    /** Returns the number of entries. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the value for KEY, or -1 if there is none. */
+    int get(long key) {
+        int mask = _keys.length - 1;
+        for (int i = LongHashSet.slot(key, mask); ; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return _values[i];
+            } else if (_keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /** Map KEY, which must be nonzero, to VALUE unless it already has a
+     *  value.  Returns the previous value, or -1 if there was none. */
+    int putIfAbsent(long key, int value) {
+        int mask = _keys.length - 1;
+        for (int i = LongHashSet.slot(key, mask); ; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return _values[i];
+            } else if (_keys[i] == 0) {
+                _keys[i] = key;
+                _values[i] = value;
+                _size += 1;
+                if (_size > _keys.length * LongHashSet.MAX_LOAD) {
+                    resize();
+                }
+                return -1;
+            }
+        }
+    }
+
+    /** Double the size of the table. */
+    private void resize() {
+        long[] oldKeys = _keys;
+        int[] oldValues = _values;
+        _keys = new long[2 * oldKeys.length];
+        _values = new int[2 * oldKeys.length];
+        int mask = _keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j += 1) {
+            if (oldKeys[j] != 0) {
+                int i = LongHashSet.slot(oldKeys[j], mask);
+                while (_keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = oldKeys[j];
+                _values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /** Table of keys; 0 marks an empty slot. */
+    private long[] _keys;
+    /** Value of the key in each slot. */
+    private int[] _values;
+    /** Number of entries. */
+    private int _size;
+}
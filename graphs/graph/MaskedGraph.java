@@ -0,0 +1,322 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+/** A view of a subgraph of another, preexisting Graph.  Vertices and edges
+ *  of the underlying graph may be hidden individually (in constant time) or
+ *  by supplying filters, after which all queries (contains, successors,
+ *  predecessors, degrees, edges, and so forth) behave as if the hidden
+ *  elements had been removed.  Nothing is copied: the view reflects the
+ *  current state of the underlying graph, so that algorithms such as
+ *  Traversal and ShortestPaths may be run on the subgraph directly.
+ *
+ *  Structural modifications (add and remove) act upon the underlying
+ *  graph.  A vertex or edge that is newly added is always visible unless
+ *  rejected by a filter.
+ *  @author Jacob Lin
+ */
+public class MaskedGraph extends GraphFilter {
+
+    /** Tests whether an edge should be visible. */
+    public interface EdgeFilter {
+        /** Returns true iff the edge (U, V) is to be visible. */
+        boolean test(int u, int v);
+    }
+
+    /** A view of G in which everything is initially visible. */
+    public MaskedGraph(Graph G) {
+        super(G);
+        _G = G;
+    }
+
+    /** Hide vertex V and all its incident edges. */
+    public void hide(int v) {
+        if (v > 0) {
+            _hiddenVertices.set(v);
+        }
+    }
+
+    /** Make vertex V visible again, unless it is rejected by my vertex
+     *  filter. */
+    public void show(int v) {
+        if (v > 0) {
+            _hiddenVertices.clear(v);
+        }
+    }
+
+    /** Hide the edge (U, V).  The vertices U and V are unaffected. */
+    public void hide(int u, int v) {
+        _hiddenEdges.add(edgeKey(u, v));
+    }
+
+    /** Make the edge (U, V) visible again, unless it is rejected by my edge
+     *  filter. */
+    public void show(int u, int v) {
+        _hiddenEdges.remove(edgeKey(u, v));
+    }
+
+    /** Returns true iff vertex V is hidden, either explicitly or by my
+     *  vertex filter.  Returns false if V is not positive. */
+    public boolean isHidden(int v) {
+        if (v <= 0) {
+            return false;
+        }
+        return _hiddenVertices.get(v)
+            || (_vertexFilter != null && !_vertexFilter.test(v));
+    }
+
+    /** Returns true iff the edge (U, V) is hidden, either explicitly or by
+     *  my edge filter.  Does not consider whether U or V is hidden. */
+    public boolean isHidden(int u, int v) {
+        return (!_hiddenEdges.isEmpty()
+                && _hiddenEdges.contains(edgeKey(u, v)))
+            || (_edgeFilter != null && !_edgeFilter.test(u, v));
+    }
+
+    /** Make all explicitly hidden vertices and edges visible again.  Does
+     *  not affect the filters. */
+    public void showAll() {
+        _hiddenVertices.clear();
+        _hiddenEdges.clear();
+    }
+
+    /** Hide all vertices V for which FILTER.test(V) is false.  A null
+     *  FILTER removes any existing vertex filter. */
+    public void setVertexFilter(IntPredicate filter) {
+        _vertexFilter = filter;
+    }
+
+    /** Hide all edges (U, V) for which FILTER.test(U, V) is false.  A null
+     *  FILTER removes any existing edge filter.  For undirected graphs,
+     *  FILTER should be symmetric. */
+    public void setEdgeFilter(EdgeFilter filter) {
+        _edgeFilter = filter;
+    }
+
+    @Override
+    public int add() {
+        int v = _G.add();
+        _hiddenVertices.clear(v);
+        return v;
+    }
+
+    @Override
+    public int add(int u, int v) {
+        checkMyVertex(u);
+        checkMyVertex(v);
+        _hiddenEdges.remove(edgeKey(u, v));
+        return _G.add(u, v);
+    }
+
+    @Override
+    public void remove(int v) {
+        if (contains(v)) {
+            _G.remove(v);
+            _hiddenVertices.clear(v);
+        }
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        if (contains(u, v)) {
+            _G.remove(u, v);
+        }
+    }
+
+    @Override
+    public int vertexSize() {
+        int n;
+        n = 0;
+        for (Iteration<Integer> it = vertices(); it.hasNext(); it.next()) {
+            n += 1;
+        }
+        return n;
+    }
+
+    @Override
+    public int maxVertex() {
+        for (int v = _G.maxVertex(); v > 0; v -= 1) {
+            if (contains(v)) {
+                return v;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int edgeSize() {
+        int n;
+        n = 0;
+        for (Iteration<int[]> it = edges(); it.hasNext(); it.next()) {
+            n += 1;
+        }
+        return n;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        int n;
+        n = 0;
+        for (Iteration<Integer> it = successors(v); it.hasNext(); it.next()) {
+            n += 1;
+        }
+        return n;
+    }
+
+    @Override
+    public int inDegree(int v) {
+        if (!isDirected()) {
+            return outDegree(v);
+        }
+        int n;
+        n = 0;
+        for (Iteration<Integer> it = predecessors(v); it.hasNext();
+             it.next()) {
+            n += 1;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return _G.contains(u) && !isHidden(u);
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return contains(u) && contains(v) && _G.contains(u, v)
+            && !isHidden(u, v);
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        return new FilteredIteration(_G.vertices(), (v) -> !isHidden(v));
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        if (!contains(v)) {
+            return Iteration.iteration(new ArrayList<Integer>());
+        }
+        return new FilteredIteration(_G.successors(v),
+            (w) -> !isHidden(w) && !isHidden(v, w));
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        if (!contains(v)) {
+            return Iteration.iteration(new ArrayList<Integer>());
+        }
+        return new FilteredIteration(_G.predecessors(v),
+            (u) -> !isHidden(u) && !isHidden(u, v));
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        Iteration<int[]> all = _G.edges();
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_next == null && all.hasNext()) {
+                    int[] e = all.next();
+                    if (!isHidden(e[0]) && !isHidden(e[1])
+                        && !isHidden(e[0], e[1])) {
+                        _next = e;
+                    }
+                }
+                return _next != null;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int[] result = _next;
+                _next = null;
+                return result;
+            }
+
+            /** The next edge to deliver, or null if not yet found. */
+            private int[] _next;
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        return contains(u, v) ? super.edgeId(u, v) : 0;
+    }
+
+    @Override
+    protected void checkMyVertex(int v) {
+        if (!contains(v)) {
+            throw new IllegalArgumentException("vertex not from Graph");
+        }
+    }
+
+    /** Returns a key identifying the edge (U, V) in _hiddenEdges.  The key
+     *  is independent of the order of U and V for undirected graphs. */
+    private long edgeKey(int u, int v) {
+        if (!isDirected() && u > v) {
+            return ((long) v << 32) | (u & 0xffffffffL);
+        }
+        return ((long) u << 32) | (v & 0xffffffffL);
+    }
+
+    /** An Iteration over the values of another Iteration of vertices that
+     *  are accepted by a filter, computed lazily. */
+    private static class FilteredIteration extends Iteration<Integer> {
+        /** The values of ITER accepted by FILTER. */
+        FilteredIteration(Iteration<Integer> iter, IntPredicate filter) {
+            _iter = iter;
+            _filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!_ready && _iter.hasNext()) {
+                int v = _iter.next();
+                if (_filter.test(v)) {
+                    _next = v;
+                    _ready = true;
+                }
+            }
+            return _ready;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _ready = false;
+            return _next;
+        }
+
+        /** The underlying Iteration. */
+        private final Iteration<Integer> _iter;
+        /** Selects the values of _iter to deliver. */
+        private final IntPredicate _filter;
+        /** True iff _next holds a value not yet delivered. */
+        private boolean _ready;
+        /** The next value to deliver, if _ready. */
+        private int _next;
+    }
+
+    /** The underlying graph. */
+    private final Graph _G;
+    /** Explicitly hidden vertices. */
+    private final BitSet _hiddenVertices = new BitSet();
+    /** Keys (see edgeKey) of explicitly hidden edges. */
+    private final HashSet<Long> _hiddenEdges = new HashSet<>();
+    /** Additional test for visible vertices, or null. */
+    private IntPredicate _vertexFilter;
+    /** Additional test for visible edges, or null. */
+    private EdgeFilter _edgeFilter;
+}
@@ -0,0 +1,283 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** A minimum spanning forest of an edge-weighted graph, computed by
+ *  Boruvka's algorithm.  Edge directions are ignored, and self edges are
+ *  never part of the forest.
+ *
+ *  In each round, every component selects its lightest outgoing edge (in
+ *  parallel, by compare-and-set on a per-component slot), and the selected
+ *  edges are then used to merge components in a concurrent union-find
+ *  structure.  Edges whose end points have come to lie in the same
+ *  component are dropped between rounds, so each round works on a shrinking
+ *  primitive array of candidate edges.  Ties among equal weights are
+ *  broken consistently, so the result is always a forest.
+ *  @author Jacob Lin
+ */
+public class MinimumSpanningForest {
+
+    /** A minimum spanning forest of G, where the weight of edge (u, v)
+     *  is WEIGHTS.weight(u, v).  Runs on the common ForkJoin pool. */
+    public MinimumSpanningForest(Graph G, EdgeWeight weights) {
+        this(G, weights, ForkJoinPool.commonPool());
+    }
+
+    /** A minimum spanning forest of G, where the weight of edge (u, v)
+     *  is WEIGHTS[e], with e the unique identifier of (u, v) (the value
+     *  returned when the edge was added to G).  Runs on POOL. */
+    public MinimumSpanningForest(Graph G, double[] weights,
+                                 ForkJoinPool pool) {
+        this(G, (u, v) -> weights[G.edgeId(u, v)], pool);
+    }
+
+    /** A minimum spanning forest of G, where the weight of edge (u, v)
+     *  is WEIGHTS.weight(u, v).  Runs on POOL. */
+    public MinimumSpanningForest(Graph G, EdgeWeight weights,
+                                 ForkJoinPool pool) {
+        _pool = pool;
+        _maxVertex = G.maxVertex();
+        collectEdges(new Adjacency(G), G.isDirected());
+        Parallel.forRange(pool, 0, _from.length, GRAIN,
+            (e) -> _weight[e] = weights.weight(_from[e], _to[e]));
+        _sets = new ConcurrentUnionFind(_maxVertex + 1);
+        _inForest = new boolean[_from.length];
+        computeForest();
+    }
+
+    /** Returns the number of edges in the forest. */
+    public int edgeSize() {
+        return _forestSize;
+    }
+
+    /** Returns the total weight of the forest. */
+    public double totalWeight() {
+        return _totalWeight;
+    }
+
+    /** Returns an iteration over the edges of the forest, as two-element
+     *  arrays (u, v) with u <= v, in no particular order. */
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_k < _inForest.length && !_inForest[_k]) {
+                    _k += 1;
+                }
+                return _k < _inForest.length;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int[] result = new int[] {
+                    Math.min(_from[_k], _to[_k]), Math.max(_from[_k], _to[_k])
+                };
+                _k += 1;
+                return result;
+            }
+
+            /** Index of next candidate edge. */
+            private int _k;
+        };
+    }
+
+    /** Returns the clustering of the vertices into at most K groups
+     *  (single-linkage clustering) obtained by removing the heaviest
+     *  edges of the forest.  The result L has L[v] in 1 .. K for each
+     *  vertex v, and 0 for other indices; clusters are numbered in order
+     *  of their smallest vertex.  If the forest has more than K trees,
+     *  the result has one cluster per tree. */
+    public int[] clusters(int k) {
+        Integer[] order = new Integer[_forestSize];
+        int n;
+        n = 0;
+        for (int e = 0; e < _inForest.length; e += 1) {
+            if (_inForest[e]) {
+                order[n] = e;
+                n += 1;
+            }
+        }
+        Arrays.sort(order, (e, f) -> lighter(e, f) ? -1 : e.equals(f) ? 0 : 1);
+        int trees = _vertexSize - _forestSize;
+        ConcurrentUnionFind sets = new ConcurrentUnionFind(_maxVertex + 1);
+        for (int i = 0; i < n && trees + (n - i) > k; i += 1) {
+            sets.union(_from[order[i]], _to[order[i]]);
+        }
+        int[] labels = new int[_maxVertex + 1];
+        int count;
+        count = 0;
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (_isVertex[v]) {
+                int r = sets.find(v);
+                if (r == v) {
+                    count += 1;
+                    labels[v] = count;
+                } else {
+                    labels[v] = labels[r];
+                }
+            }
+        }
+        return labels;
+    }
+
+    /** Fill in _from and _to with the end points of each distinct
+     *  undirected, non-self edge of ADJ, which is DIRECTED if indicated,
+     *  and allocate _weight.  Each edge keeps an orientation in which it
+     *  is present in ADJ, so that its weight may be looked up. */
+    private void collectEdges(Adjacency adj, boolean directed) {
+        int m;
+        m = 0;
+        _isVertex = new boolean[_maxVertex + 1];
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (adj.contains(v)) {
+                _isVertex[v] = true;
+                _vertexSize += 1;
+            }
+        }
+        int[] from = new int[adj.size()], to = new int[adj.size()];
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            for (int e = adj.start(v); e < adj.end(v); e += 1) {
+                int w = adj.target(e);
+                if (v < w) {
+                    from[m] = v;
+                    to[m] = w;
+                    m += 1;
+                } else if (directed && v > w && !hasEdge(adj, w, v)) {
+                    from[m] = v;
+                    to[m] = w;
+                    m += 1;
+                }
+            }
+        }
+        _from = Arrays.copyOf(from, m);
+        _to = Arrays.copyOf(to, m);
+        _weight = new double[m];
+    }
+
+    /** Returns true iff ADJ contains the edge (U, V). */
+    private static boolean hasEdge(Adjacency adj, int u, int v) {
+        for (int e = adj.start(u); e < adj.end(u); e += 1) {
+            if (adj.target(e) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Run Boruvka's algorithm, setting _inForest, _forestSize, and
+     *  _totalWeight. */
+    private void computeForest() {
+        int[] live = new int[_from.length];
+        for (int e = 0; e < live.length; e += 1) {
+            live[e] = e;
+        }
+        int liveSize = live.length;
+        boolean[] keep = new boolean[live.length];
+        AtomicIntegerArray best = new AtomicIntegerArray(_maxVertex + 1);
+        for (int v = 0; v <= _maxVertex; v += 1) {
+            best.set(v, -1);
+        }
+        int[] roots = new int[_maxVertex + 1];
+
+        while (liveSize > 0) {
+            int[] cand = live;
+            Parallel.forRange(_pool, 0, liveSize, GRAIN, (i) -> {
+                int e = cand[i];
+                int ru = _sets.find(_from[e]), rv = _sets.find(_to[e]);
+                keep[i] = ru != rv;
+                if (keep[i]) {
+                    propose(best, ru, e);
+                    propose(best, rv, e);
+                }
+            });
+
+            int nroots;
+            nroots = 0;
+            for (int v = 1; v <= _maxVertex; v += 1) {
+                if (best.get(v) >= 0) {
+                    roots[nroots] = v;
+                    nroots += 1;
+                }
+            }
+            if (nroots == 0) {
+                break;
+            }
+            Parallel.forRange(_pool, 0, nroots, GRAIN, (i) -> {
+                int e = best.getAndSet(roots[i], -1);
+                if (_sets.union(_from[e], _to[e])) {
+                    _inForest[e] = true;
+                }
+            });
+
+            int n;
+            n = 0;
+            for (int i = 0; i < liveSize; i += 1) {
+                if (keep[i] && !_inForest[live[i]]) {
+                    live[n] = live[i];
+                    n += 1;
+                }
+            }
+            liveSize = n;
+        }
+
+        for (int e = 0; e < _inForest.length; e += 1) {
+            if (_inForest[e]) {
+                _forestSize += 1;
+                _totalWeight += _weight[e];
+            }
+        }
+    }
+
+    /** Make edge E the selected edge for component root R in BEST if it is
+     *  lighter than the current selection. */
+    private void propose(AtomicIntegerArray best, int r, int e) {
+        while (true) {
+            int cur = best.get(r);
+            if (cur >= 0 && !lighter(e, cur)) {
+                return;
+            }
+            if (best.compareAndSet(r, cur, e)) {
+                return;
+            }
+        }
+    }
+
+    /** Returns true iff edge E precedes edge F in the total order of
+     *  edges by weight, with ties broken by index. */
+    private boolean lighter(int e, int f) {
+        return _weight[e] < _weight[f] || (_weight[e] == _weight[f] && e < f);
+    }
+
+    /** Number of edges below which a loop is not split among threads. */
+    static final int GRAIN = 8192;
+
+    /** Pool on which parallel loops run. */
+    private final ForkJoinPool _pool;
+    /** Maximum vertex number of the graph. */
+    private final int _maxVertex;
+    /** Number of vertices of the graph. */
+    private int _vertexSize;
+    /** _isVertex[v] iff V is a vertex of the graph. */
+    private boolean[] _isVertex;
+    /** End points of each edge, indexed by edge number, in an
+     *  orientation present in the graph. */
+    private int[] _from, _to;
+    /** Weight of each edge. */
+    private double[] _weight;
+    /** _inForest[e] iff edge E is in the forest. */
+    private final boolean[] _inForest;
+    /** Components of the forest. */
+    private final ConcurrentUnionFind _sets;
+    /** Number of edges in the forest. */
+    private int _forestSize;
+    /** Total weight of the forest. */
+    private double _totalWeight;
+}
@@ -0,0 +1,195 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Computes breadth-first (hop) distances from many source vertices at
+ *  once.  Sources are processed in batches of 64 * WORDS, where WORDS is
+ *  the number of long words of state kept per vertex.  Within a batch,
+ *  the seen and frontier sets of every source are kept as bit vectors, so
+ *  that one scan of the successors of a vertex advances the searches of
+ *  all sources in the batch whose frontier contains that vertex.
+ *  Separate batches are independent and are run in parallel.
+ *  @author Jacob Lin
+ */
+public class MultiSourceBFS {
+
+    /** Receives the results of a search. */
+    public interface Visitor {
+        /** Called once for each vertex V reachable from the source with
+         *  index K in the source array, with DIST the number of edges on a
+         *  shortest path from that source to V.  Calls for the sources of
+         *  one batch are made in nondecreasing order of DIST from a single
+         *  thread, but different batches may call concurrently. */
+        void visit(int k, int v, int dist);
+    }
+
+    /** A search over G using one word of state per vertex and the common
+     *  ForkJoin pool. */
+    public MultiSourceBFS(Graph G) {
+        this(G, 1, ForkJoinPool.commonPool());
+    }
+
+    /** A search over G using WORDS (1 to 4) long words of state per vertex,
+     *  running batches on POOL. */
+    public MultiSourceBFS(Graph G, int words, ForkJoinPool pool) {
+        if (words < 1 || words > MAX_WORDS) {
+            throw new IllegalArgumentException("bad number of words");
+        }
+        _G = new Adjacency(G);
+        _words = words;
+        _pool = pool;
+    }
+
+    /** Returns the number of sources searched together in one batch. */
+    public int batchSize() {
+        return _words * Long.SIZE;
+    }
+
+    /** Returns an array D such that D[k][v] is the number of edges on a
+     *  shortest path from SOURCES[k] to V, or -1 if there is no such path
+     *  (or V is not a vertex). */
+    public int[][] distances(int... sources) {
+        int[][] result = new int[sources.length][_G.maxVertex() + 1];
+        for (int[] row : result) {
+            Arrays.fill(row, -1);
+        }
+        run(sources, (k, v, d) -> result[k][v] = d);
+        return result;
+    }
+
+    /** Search from each of SOURCES, reporting each reachable vertex to
+     *  VISITOR. */
+    public void run(int[] sources, Visitor visitor) {
+        for (int s : sources) {
+            if (!_G.contains(s)) {
+                throw new IllegalArgumentException("vertex not from Graph");
+            }
+        }
+        ArrayList<Callable<Void>> batches = new ArrayList<>();
+        for (int k0 = 0; k0 < sources.length; k0 += batchSize()) {
+            int first = k0;
+            int last = Math.min(sources.length, k0 + batchSize());
+            batches.add(() -> {
+                runBatch(sources, first, last, visitor);
+                return null;
+            });
+        }
+        if (batches.size() == 1) {
+            runBatch(sources, 0, sources.length, visitor);
+            return;
+        }
+        for (Future<Void> done : _pool.invokeAll(batches)) {
+            try {
+                done.get();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+    }
+
+    /** Search simultaneously from SOURCES[FIRST .. LAST-1], reporting to
+     *  VISITOR. */
+    private void runBatch(int[] sources, int first, int last,
+                          Visitor visitor) {
+        int words = _words;
+        int n = _G.maxVertex() + 1;
+        long[] seen = new long[n * words];
+        long[] visit = new long[n * words];
+        long[] visitNext = new long[n * words];
+        int[] sameSource = new int[last - first];
+        HashMap<Integer, Integer> lastCopy = new HashMap<>();
+
+        for (int k = first; k < last; k += 1) {
+            sameSource[k - first] = -1;
+            Integer prev = lastCopy.put(sources[k], k);
+            if (prev != null) {
+                sameSource[prev - first] = k;
+                continue;
+            }
+            int i = sources[k] * words + (k - first) / Long.SIZE;
+            long bit = 1L << ((k - first) % Long.SIZE);
+            seen[i] |= bit;
+            visit[i] |= bit;
+        }
+        for (int v = 1; v < n; v += 1) {
+            report(visit, v, 0, first, sameSource, visitor);
+        }
+
+        for (int level = 1; ; level += 1) {
+            boolean changed;
+            changed = false;
+            for (int v = 1; v < n; v += 1) {
+                for (int w = 0; w < words; w += 1) {
+                    long frontier = visit[v * words + w];
+                    if (frontier == 0) {
+                        continue;
+                    }
+                    for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                        int i = _G.target(e) * words + w;
+                        long fresh = frontier & ~seen[i];
+                        if (fresh != 0) {
+                            seen[i] |= fresh;
+                            visitNext[i] |= fresh;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            if (!changed) {
+                break;
+            }
+            for (int v = 1; v < n; v += 1) {
+                report(visitNext, v, level, first, sameSource, visitor);
+            }
+            long[] tmp = visit;
+            visit = visitNext;
+            visitNext = tmp;
+            Arrays.fill(visitNext, 0L);
+        }
+    }
+
+    /** Report to VISITOR that V is at distance LEVEL from each source of
+     *  the batch starting at index FIRST whose bit is set in V's entries in
+     *  FRONTIER.  Repeated sources share the bit of their first copy;
+     *  SAMESOURCE[K - FIRST] is the index of the next copy of source K, or
+     *  -1 if none. */
+    private void report(long[] frontier, int v, int level, int first,
+                        int[] sameSource, Visitor visitor) {
+        int words = _words;
+        for (int w = 0; w < words; w += 1) {
+            long bits = frontier[v * words + w];
+            while (bits != 0) {
+                int b = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int k = first + w * Long.SIZE + b; k >= 0;
+                     k = sameSource[k - first]) {
+                    visitor.visit(k, v, level);
+                }
+            }
+        }
+    }
+
+    /** Maximum number of words of state per vertex. */
+    static final int MAX_WORDS = 4;
+
+    /** Snapshot of the graph being searched. */
+    private final Adjacency _G;
+    /** Words of state per vertex. */
+    private final int _words;
+    /** Pool on which batches are run. */
+    private final ForkJoinPool _pool;
+}
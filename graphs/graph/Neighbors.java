@@ -0,0 +1,224 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A list of the neighbors of a vertex, each with an edge identifier if
+ *  wanted, as kept by VersionedGraph and ConcurrentGraph.  Removing a
+ *  vertex moves the last one into its place.  Lists longer than
+ *  INDEX_MIN keep a hash index of the positions of their vertices, so
+ *  that all operations take constant (amortized) time.  Not
+ *  synchronized; a reader racing with a writer may get wrong answers or
+ *  runtime exceptions, but never loops forever.
+ *  @author Jacob Lin
+ */
+class Neighbors {
+
+    /** An empty list, with edge identifiers iff WITHIDS. */
+    Neighbors(boolean withIds) {
+        _vertices = NO_INTS;
+        _ids = withIds ? NO_INTS : null;
+    }
+
+    /** A copy of OTHER. */
+    Neighbors(Neighbors other) {
+        _size = other._size;
+        _vertices = Arrays.copyOf(other._vertices, _size);
+        _ids = other._ids == null ? null : Arrays.copyOf(other._ids, _size);
+        _index = other._index == null ? null : new Index(other._index);
+    }
+
+    /** Returns the number of vertices. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns vertex #K. */
+    int vertex(int k) {
+        return _vertices[k];
+    }
+
+    /** Returns the edge identifier of vertex #K. */
+    int id(int k) {
+        return _ids[k];
+    }
+
+    /** Returns the position of V, or -1 if absent. */
+    int find(int v) {
+        Index index = _index;
+        if (index != null) {
+            return index.get(v);
+        }
+        int[] vertices = _vertices;
+        for (int k = 0; k < _size; k += 1) {
+            if (vertices[k] == v) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns an array whose first size() elements are my vertices: a
+     *  copy if COPY, and otherwise my own array. */
+    int[] vertices(boolean copy) {
+        return copy ? Arrays.copyOf(_vertices, _size) : _vertices;
+    }
+
+    /** Returns an iteration over my vertices, which is over a copy of
+     *  them if COPY. */
+    Iteration<Integer> iteration(boolean copy) {
+        return new IntIteration(vertices(copy), _size);
+    }
+
+    /** Append V, with edge identifier ID if I have identifiers. */
+    void add(int v, int id) {
+        if (_size == _vertices.length) {
+            int n = Math.max(4, 2 * _size);
+            _vertices = Arrays.copyOf(_vertices, n);
+            if (_ids != null) {
+                _ids = Arrays.copyOf(_ids, n);
+            }
+        }
+        _vertices[_size] = v;
+        if (_ids != null) {
+            _ids[_size] = id;
+        }
+        _size += 1;
+        if (_index != null) {
+            _index.put(v, _size - 1);
+        } else if (_size > INDEX_MIN) {
+            _index = new Index(_vertices, _size);
+        }
+    }
+
+    /** Remove V, which must be present, and return the identifier of its
+     *  edge (0 if I have no identifiers). */
+    int remove(int v) {
+        int k = find(v), last = _size - 1;
+        int id = _ids == null ? 0 : _ids[k];
+        _vertices[k] = _vertices[last];
+        if (_ids != null) {
+            _ids[k] = _ids[last];
+        }
+        _size = last;
+        if (_index != null) {
+            _index.remove(v);
+            if (k != last) {
+                _index.put(_vertices[k], k);
+            }
+        }
+        return id;
+    }
+
+    /** A map from positive ints to ints, in an open-addressed table with
+     *  linear probing, as in LongHashSet, and deletion by shifting
+     *  back. */
+    private static final class Index {
+        /** A map from each of the first N elements of KEYS to its
+         *  position. */
+        Index(int[] keys, int n) {
+            int cap = LongHashSet.INITIAL_CAPACITY;
+            while (n > cap * LongHashSet.MAX_LOAD) {
+                cap *= 2;
+            }
+            _keys = new int[cap];
+            _values = new int[cap];
+            for (int k = 0; k < n; k += 1) {
+                put(keys[k], k);
+            }
+        }
+
+        /** A copy of OTHER. */
+        Index(Index other) {
+            _keys = other._keys.clone();
+            _values = other._values.clone();
+            _size = other._size;
+        }
+
+        /** Returns the value of KEY, or -1 if none. */
+        int get(int key) {
+            int[] keys = _keys;
+            int mask = keys.length - 1;
+            for (int i = LongHashSet.slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return _values[i];
+                } else if (keys[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        /** Set the value of KEY to VALUE. */
+        void put(int key, int value) {
+            int mask = _keys.length - 1;
+            int i;
+            for (i = LongHashSet.slot(key, mask); _keys[i] != 0;
+                 i = (i + 1) & mask) {
+                if (_keys[i] == key) {
+                    _values[i] = value;
+                    return;
+                }
+            }
+            _keys[i] = key;
+            _values[i] = value;
+            _size += 1;
+            if (_size > _keys.length * LongHashSet.MAX_LOAD) {
+                int[] keys = _keys, values = _values;
+                _keys = new int[2 * keys.length];
+                _values = new int[2 * keys.length];
+                _size = 0;
+                for (int j = 0; j < keys.length; j += 1) {
+                    if (keys[j] != 0) {
+                        put(keys[j], values[j]);
+                    }
+                }
+            }
+        }
+
+        /** Remove KEY, if present. */
+        void remove(int key) {
+            int mask = _keys.length - 1;
+            int i;
+            for (i = LongHashSet.slot(key, mask); _keys[i] != key;
+                 i = (i + 1) & mask) {
+                if (_keys[i] == 0) {
+                    return;
+                }
+            }
+            _keys[i] = 0;
+            _size -= 1;
+            for (int j = (i + 1) & mask; _keys[j] != 0; j = (j + 1) & mask) {
+                int h = LongHashSet.slot(_keys[j], mask);
+                if (((j - h) & mask) >= ((j - i) & mask)) {
+                    _keys[i] = _keys[j];
+                    _values[i] = _values[j];
+                    _keys[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        /** Keys; 0 marks an empty slot. */
+        private int[] _keys;
+        /** Value of the key in each slot. */
+        private int[] _values;
+        /** Number of keys. */
+        private int _size;
+    }
+
+    /** Length of the longest list kept without an index. */
+    static final int INDEX_MIN = 16;
+
+    /** An empty int array. */
+    private static final int[] NO_INTS = new int[0];
+
+    /** The vertices, followed by unused space. */
+    private int[] _vertices;
+    /** The edge identifiers of the vertices, or null if none. */
+    private int[] _ids;
+    /** Number of vertices. */
+    private int _size;
+    /** Position of each vertex, or null if there are few. */
+    private Index _index;
+}
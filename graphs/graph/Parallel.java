@@ -0,0 +1,62 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/** Utilities for running loops over ranges of integers on a ForkJoin pool.
+ *  @author Jacob Lin
+ */
+final class Parallel {
+
+    /** Not instantiable. */
+    private Parallel() {
+    }
+
+    /** Call BODY.accept(I) for each I in LO .. HI-1, dividing the range
+     *  among the threads of POOL in pieces of at least GRAIN indices.  The
+     *  calls may occur in any order and concurrently. */
+    static void forRange(ForkJoinPool pool, int lo, int hi, int grain,
+                         IntConsumer body) {
+        if (hi - lo <= grain) {
+            for (int i = lo; i < hi; i += 1) {
+                body.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeTask(lo, hi, Math.max(1, grain), body));
+        }
+    }
+
+    /** Calls a body on a range of indices, splitting it among subtasks. */
+    private static class RangeTask extends RecursiveAction {
+        /** Call BODY on LO .. HI-1, in pieces of at least GRAIN. */
+        RangeTask(int lo, int hi, int grain, IntConsumer body) {
+            _lo = lo;
+            _hi = hi;
+            _grain = grain;
+            _body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > _grain) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new RangeTask(_lo, mid, _grain, _body),
+                          new RangeTask(mid, _hi, _grain, _body));
+            } else {
+                for (int i = _lo; i < _hi; i += 1) {
+                    _body.accept(i);
+                }
+            }
+        }
+
+        /** Range of indices handled. */
+        private final int _lo, _hi;
+        /** Minimum size of a piece. */
+        private final int _grain;
+        /** Action for each index. */
+        private final IntConsumer _body;
+    }
+}
@@ -0,0 +1,251 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/** An engine for vertex-centric ("think like a vertex") iterative
+ *  computations over a Graph, such as PageRank or label propagation.
+ *
+ *  Each vertex carries a double value.  Computation proceeds in
+ *  supersteps.  In each superstep, the Program's compute method is called
+ *  for every active vertex, receiving its value from the previous superstep
+ *  and the combination of all messages sent to it during the previous
+ *  superstep, and returning its new value.  Vertices may send messages to
+ *  any vertex, typically their successors, and may vote to halt; a halted
+ *  vertex is reactivated by an incoming message.  The computation ends
+ *  when every vertex has halted and no messages are pending, when the
+ *  total change in values falls within the Program's tolerance, or after
+ *  a given number of supersteps.
+ *
+ *  Values are double-buffered in primitive arrays, and messages to a
+ *  vertex are combined as they arrive, so the memory used is proportional
+ *  to the number of vertices.  Each superstep is divided among the threads
+ *  of a ForkJoin pool; compute may therefore be called concurrently for
+ *  different vertices.
+ *  @author Jacob Lin
+ */
+public class Pregel {
+
+    /** A vertex program.  Clients extend this class, supplying at least
+     *  initialValue and compute. */
+    public abstract static class Program {
+
+        /** Returns the value of vertex V before the first superstep. */
+        protected abstract double initialValue(int v);
+
+        /** Returns the new value of vertex V in superstep STEP, given that
+         *  its value after the previous superstep was VALUE, and that
+         *  MESSAGE is the combination of the messages sent to it during the
+         *  previous superstep (noMessage() if there were none).  May send
+         *  messages and vote to halt through STEP. */
+        protected abstract double compute(Superstep step, int v,
+                                          double value, double message);
+
+        /** Returns the combination of messages M1 and M2.  Must be
+         *  associative and commutative.  By default, returns their sum. */
+        protected double combine(double m1, double m2) {
+            return m1 + m2;
+        }
+
+        /** Returns the combination of an empty set of messages, which must
+         *  be an identity for combine.  By default 0. */
+        protected double noMessage() {
+            return 0.0;
+        }
+
+        /** Returns the total absolute change in vertex values over a
+         *  superstep at or below which the computation is considered to
+         *  have converged.  Not checked in superstep 0, which typically
+         *  only sends initial messages.  By default -1 (that is, never). */
+        protected double tolerance() {
+            return -1.0;
+        }
+    }
+
+    /** The interface through which a Program communicates during a
+     *  superstep. */
+    public final class Superstep {
+
+        /** Returns the number of the current superstep, starting at 0. */
+        public int number() {
+            return _superstep;
+        }
+
+        /** Returns the number of vertices in the graph. */
+        public int vertexSize() {
+            return _G.vertexSize();
+        }
+
+        /** Returns the number of successors of V. */
+        public int outDegree(int v) {
+            return _G.degree(v);
+        }
+
+        /** Send message M to vertex W for the next superstep. */
+        public void send(int w, double m) {
+            deliver(w, m);
+        }
+
+        /** Send message M to each successor of V for the next
+         *  superstep. */
+        public void sendToSuccessors(int v, double m) {
+            for (int e = _G.start(v); e < _G.end(v); e += 1) {
+                deliver(_G.target(e), m);
+            }
+        }
+
+        /** Mark V as halted.  It will not be computed in later supersteps
+         *  unless it receives a message. */
+        public void voteToHalt(int v) {
+            _active[v] = false;
+        }
+    }
+
+    /** An engine for computations on G running on the common ForkJoin
+     *  pool. */
+    public Pregel(Graph G) {
+        this(G, ForkJoinPool.commonPool());
+    }
+
+    /** An engine for computations on G running on POOL.  The engine uses a
+     *  snapshot of G taken at this point. */
+    public Pregel(Graph G, ForkJoinPool pool) {
+        _G = new Adjacency(G);
+        _pool = pool;
+        int n = _G.maxVertex() + 1;
+        _values = new double[n];
+        _next = new double[n];
+        _active = new boolean[n];
+        _hasMessage = new boolean[n];
+        _hasNextMessage = new boolean[n];
+        _inbox = new double[n];
+        _outbox = new AtomicLongArray(n);
+        _step = new Superstep();
+    }
+
+    /** Run PROGRAM for at most MAXSUPERSTEPS supersteps, returning the
+     *  final values, indexed by vertex number.  Elements for non-vertices
+     *  are 0. */
+    public double[] run(Program program, int maxSupersteps) {
+        int n = _values.length;
+        _program = program;
+        double empty = program.noMessage();
+        long none = Double.doubleToRawLongBits(empty);
+        Arrays.fill(_values, 0.0);
+        Arrays.fill(_hasMessage, false);
+        Arrays.fill(_hasNextMessage, false);
+        Arrays.fill(_inbox, empty);
+        for (int v = 0; v < n; v += 1) {
+            _outbox.set(v, none);
+        }
+        Parallel.forRange(_pool, 1, n, GRAIN, (v) -> {
+            _active[v] = _G.contains(v);
+            if (_active[v]) {
+                _values[v] = program.initialValue(v);
+            }
+        });
+
+        _converged = false;
+        for (_superstep = 0; _superstep < maxSupersteps; _superstep += 1) {
+            DoubleAdder change = new DoubleAdder();
+            Parallel.forRange(_pool, 1, n, GRAIN, (v) -> {
+                double old = _values[v];
+                if (_hasMessage[v] && _G.contains(v)) {
+                    _active[v] = true;
+                }
+                if (_active[v]) {
+                    double m = _hasMessage[v] ? _inbox[v] : empty;
+                    _next[v] = program.compute(_step, v, old, m);
+                    change.add(Math.abs(_next[v] - old));
+                } else {
+                    _next[v] = old;
+                }
+            });
+
+            double[] tmp = _values;
+            _values = _next;
+            _next = tmp;
+            boolean pending = false, active = false;
+            for (int v = 1; v < n; v += 1) {
+                _hasMessage[v] = _hasNextMessage[v];
+                _hasNextMessage[v] = false;
+                _inbox[v] = Double.longBitsToDouble(_outbox.get(v));
+                _outbox.set(v, none);
+                pending |= _hasMessage[v];
+                active |= _active[v];
+            }
+            if ((_superstep > 0 && change.sum() <= program.tolerance())
+                || (!pending && !active)) {
+                _superstep += 1;
+                _converged = true;
+                break;
+            }
+        }
+        _program = null;
+        return _values.clone();
+    }
+
+    /** Returns the number of supersteps performed by the last run. */
+    public int supersteps() {
+        return _superstep;
+    }
+
+    /** Returns true iff the last run ended because all vertices halted
+     *  or the values converged, rather than by reaching its limit on
+     *  supersteps. */
+    public boolean converged() {
+        return _converged;
+    }
+
+    /** Combine message M into the pending messages for W. */
+    private void deliver(int w, double m) {
+        if (!_G.contains(w)) {
+            throw new IllegalArgumentException("vertex not from Graph");
+        }
+        while (true) {
+            long old = _outbox.get(w);
+            double combined =
+                _program.combine(Double.longBitsToDouble(old), m);
+            if (_outbox.compareAndSet(w, old,
+                                      Double.doubleToRawLongBits(combined))) {
+                break;
+            }
+        }
+        _hasNextMessage[w] = true;
+    }
+
+    /** Number of vertices below which a superstep is not split among
+     *  threads. */
+    static final int GRAIN = 1024;
+
+    /** Snapshot of the graph. */
+    private final Adjacency _G;
+    /** Pool on which supersteps run. */
+    private final ForkJoinPool _pool;
+    /** The Superstep passed to the program. */
+    private final Superstep _step;
+    /** Program being run. */
+    private Program _program;
+    /** Current superstep number. */
+    private int _superstep;
+    /** True iff the last run converged. */
+    private boolean _converged;
+    /** Vertex values after the previous superstep. */
+    private double[] _values;
+    /** Vertex values being computed in this superstep. */
+    private double[] _next;
+    /** _active[v] iff V has not voted to halt. */
+    private final boolean[] _active;
+    /** Combined messages received by each vertex for this superstep. */
+    private final double[] _inbox;
+    /** _hasMessage[v] iff _inbox[v] holds at least one message. */
+    private final boolean[] _hasMessage;
+    /** Combined messages (as raw long bits) sent during this superstep. */
+    private final AtomicLongArray _outbox;
+    /** _hasNextMessage[v] iff _outbox[v] holds at least one message. */
+    private final boolean[] _hasNextMessage;
+}
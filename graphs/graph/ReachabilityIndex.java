@@ -0,0 +1,417 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/** An index answering "is there a path from u to v?" for a graph that
+ *  does not change after the index is built.  The strongly connected
+ *  components of the graph are found (Tarjan's algorithm, iteratively)
+ *  and contracted to form a DAG, each vertex of which receives:
+ *  <ul>
+ *  <li> its component number, which decreases along every edge;
+ *  <li> K interval labels in the manner of GRAIL, from K randomized
+ *       depth-first traversals: the label of c is [low, post], where post
+ *       is c's postorder rank and low the smallest rank among its
+ *       descendants, so that if c reaches d, d's labels nest within c's;
+ *  <li> the interval of postorder ranks of its subtree in the spanning
+ *       forest of the first traversal, which contains d's rank only if c
+ *       reaches d.
+ *  </ul>
+ *  A query is answered in O(K) time when the component numbers or labels
+ *  refute reachability or the spanning forest confirms it.  Otherwise it
+ *  falls back to a depth-first search of the DAG that is pruned by the
+ *  same tests at each step.  The index uses O(K * V + E) space.  Queries
+ *  may be made from several threads at once.
+ *  @author Jacob Lin
+ */
+public class ReachabilityIndex {
+
+    /** An index of G with the default number of labels. */
+    public ReachabilityIndex(Graph G) {
+        this(G, DEFAULT_LABELS, 0);
+    }
+
+    /** An index of G with K >= 1 interval labels per component, chosen
+     *  from randomized traversals using SEED. */
+    public ReachabilityIndex(Graph G, int k, long seed) {
+        if (k < 1) {
+            throw new IllegalArgumentException("need at least one label");
+        }
+        Adjacency adj = new Adjacency(G);
+        _maxVertex = adj.maxVertex();
+        _component = new int[_maxVertex + 1];
+        _componentCount = condense(adj);
+        buildDag(adj);
+        _k = k;
+        _low = new int[k * _componentCount];
+        _post = new int[k * _componentCount];
+        _treeLow = new int[_componentCount];
+        Random rand = new Random(seed);
+        for (int t = 0; t < k; t += 1) {
+            label(t, rand);
+        }
+    }
+
+    /** Returns true iff there is a path (possibly empty) from U to V.
+     *  False if either is not a vertex of the indexed graph. */
+    public boolean reachable(int u, int v) {
+        if (!contains(u) || !contains(v)) {
+            return false;
+        }
+        int c = _component[u], d = _component[v];
+        if (c == d) {
+            return true;
+        }
+        switch (quick(c, d)) {
+        case YES:
+            return true;
+        case NO:
+            return false;
+        default:
+            _searches.increment();
+            return search(c, d);
+        }
+    }
+
+    /** Returns true iff U and V are in the same strongly connected
+     *  component. */
+    public boolean stronglyConnected(int u, int v) {
+        return contains(u) && contains(v) && _component[u] == _component[v];
+    }
+
+    /** Returns the number of strongly connected components. */
+    public int componentCount() {
+        return _componentCount;
+    }
+
+    /** Returns the component number of vertex V, in 0 ..
+     *  componentCount()-1.  If V reaches W in a different component, V's
+     *  component number is greater than W's. */
+    public int component(int v) {
+        if (!contains(v)) {
+            throw new IllegalArgumentException("not a vertex");
+        }
+        return _component[v];
+    }
+
+    /** Returns the number of queries so far that needed a search. */
+    public long searchCount() {
+        return _searches.sum();
+    }
+
+    /** Returns true iff V is a vertex of the indexed graph. */
+    private boolean contains(int v) {
+        return v > 0 && v <= _maxVertex && _component[v] >= 0;
+    }
+
+    /** Returns YES if component C certainly reaches D, NO if it certainly
+     *  does not, and MAYBE otherwise. */
+    private int quick(int c, int d) {
+        if (c < d) {
+            return NO;
+        }
+        for (int t = 0, i = c, j = d; t < _k;
+             t += 1, i += _componentCount, j += _componentCount) {
+            if (_low[j] < _low[i] || _post[j] > _post[i]) {
+                return NO;
+            }
+        }
+        if (_treeLow[c] <= _post[d] && _post[d] <= _post[c]) {
+            return YES;
+        }
+        return MAYBE;
+    }
+
+    /** Returns true iff component C reaches D, by a depth-first search of
+     *  the DAG pruned by quick. */
+    private boolean search(int c, int d) {
+        SearchState s = _state.get();
+        s.begin();
+        s.visit(c);
+        s.push(c);
+        while (s.size > 0) {
+            int x = s.pop();
+            for (int e = _dagStart[x]; e < _dagStart[x + 1]; e += 1) {
+                int y = _dagTarget[e];
+                if (y == d) {
+                    return true;
+                }
+                if (s.visited(y)) {
+                    continue;
+                }
+                s.visit(y);
+                int q = quick(y, d);
+                if (q == YES) {
+                    return true;
+                } else if (q == MAYBE) {
+                    s.push(y);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Set _component for the vertices of ADJ (-1 for non-vertices) to
+     *  the numbers of their strongly connected components, numbered in
+     *  the order Tarjan's algorithm completes them.  Returns the number of
+     *  components. */
+    private int condense(Adjacency adj) {
+        int n = _maxVertex + 1;
+        int[] index = new int[n], low = new int[n], cursor = new int[n];
+        int[] stack = new int[n], call = new int[n];
+        boolean[] onStack = new boolean[n];
+        int counter, top, components;
+        counter = top = components = 0;
+        Arrays.fill(_component, -1);
+        for (int r = 1; r < n; r += 1) {
+            if (!adj.contains(r) || index[r] != 0) {
+                continue;
+            }
+            int depth = 0;
+            call[depth] = r;
+            counter += 1;
+            index[r] = low[r] = counter;
+            cursor[r] = adj.start(r);
+            stack[top] = r;
+            top += 1;
+            onStack[r] = true;
+            while (depth >= 0) {
+                int v = call[depth];
+                if (cursor[v] < adj.end(v)) {
+                    int w = adj.target(cursor[v]);
+                    cursor[v] += 1;
+                    if (index[w] == 0) {
+                        counter += 1;
+                        index[w] = low[w] = counter;
+                        cursor[w] = adj.start(w);
+                        stack[top] = w;
+                        top += 1;
+                        onStack[w] = true;
+                        depth += 1;
+                        call[depth] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        top -= 1;
+                        w = stack[top];
+                        onStack[w] = false;
+                        _component[w] = components;
+                    } while (w != v);
+                    components += 1;
+                }
+                depth -= 1;
+                if (depth >= 0) {
+                    int p = call[depth];
+                    low[p] = Math.min(low[p], low[v]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /** Build the condensation DAG of ADJ, without duplicate edges, in
+     *  _dagStart and _dagTarget. */
+    private void buildDag(Adjacency adj) {
+        int m = _componentCount;
+        int[] members = new int[m + 1];
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (_component[v] >= 0) {
+                members[_component[v] + 1] += 1;
+            }
+        }
+        for (int c = 0; c < m; c += 1) {
+            members[c + 1] += members[c];
+        }
+        int[] order = new int[members[m]];
+        int[] fill = Arrays.copyOf(members, m);
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (_component[v] >= 0) {
+                order[fill[_component[v]]] = v;
+                fill[_component[v]] += 1;
+            }
+        }
+        int[] seen = new int[m];
+        Arrays.fill(seen, -1);
+        _dagStart = new int[m + 1];
+        int[] targets = new int[Math.max(16, m)];
+        int n;
+        n = 0;
+        for (int c = 0; c < m; c += 1) {
+            _dagStart[c] = n;
+            seen[c] = c;
+            for (int i = members[c]; i < members[c + 1]; i += 1) {
+                int v = order[i];
+                for (int e = adj.start(v); e < adj.end(v); e += 1) {
+                    int d = _component[adj.target(e)];
+                    if (seen[d] != c) {
+                        seen[d] = c;
+                        if (n == targets.length) {
+                            targets = Arrays.copyOf(targets, 2 * n);
+                        }
+                        targets[n] = d;
+                        n += 1;
+                    }
+                }
+            }
+        }
+        _dagStart[m] = n;
+        _dagTarget = Arrays.copyOf(targets, n);
+    }
+
+    /** Compute the T-th interval labels from a depth-first traversal of
+     *  the DAG whose roots and edges are taken in orders chosen by
+     *  RAND.  If T is 0, also compute _treeLow. */
+    private void label(int t, Random rand) {
+        int m = _componentCount, base = t * m;
+        int[] roots = new int[m];
+        for (int c = 0; c < m; c += 1) {
+            roots[c] = c;
+        }
+        for (int i = m - 1; i > 0; i -= 1) {
+            int j = rand.nextInt(i + 1);
+            int tmp = roots[i];
+            roots[i] = roots[j];
+            roots[j] = tmp;
+        }
+        int[] offset = new int[m], done = new int[m], call = new int[m];
+        boolean[] started = new boolean[m];
+        int rank;
+        rank = 0;
+        for (int r : roots) {
+            if (started[r]) {
+                continue;
+            }
+            int depth = 0;
+            call[0] = r;
+            started[r] = true;
+            offset[r] = random(rand, r);
+            if (t == 0) {
+                _treeLow[r] = rank + 1;
+            }
+            while (depth >= 0) {
+                int c = call[depth];
+                int deg = _dagStart[c + 1] - _dagStart[c];
+                if (done[c] < deg) {
+                    int d = _dagTarget[_dagStart[c]
+                                       + (offset[c] + done[c]) % deg];
+                    done[c] += 1;
+                    if (!started[d]) {
+                        started[d] = true;
+                        offset[d] = random(rand, d);
+                        if (t == 0) {
+                            _treeLow[d] = rank + 1;
+                        }
+                        depth += 1;
+                        call[depth] = d;
+                    }
+                    continue;
+                }
+                rank += 1;
+                int low = rank;
+                for (int e = _dagStart[c]; e < _dagStart[c + 1]; e += 1) {
+                    low = Math.min(low, _low[base + _dagTarget[e]]);
+                }
+                _post[base + c] = rank;
+                _low[base + c] = low;
+                depth -= 1;
+            }
+        }
+    }
+
+    /** Returns a random starting offset, from RAND, into the successors
+     *  of component C. */
+    private int random(Random rand, int c) {
+        int deg = _dagStart[c + 1] - _dagStart[c];
+        return deg <= 1 ? 0 : rand.nextInt(deg);
+    }
+
+    /** Per-thread state of the fallback searches. */
+    private class SearchState {
+        /** Fresh state. */
+        SearchState() {
+            _mark = new int[_componentCount];
+            _stack = new int[Math.max(1, _componentCount)];
+        }
+
+        /** Start a new search, with nothing visited. */
+        void begin() {
+            _stamp += 1;
+            if (_stamp == 0) {
+                Arrays.fill(_mark, 0);
+                _stamp = 1;
+            }
+            size = 0;
+        }
+
+        /** Returns true iff C has been visited by this search. */
+        boolean visited(int c) {
+            return _mark[c] == _stamp;
+        }
+
+        /** Mark C visited. */
+        void visit(int c) {
+            _mark[c] = _stamp;
+        }
+
+        /** Push C. */
+        void push(int c) {
+            _stack[size] = c;
+            size += 1;
+        }
+
+        /** Pop and return the top of the stack. */
+        int pop() {
+            size -= 1;
+            return _stack[size];
+        }
+
+        /** Number of entries on the stack. */
+        private int size;
+        /** Stamp of the components visited by each search. */
+        private final int[] _mark;
+        /** Current stamp. */
+        private int _stamp;
+        /** Stack of components to explore (each pushed at most once). */
+        private final int[] _stack;
+    }
+
+    /** Default number of interval labels. */
+    static final int DEFAULT_LABELS = 3;
+
+    /** Results of quick. */
+    private static final int NO = 0, YES = 1, MAYBE = 2;
+
+    /** Maximum vertex number. */
+    private final int _maxVertex;
+    /** Component of each vertex, or -1 for non-vertices. */
+    private final int[] _component;
+    /** Number of components. */
+    private final int _componentCount;
+    /** Index into _dagTarget of the first successor of each component. */
+    private int[] _dagStart;
+    /** Concatenated successor lists of the condensation. */
+    private int[] _dagTarget;
+    /** Number of labels per component. */
+    private final int _k;
+    /** _low[t * componentCount + c] is the low end of label T of c. */
+    private final int[] _low;
+    /** _post[t * componentCount + c] is the postorder rank of c in
+     *  traversal T. */
+    private final int[] _post;
+    /** Smallest rank in the subtree of each component in the spanning
+     *  forest of traversal 0. */
+    private final int[] _treeLow;
+    /** Number of queries that needed a search. */
+    private final LongAdder _searches = new LongAdder();
+    /** Per-thread search state. */
+    private final ThreadLocal<SearchState> _state =
+        ThreadLocal.withInitial(SearchState::new);
+}
@@ -26,8 +26,6 @@ public abstract class ShortestPaths {
         _G = G;
         _source = source;
         _dest = dest;
-        allWeight = new double[_G.maxVertex() + 1];
-        allPredecessor = new int[_G.maxVertex() + 1];
     }
 
     /** Initialize the shortest paths.  Must be called before using
@@ -40,7 +38,7 @@ public abstract class ShortestPaths {
                 } else {
                     setWeight(i, Double.POSITIVE_INFINITY);
                 }
-                allPredecessor[i] = 0;
+                getAllPredecessor()[i] = 0;
                 myTreeSet.add(new Pairss(i, getWeight(i)));
             }
         }
@@ -131,12 +129,18 @@ public abstract class ShortestPaths {
     public List<Integer> pathTo() {
         return pathTo(getDest());
     }
-    /** Returns allWeight. */
+    /** Returns allWeight, allocating it on first use. */
     double[] getAllWeight() {
+        if (allWeight == null) {
+            allWeight = new double[_G.maxVertex() + 1];
+        }
         return allWeight;
     }
-    /** Returns allPredecessor. */
+    /** Returns allPredecessor, allocating it on first use. */
     int[] getAllPredecessor() {
+        if (allPredecessor == null) {
+            allPredecessor = new int[_G.maxVertex() + 1];
+        }
         return allPredecessor;
     }
     /** The graph being searched. */
@@ -145,7 +149,8 @@ public abstract class ShortestPaths {
     private final int _source;
     /** The target vertex. */
     private final int _dest;
-    /** An array to record total min distance from the start point. */
+    /** An array to record total min distance from the start point.
+     *  Allocated only by subclasses that use it (see getAllWeight). */
     private double[] allWeight;
     /** An array to record each node's predecessor. */
     private int[] allPredecessor;
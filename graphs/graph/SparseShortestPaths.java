@@ -0,0 +1,330 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A ShortestPaths whose search state is kept only for the vertices
+ *  actually reached, so that the cost of a query depends on the region
+ *  explored rather than on the size of the graph.  Unlike ShortestPaths,
+ *  setPaths does not seed every vertex into its queue: it runs Dijkstra's
+ *  algorithm (or A*, if estimatedDistance is overridden) lazily from the
+ *  source, stopping once the destination, if any, has been settled.
+ *  Ties are broken by vertex number, as in ShortestPaths, so that both
+ *  find the same paths.
+ *
+ *  By default, the weights and predecessors are held in a small hash
+ *  table private to each query.  Clients that perform many queries may
+ *  instead supply a Workspace: arrays indexed by vertex that are
+ *  allocated once and reset in constant time between queries by
+ *  advancing a generation stamp.  A Workspace holds the results of only
+ *  the latest query that used it, and must not be used by two threads at
+ *  once.  As for SimpleShortestPaths, the client supplies only the
+ *  two-argument getWeight method.
+ *  @author Jacob Lin
+ */
+public abstract class SparseShortestPaths extends ShortestPaths {
+
+    /** Reusable storage for the state of searches on graphs. */
+    public static class Workspace {
+        /** An empty workspace, whose arrays are allocated on first use. */
+        public Workspace() {
+        }
+
+        /** Prepare for a new search on a graph whose largest vertex
+         *  is MAXVERTEX, forgetting any previous state. */
+        void reset(int maxVertex) {
+            if (maxVertex >= _stamp.length) {
+                int n = Math.max(maxVertex + 1, 2 * _stamp.length);
+                _stamp = new int[n];
+                dist = new double[n];
+                pred = new int[n];
+                status = new byte[n];
+                _generation = 0;
+            }
+            _generation += 1;
+            if (_generation == 0) {
+                Arrays.fill(_stamp, 0);
+                _generation = 1;
+            }
+            _reached = 0;
+        }
+
+        /** Returns the index of the state of vertex V in dist, pred, and
+         *  status, or -1 if V has not been reached and not ADD.  If ADD,
+         *  V must be at most the largest vertex given to reset, and is
+         *  added if necessary with infinite distance, no predecessor, and
+         *  status NEW. */
+        int find(int v, boolean add) {
+            if (v < 1 || v >= _stamp.length || _stamp[v] != _generation) {
+                if (!add) {
+                    return -1;
+                }
+                _stamp[v] = _generation;
+                dist[v] = Double.POSITIVE_INFINITY;
+                pred[v] = 0;
+                status[v] = NEW;
+                _reached += 1;
+            }
+            return v;
+        }
+
+        /** Returns the number of vertices reached since the last
+         *  reset. */
+        int reached() {
+            return _reached;
+        }
+
+        /** Distance of each vertex reached. */
+        double[] dist = new double[0];
+        /** Predecessor of each vertex reached. */
+        int[] pred = new int[0];
+        /** Search status (NEW, OPEN, CLOSED) of each vertex reached. */
+        byte[] status = new byte[0];
+        /** Number of vertices reached since the last reset. */
+        private int _reached;
+        /** Generation in which each vertex was last reached. */
+        private int[] _stamp = new int[0];
+        /** Current generation. */
+        private int _generation;
+    }
+
+    /** The shortest paths in G from SOURCE. */
+    public SparseShortestPaths(Graph G, int source) {
+        this(G, source, 0);
+    }
+
+    /** A shortest path in G from SOURCE to DEST. */
+    public SparseShortestPaths(Graph G, int source, int dest) {
+        this(G, source, dest, new Table());
+    }
+
+    /** A shortest path in G from SOURCE to DEST (0 if none), keeping the
+     *  search state in WORKSPACE. */
+    public SparseShortestPaths(Graph G, int source, int dest,
+                               Workspace workspace) {
+        super(G, source, dest);
+        _state = workspace;
+    }
+
+    @Override
+    public void setPaths() {
+        _state.reset(_G.maxVertex());
+        _heapSize = 0;
+        _settled = 0;
+        int source = getSource(), dest = getDest();
+        if (!_G.contains(source)) {
+            return;
+        }
+        int s = _state.find(source, true);
+        _state.dist[s] = 0.0;
+        _state.status[s] = OPEN;
+        push(estimatedDistance(source), source);
+        while (_heapSize > 0) {
+            int v = pop();
+            int i = _state.find(v, false);
+            if (_state.status[i] == CLOSED) {
+                continue;
+            }
+            _state.status[i] = CLOSED;
+            _settled += 1;
+            if (v == dest && dest != 0) {
+                return;
+            }
+            double d = _state.dist[i];
+            for (int w : _G.successors(v)) {
+                double dw = d + getWeight(v, w);
+                int j = _state.find(w, true);
+                if (_state.status[j] != CLOSED && dw < _state.dist[j]) {
+                    _state.dist[j] = dw;
+                    _state.pred[j] = v;
+                    _state.status[j] = OPEN;
+                    push(dw + estimatedDistance(w), w);
+                }
+            }
+        }
+    }
+
+    /** Returns the number of vertices reached by the last search. */
+    public int reachedCount() {
+        return _state.reached();
+    }
+
+    /** Returns the number of vertices settled by the last search. */
+    public int settledCount() {
+        return _settled;
+    }
+
+    @Override
+    protected abstract double getWeight(int u, int v);
+
+    @Override
+    public double getWeight(int v) {
+        int i = _state.find(v, false);
+        return i < 0 ? Double.POSITIVE_INFINITY : _state.dist[i];
+    }
+
+    @Override
+    protected void setWeight(int v, double w) {
+        _state.dist[_state.find(v, true)] = w;
+    }
+
+    @Override
+    public int getPredecessor(int v) {
+        int i = _state.find(v, false);
+        return i < 0 ? 0 : _state.pred[i];
+    }
+
+    @Override
+    protected void setPredecessor(int v, int u) {
+        _state.pred[_state.find(v, true)] = u;
+    }
+
+    /** Add V to the heap with key KEY. */
+    private void push(double key, int v) {
+        if (_heapSize == _heapKey.length) {
+            _heapKey = Arrays.copyOf(_heapKey, 2 * _heapSize);
+            _heapVal = Arrays.copyOf(_heapVal, 2 * _heapSize);
+        }
+        int i = _heapSize;
+        _heapSize += 1;
+        while (i > 0 && less(key, v, (i - 1) / 2)) {
+            _heapKey[i] = _heapKey[(i - 1) / 2];
+            _heapVal[i] = _heapVal[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        _heapKey[i] = key;
+        _heapVal[i] = v;
+    }
+
+    /** Remove and return the vertex with the smallest key. */
+    private int pop() {
+        int result = _heapVal[0];
+        _heapSize -= 1;
+        double key = _heapKey[_heapSize];
+        int v = _heapVal[_heapSize];
+        int i = 0;
+        while (2 * i + 1 < _heapSize) {
+            int c = 2 * i + 1;
+            if (c + 1 < _heapSize
+                && less(_heapKey[c + 1], _heapVal[c + 1], c)) {
+                c += 1;
+            }
+            if (!less(_heapKey[c], _heapVal[c], key, v)) {
+                break;
+            }
+            _heapKey[i] = _heapKey[c];
+            _heapVal[i] = _heapVal[c];
+            i = c;
+        }
+        _heapKey[i] = key;
+        _heapVal[i] = v;
+        return result;
+    }
+
+    /** Returns true iff (KEY, V) precedes heap entry K. */
+    private boolean less(double key, int v, int k) {
+        return less(key, v, _heapKey[k], _heapVal[k]);
+    }
+
+    /** Returns true iff (KEY1, V1) precedes (KEY2, V2): that is, if KEY1
+     *  is smaller, or the keys are equal and V1 is smaller. */
+    private static boolean less(double key1, int v1, double key2, int v2) {
+        return key1 < key2 || (key1 == key2 && v1 < v2);
+    }
+
+    /** A Workspace kept in an open-addressed hash table keyed by vertex,
+     *  for use by a single query. */
+    private static class Table extends Workspace {
+        @Override
+        void reset(int maxVertex) {
+            if (_size > 0 || _keys.length == 0) {
+                allocate(INITIAL_CAPACITY);
+            }
+        }
+
+        @Override
+        int find(int v, boolean add) {
+            int mask = _keys.length - 1;
+            for (int i = (v * 0x9E3779B9) >>> (32 - _bits); ;
+                 i = (i + 1) & mask) {
+                if (_keys[i] == v) {
+                    return i;
+                } else if (_keys[i] == 0) {
+                    if (!add || v < 1) {
+                        return -1;
+                    }
+                    if (2 * (_size + 1) > _keys.length) {
+                        grow();
+                        return find(v, true);
+                    }
+                    _keys[i] = v;
+                    dist[i] = Double.POSITIVE_INFINITY;
+                    pred[i] = 0;
+                    status[i] = NEW;
+                    _size += 1;
+                    return i;
+                }
+            }
+        }
+
+        @Override
+        int reached() {
+            return _size;
+        }
+
+        /** Set up empty arrays of size N, a power of 2. */
+        private void allocate(int n) {
+            _keys = new int[n];
+            dist = new double[n];
+            pred = new int[n];
+            status = new byte[n];
+            _bits = Integer.numberOfTrailingZeros(n);
+            _size = 0;
+        }
+
+        /** Double the size of the table. */
+        private void grow() {
+            int[] oldKeys = _keys, oldPred = pred;
+            double[] oldDist = dist;
+            byte[] oldStatus = status;
+            allocate(2 * oldKeys.length);
+            for (int j = 0; j < oldKeys.length; j += 1) {
+                if (oldKeys[j] != 0) {
+                    int i = find(oldKeys[j], true);
+                    dist[i] = oldDist[j];
+                    pred[i] = oldPred[j];
+                    status[i] = oldStatus[j];
+                }
+            }
+        }
+
+        /** Initial number of slots. */
+        static final int INITIAL_CAPACITY = 64;
+
+        /** Vertex in each slot, or 0 if empty. */
+        private int[] _keys = new int[0];
+        /** Log2 of the number of slots. */
+        private int _bits;
+        /** Number of occupied slots. */
+        private int _size;
+    }
+
+    /** Status of a vertex reached but not yet queued. */
+    private static final byte NEW = 0;
+    /** Status of a queued, unsettled vertex. */
+    private static final byte OPEN = 1;
+    /** Status of a settled vertex. */
+    private static final byte CLOSED = 2;
+
+    /** Search state. */
+    private final Workspace _state;
+    /** Number of vertices settled by the last search. */
+    private int _settled;
+    /** Keys of a binary heap of vertices. */
+    private double[] _heapKey = new double[64];
+    /** Values of the heap. */
+    private int[] _heapVal = new int[64];
+    /** Number of heap entries. */
+    private int _heapSize;
+}
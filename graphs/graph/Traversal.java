@@ -22,7 +22,10 @@ import java.util.Queue;
  *  the addition of neighbor vertices to the fringe when a vertex is visited.
  *
  *  Traversals may be interrupted or restarted, remembering the previously
- *  marked vertices.
+ *  marked vertices.  A traversal stops as soon as visit or postVisit
+ *  returns false, and may also be paused from within a visit, or carried
+ *  out one visit at a time with step.  The fringe and marks are kept
+ *  between calls, so that resume continues where the traversal left off.
  *  @author Jacob Lin
  */
 public abstract class Traversal {
@@ -41,34 +44,86 @@ public abstract class Traversal {
         }
     }
 
-    /** Initialize the fringe to V0 and perform a traversal. */
-    public void traverse(Collection<Integer> V0) {
+    /** Initialize the fringe to V0 and perform a traversal.  Returns
+     *  false iff the traversal was stopped by visit or postVisit returning
+     *  false; otherwise, it ran until the fringe was empty or pause was
+     *  called. */
+    public boolean traverse(Collection<Integer> V0) {
+        start(V0);
+        return resume();
+    }
+
+    /** Initialize the fringe to { V0 } and perform a traversal.  Returns
+     *  false iff the traversal was stopped by visit or postVisit returning
+     *  false. */
+    public boolean traverse(int v0) {
+        return traverse(Arrays.<Integer>asList(v0));
+    }
+
+    /** Initialize the fringe to V0 without traversing, so that the
+     *  traversal may be carried out by step or resume. */
+    public void start(Collection<Integer> V0) {
+        _fringe.clear();
         _fringe.addAll(V0);
+        _paused = _stopped = false;
+    }
+
+    /** Initialize the fringe to { V0 } without traversing. */
+    public void start(int v0) {
+        start(Arrays.<Integer>asList(v0));
+    }
+
+    /** Continue the traversal with the current fringe and marks until
+     *  the fringe is empty, pause is called, or visit or postVisit returns
+     *  false.  Returns false iff it was stopped by visit or postVisit.
+     *  A vertex whose visit stopped the traversal remains marked, but its
+     *  successors are not added to the fringe. */
+    public boolean resume() {
+        _paused = _stopped = false;
+        while (!_paused && !_stopped && !_fringe.isEmpty()) {
+            step();
+        }
+        return !_stopped;
+    }
+
+    /** Perform the next visit or post-visit, discarding any marked
+     *  vertices at the front of the fringe.  Returns true iff there was
+     *  one to perform and it did not return false. */
+    public boolean step() {
+        _stopped = false;
         while (!_fringe.isEmpty()) {
-            int v = _fringe.peek();
-            _fringe.remove();
+            int v = _fringe.remove();
             if (v < 0) {
-                postVisit(-v);
-                continue;
+                _stopped = !postVisit(-v);
+                return !_stopped;
             }
             if (!marked(v)) {
                 mark(v);
-                visit(v);
+                if (!visit(v)) {
+                    _stopped = true;
+                    return false;
+                }
                 if (shouldPostVisit(v)) {
                     _fringe.add(-v);
                 }
-                for (int u : _G.successors(v)) {
-                    if (processSuccessor(v, u)) {
-                        _fringe.add(u);
-                    }
-                }
+                processSuccessors(v);
+                return true;
             }
         }
+        return false;
+    }
+
+    /** Cause the current traverse or resume to return once the vertex
+     *  being visited or post-visited has been processed.  Intended to be
+     *  called from visit or postVisit. */
+    public void pause() {
+        _paused = true;
     }
 
-    /** Initialize the fringe to { V0 } and perform a traversal. */
-    public void traverse(int v0) {
-        traverse(Arrays.<Integer>asList(v0));
+    /** Returns true iff the fringe is empty, so that the traversal is
+     *  complete. */
+    public boolean finished() {
+        return _fringe.isEmpty();
     }
 
     /** Returns true iff V has been marked. */
@@ -130,5 +185,9 @@ public abstract class Traversal {
     private final Queue<Integer> _fringe;
     /** A boolean list to represent my unmarked nodes. */
     private boolean[] allMarks;
+    /** True iff pause has been called during the current traversal. */
+    private boolean _paused;
+    /** True iff the last step was stopped by visit or postVisit. */
+    private boolean _stopped;
 
 }
@@ -0,0 +1,211 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** The triangles of an undirected graph, and the local clustering
+ *  coefficients of its vertices.  Self edges are ignored.
+ *
+ *  Each edge is oriented from the endpoint of lower degree to that of
+ *  higher degree (ties broken by vertex number), so that every vertex
+ *  keeps only its higher-ranked neighbors, in a sorted primitive array.
+ *  Every triangle is then found exactly once, at its lowest-ranked vertex
+ *  v, as an element common to the lists of v and of one of its
+ *  neighbors.  The lists are intersected by merging, or by galloping
+ *  (exponential search) when one is much shorter than the other.  The
+ *  vertices are divided among the threads of a ForkJoin pool.
+ *  @author Jacob Lin
+ */
+public class TriangleCount {
+
+    /** The triangles of G, which must be undirected, computed on the
+     *  common ForkJoin pool. */
+    public TriangleCount(Graph G) {
+        this(G, ForkJoinPool.commonPool());
+    }
+
+    /** The triangles of G, which must be undirected, computed on POOL. */
+    public TriangleCount(Graph G, ForkJoinPool pool) {
+        if (G.isDirected()) {
+            throw new IllegalArgumentException("graph must be undirected");
+        }
+        Adjacency adj = new Adjacency(G);
+        int n = adj.maxVertex() + 1;
+        _degree = new int[n];
+        _vertexSize = adj.vertexSize();
+        for (int v = 1; v < n; v += 1) {
+            for (int e = adj.start(v); e < adj.end(v); e += 1) {
+                if (adj.target(e) != v) {
+                    _degree[v] += 1;
+                }
+            }
+        }
+        int[][] higher = new int[n][];
+        Parallel.forRange(pool, 1, n, GRAIN, (v) -> {
+            int[] out = new int[_degree[v]];
+            int k;
+            k = 0;
+            for (int e = adj.start(v); e < adj.end(v); e += 1) {
+                int w = adj.target(e);
+                if (w != v && precedes(v, w)) {
+                    out[k] = w;
+                    k += 1;
+                }
+            }
+            out = Arrays.copyOf(out, k);
+            Arrays.sort(out);
+            higher[v] = out;
+        });
+
+        AtomicLongArray count = new AtomicLongArray(n);
+        Parallel.forRange(pool, 1, n, COUNT_GRAIN, (v) -> {
+            int[] out = higher[v];
+            long local;
+            local = 0;
+            for (int w : out) {
+                local += intersect(out, higher[w], w, count);
+            }
+            if (local > 0) {
+                count.addAndGet(v, local);
+            }
+        });
+        _triangles = new long[n];
+        long total;
+        total = 0;
+        for (int v = 1; v < n; v += 1) {
+            _triangles[v] = count.get(v);
+            total += _triangles[v];
+        }
+        _total = total / 3;
+    }
+
+    /** Returns the number of triangles in the graph. */
+    public long triangles() {
+        return _total;
+    }
+
+    /** Returns the number of triangles containing V (0 if V is not a
+     *  vertex). */
+    public long triangles(int v) {
+        return v > 0 && v < _triangles.length ? _triangles[v] : 0;
+    }
+
+    /** Returns the local clustering coefficient of V: the fraction of
+     *  pairs of distinct neighbors of V that are themselves adjacent.
+     *  Returns 0 if V has fewer than two neighbors. */
+    public double clustering(int v) {
+        if (v <= 0 || v >= _degree.length || _degree[v] < 2) {
+            return 0.0;
+        }
+        double d = _degree[v];
+        return 2.0 * _triangles[v] / (d * (d - 1));
+    }
+
+    /** Returns the average of clustering(v) over all vertices v. */
+    public double averageClustering() {
+        if (_vertexSize == 0) {
+            return 0.0;
+        }
+        double sum;
+        sum = 0.0;
+        for (int v = 1; v < _degree.length; v += 1) {
+            sum += clustering(v);
+        }
+        return sum / _vertexSize;
+    }
+
+    /** Returns true iff U precedes V in the order of vertices by degree,
+     *  then by vertex number. */
+    private boolean precedes(int u, int v) {
+        return _degree[u] < _degree[v] || (_degree[u] == _degree[v] && u < v);
+    }
+
+    /** Returns the number of elements common to the sorted arrays A and
+     *  B, which are the higher-ranked neighbors of some vertex U and of its
+     *  neighbor V, respectively.  For each common element X (which forms a
+     *  triangle with U and V), adds 1 to COUNT[V] and COUNT[X]. */
+    private static long intersect(int[] a, int[] b, int v,
+                                  AtomicLongArray count) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        long found;
+        found = 0;
+        if (a.length == 0) {
+            return 0;
+        } else if (b.length / a.length >= GALLOP_RATIO) {
+            int lo = 0;
+            for (int x : a) {
+                lo = gallop(b, lo, x);
+                if (lo == b.length) {
+                    break;
+                }
+                if (b[lo] == x) {
+                    found += 1;
+                    count.incrementAndGet(v);
+                    count.incrementAndGet(x);
+                }
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i += 1;
+                } else if (a[i] > b[j]) {
+                    j += 1;
+                } else {
+                    found += 1;
+                    count.incrementAndGet(v);
+                    count.incrementAndGet(a[i]);
+                    i += 1;
+                    j += 1;
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Returns the smallest index k >= LO such that B[k] >= X, or
+     *  B.length if there is none, assuming B is sorted. */
+    private static int gallop(int[] b, int lo, int x) {
+        int step = 1, hi = lo;
+        while (hi < b.length && b[hi] < x) {
+            lo = hi + 1;
+            hi += step;
+            step *= 2;
+        }
+        hi = Math.min(hi, b.length);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (b[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Number of vertices below which the orientation step is not split
+     *  among threads. */
+    static final int GRAIN = 4096;
+    /** Number of vertices below which the counting step is not split
+     *  among threads (the work per vertex varies widely). */
+    static final int COUNT_GRAIN = 64;
+    /** Ratio of list lengths at or above which galloping is used. */
+    static final int GALLOP_RATIO = 16;
+
+    /** Number of distinct, non-self neighbors of each vertex. */
+    private final int[] _degree;
+    /** Number of triangles containing each vertex. */
+    private final long[] _triangles;
+    /** Total number of triangles. */
+    private final long _total;
+    /** Number of vertices. */
+    private final int _vertexSize;
+}
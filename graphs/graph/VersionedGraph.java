@@ -0,0 +1,658 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/** A graph that may be read by many threads while a single writer
+ *  modifies it, using multiversion snapshots.  The VersionedGraph itself
+ *  is an ordinary mutable Graph, to be used only by the writer thread.
+ *  At any time, the writer may publish its current state as a Snapshot:
+ *  an immutable Graph that any number of threads may read concurrently,
+ *  without locking, and on which Traversal, ShortestPaths, and so forth
+ *  may be run directly.  Readers obtain the latest published Snapshot
+ *  with snapshot(), which is a single volatile read.
+ *
+ *  Each vertex's successors, predecessors, and edge identifiers are held
+ *  in a record, and the records in a two-level directory of fixed-size
+ *  chunks.  A record, its chunk, and the top level of the directory are
+ *  copied only the first time they change after a publication, after
+ *  which the writer updates its copies in place until the next
+ *  publication.  Adding or removing an edge therefore takes amortized
+ *  constant time (records of vertices of high degree keep hash indices
+ *  of their neighbors), apart from one copy of each record changed per
+ *  publication.  Published records are never changed, so versions share
+ *  all unmodified records and chunks, and the memory used by the live
+ *  versions is proportional to the changes between them.  Snapshots
+ *  should reach other threads through snapshot() or some other
+ *  synchronizing action.
+ *  @author Jacob Lin
+ */
+public class VersionedGraph extends Graph {
+
+    /** An immutable version of a VersionedGraph.  All modifying
+     *  operations throw UnsupportedOperationException. */
+    public static final class Snapshot extends Graph {
+
+        /** A version numbered VERSION of a graph that is directed iff
+         *  DIRECTED, whose vertex records are in DIR, with MAXVERTEX as its
+         *  largest vertex, VERTEXSIZE vertices, and EDGESIZE edges. */
+        private Snapshot(boolean directed, Node[][] dir, int maxVertex,
+                         int vertexSize, int edgeSize, long version) {
+            _directed = directed;
+            _dir = dir;
+            _maxVertex = maxVertex;
+            _vertexSize = vertexSize;
+            _edgeSize = edgeSize;
+            _version = version;
+        }
+
+        /** Returns my version number.  Versions published later have
+         *  larger numbers. */
+        public long version() {
+            return _version;
+        }
+
+        @Override
+        public int vertexSize() {
+            return _vertexSize;
+        }
+
+        @Override
+        public int maxVertex() {
+            return _maxVertex;
+        }
+
+        @Override
+        public int edgeSize() {
+            return _edgeSize;
+        }
+
+        @Override
+        public boolean isDirected() {
+            return _directed;
+        }
+
+        @Override
+        public int outDegree(int v) {
+            Node n = node(v);
+            return n == null ? 0 : n.succ.size();
+        }
+
+        @Override
+        public int inDegree(int v) {
+            Node n = node(v);
+            return n == null ? 0 : n.predecessors().size();
+        }
+
+        @Override
+        public boolean contains(int u) {
+            return node(u) != null;
+        }
+
+        @Override
+        public boolean contains(int u, int v) {
+            return edgeId(u, v) != 0;
+        }
+
+        @Override
+        public int add() {
+            throw readOnly();
+        }
+
+        @Override
+        public int add(int u, int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int u, int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public Iteration<Integer> vertices() {
+            return new VertexIteration() {
+                @Override
+                Node record(int v) {
+                    return node(v);
+                }
+
+                @Override
+                int last() {
+                    return _maxVertex;
+                }
+            };
+        }
+
+        @Override
+        public Iteration<Integer> successors(int v) {
+            Node n = node(v);
+            return n == null ? new IntIteration(NO_INTS)
+                : n.succ.iteration(false);
+        }
+
+        @Override
+        public Iteration<Integer> predecessors(int v) {
+            Node n = node(v);
+            return n == null ? new IntIteration(NO_INTS)
+                : n.predecessors().iteration(false);
+        }
+
+        @Override
+        public Iteration<int[]> edges() {
+            return new EdgeIteration(_directed) {
+                @Override
+                Node record(int v) {
+                    return node(v);
+                }
+
+                @Override
+                int last() {
+                    return _maxVertex;
+                }
+
+                @Override
+                boolean owned(Node n) {
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        protected int edgeId(int u, int v) {
+            Node n = node(u);
+            if (n == null) {
+                return 0;
+            }
+            int k = n.succ.find(v);
+            return k < 0 ? 0 : n.succ.id(k);
+        }
+
+        /** Returns the record of vertex V, or null if V is not one of my
+         *  vertices. */
+        private Node node(int v) {
+            if (v < 1 || v > _maxVertex) {
+                return null;
+            }
+            Node[] chunk = _dir[v >>> CHUNK_BITS];
+            return chunk == null ? null : chunk[v & CHUNK_MASK];
+        }
+
+        /** True iff I am directed. */
+        private final boolean _directed;
+        /** Directory of vertex records. */
+        private final Node[][] _dir;
+        /** Largest vertex number. */
+        private final int _maxVertex;
+        /** Number of vertices. */
+        private final int _vertexSize;
+        /** Number of edges. */
+        private final int _edgeSize;
+        /** Version number. */
+        private final long _version;
+    }
+
+    /** An empty graph that is directed iff DIRECTED.  Its initial (empty)
+     *  state is published as version 0. */
+    public VersionedGraph(boolean directed) {
+        _directed = directed;
+        _dir = new Node[1][];
+        _current = new Snapshot(directed, _dir, 0, 0, 0, 0);
+    }
+
+    /** Publish my current state as a new version, and return it. */
+    public Snapshot publish() {
+        _version += 1;
+        Snapshot result = new Snapshot(_directed, _dir, _maxVertex,
+                                       _vertexSize, _edgeSize, _version);
+        _dirOwned = false;
+        _owned.clear();
+        _epoch += 1;
+        _current = result;
+        return result;
+    }
+
+    /** Returns the most recently published version.  May be called from
+     *  any thread. */
+    public Snapshot snapshot() {
+        return _current;
+    }
+
+    @Override
+    public int vertexSize() {
+        return _vertexSize;
+    }
+
+    @Override
+    public int maxVertex() {
+        return _maxVertex;
+    }
+
+    @Override
+    public int edgeSize() {
+        return _edgeSize;
+    }
+
+    @Override
+    public boolean isDirected() {
+        return _directed;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        Node n = node(v);
+        return n == null ? 0 : n.succ.size();
+    }
+
+    @Override
+    public int inDegree(int v) {
+        Node n = node(v);
+        return n == null ? 0 : n.predecessors().size();
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return node(u) != null;
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return edgeId(u, v) != 0;
+    }
+
+    @Override
+    public int add() {
+        int v;
+        if (_freeVertices.isEmpty()) {
+            v = _maxVertex + 1;
+            _maxVertex = v;
+        } else {
+            v = _freeVertices.pollFirst();
+        }
+        setNode(v, _directed ? EMPTY_DIRECTED : EMPTY_UNDIRECTED);
+        _vertexSize += 1;
+        return v;
+    }
+
+    @Override
+    public int add(int u, int v) {
+        checkMyVertex(u);
+        checkMyVertex(v);
+        int id = edgeId(u, v);
+        if (id != 0) {
+            return id;
+        }
+        id = newEdgeId();
+        own(u).succ.add(v, id);
+        if (_directed) {
+            own(v).pred.add(u, 0);
+        } else if (u != v) {
+            own(v).succ.add(u, id);
+        }
+        _edgeSize += 1;
+        return id;
+    }
+
+    @Override
+    public void remove(int v) {
+        Node n = node(v);
+        if (n == null) {
+            return;
+        }
+        for (int k = 0; k < n.succ.size(); k += 1) {
+            int w = n.succ.vertex(k);
+            freeEdgeId(n.succ.id(k));
+            _edgeSize -= 1;
+            if (w != v) {
+                if (_directed) {
+                    own(w).pred.remove(v);
+                } else {
+                    own(w).succ.remove(v);
+                }
+            }
+        }
+        if (_directed) {
+            for (int k = 0; k < n.pred.size(); k += 1) {
+                int u = n.pred.vertex(k);
+                if (u != v) {
+                    Node m = own(u);
+                    freeEdgeId(m.succ.id(m.succ.find(v)));
+                    _edgeSize -= 1;
+                    m.succ.remove(v);
+                }
+            }
+        }
+        setNode(v, null);
+        _vertexSize -= 1;
+        if (v == _maxVertex) {
+            while (_maxVertex > 0 && node(_maxVertex) == null) {
+                _freeVertices.remove(_maxVertex);
+                _maxVertex -= 1;
+            }
+        } else {
+            _freeVertices.add(v);
+        }
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        int id = edgeId(u, v);
+        if (id == 0) {
+            return;
+        }
+        freeEdgeId(id);
+        own(u).succ.remove(v);
+        if (_directed) {
+            own(v).pred.remove(u);
+        } else if (u != v) {
+            own(v).succ.remove(u);
+        }
+        _edgeSize -= 1;
+    }
+
+    /** Returns an iteration over my vertices.  Vertices added or removed
+     *  during the iteration may or may not be delivered. */
+    @Override
+    public Iteration<Integer> vertices() {
+        return new VertexIteration() {
+            @Override
+            Node record(int v) {
+                return node(v);
+            }
+
+            @Override
+            int last() {
+                return _maxVertex;
+            }
+        };
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        Node n = node(v);
+        return n == null ? new IntIteration(NO_INTS)
+            : n.succ.iteration(n.epoch == _epoch);
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        Node n = node(v);
+        return n == null ? new IntIteration(NO_INTS)
+            : n.predecessors().iteration(n.epoch == _epoch);
+    }
+
+    /** Returns an iteration over my edges.  Each vertex's edges are those
+     *  it had when the iteration reached it. */
+    @Override
+    public Iteration<int[]> edges() {
+        return new EdgeIteration(_directed) {
+            @Override
+            Node record(int v) {
+                return node(v);
+            }
+
+            @Override
+            int last() {
+                return _maxVertex;
+            }
+
+            @Override
+            boolean owned(Node n) {
+                return n.epoch == _epoch;
+            }
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        Node n = node(u);
+        if (n == null) {
+            return 0;
+        }
+        int k = n.succ.find(v);
+        return k < 0 ? 0 : n.succ.id(k);
+    }
+
+    /** Returns the record of vertex V, which must be one of my vertices,
+     *  first replacing it with a copy that I may change in place if it
+     *  may be shared with a published version. */
+    private Node own(int v) {
+        Node n = node(v);
+        if (n.epoch != _epoch) {
+            n = n.copy(_epoch);
+            setNode(v, n);
+        }
+        return n;
+    }
+
+    /** Returns the current record of vertex V, or null if V is not one of
+     *  my vertices. */
+    private Node node(int v) {
+        if (v < 1 || v > _maxVertex) {
+            return null;
+        }
+        Node[] chunk = _dir[v >>> CHUNK_BITS];
+        return chunk == null ? null : chunk[v & CHUNK_MASK];
+    }
+
+    /** Make N the record of vertex V, copying the directory and V's
+     *  chunk first if they may be shared with a published version. */
+    private void setNode(int v, Node n) {
+        int c = v >>> CHUNK_BITS;
+        if (c >= _dir.length) {
+            _dir = Arrays.copyOf(_dir, Math.max(c + 1, 2 * _dir.length));
+            _dirOwned = true;
+        } else if (!_dirOwned) {
+            _dir = _dir.clone();
+            _dirOwned = true;
+        }
+        if (_dir[c] == null) {
+            _dir[c] = new Node[CHUNK_SIZE];
+            _owned.set(c);
+        } else if (!_owned.get(c)) {
+            _dir[c] = _dir[c].clone();
+            _owned.set(c);
+        }
+        _dir[c][v & CHUNK_MASK] = n;
+    }
+
+    /** Returns an unused edge identifier. */
+    private int newEdgeId() {
+        if (_freeIdCount > 0) {
+            _freeIdCount -= 1;
+            return _freeIds[_freeIdCount];
+        }
+        _nextEdgeId += 1;
+        return _nextEdgeId;
+    }
+
+    /** Make edge identifier ID available for reuse. */
+    private void freeEdgeId(int id) {
+        if (_freeIdCount == _freeIds.length) {
+            _freeIds = Arrays.copyOf(_freeIds, 2 * _freeIds.length);
+        }
+        _freeIds[_freeIdCount] = id;
+        _freeIdCount += 1;
+    }
+
+    /** Returns an exception for an attempt to modify a Snapshot. */
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("snapshot is read-only");
+    }
+
+    /** An iteration over the vertices of a graph whose records are
+     *  given by record(v) for v from 1 to last(). */
+    private abstract static class VertexIteration extends Iteration<Integer> {
+        /** Returns the record of V, or null if V is not a vertex. */
+        abstract Node record(int v);
+
+        /** Returns the largest vertex number. */
+        abstract int last();
+
+        @Override
+        public boolean hasNext() {
+            while (_next <= last() && record(_next) == null) {
+                _next += 1;
+            }
+            return _next <= last();
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _next += 1;
+            return _next - 1;
+        }
+
+        /** Next vertex number to examine. */
+        private int _next = 1;
+    }
+
+    /** An iteration over the edges of a graph whose records are given
+     *  by record(v) for v from 1 to last(). */
+    private abstract static class EdgeIteration extends Iteration<int[]> {
+        /** An iteration over the edges of a graph that is directed iff
+         *  DIRECTED. */
+        EdgeIteration(boolean directed) {
+            _directed = directed;
+        }
+
+        /** Returns the record of V, or null if V is not a vertex. */
+        abstract Node record(int v);
+
+        /** Returns the largest vertex number. */
+        abstract int last();
+
+        /** Returns true iff N may be changed while I am iterating. */
+        abstract boolean owned(Node n);
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                while (_k < _size) {
+                    if (_directed || _u <= _succ[_k]) {
+                        return true;
+                    }
+                    _k += 1;
+                }
+                if (_u >= last()) {
+                    return false;
+                }
+                _u += 1;
+                Node n = record(_u);
+                _k = 0;
+                _size = n == null ? 0 : n.succ.size();
+                _succ = n == null ? NO_INTS : n.succ.vertices(owned(n));
+            }
+        }
+
+        @Override
+        public int[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _k += 1;
+            return new int[] { _u, _succ[_k - 1] };
+        }
+
+        /** True iff the graph is directed. */
+        private final boolean _directed;
+        /** Current source vertex. */
+        private int _u;
+        /** Successors of _u. */
+        private int[] _succ = NO_INTS;
+        /** Number of successors of _u. */
+        private int _size;
+        /** Index of the next successor of _u. */
+        private int _k;
+    }
+
+    /** The record of one vertex.  It may be changed in place only by the
+     *  writer, and only during the epoch (the interval between
+     *  publications) in which it was created. */
+    private static final class Node {
+        /** A record created in epoch EPOCH with successors SUCC and
+         *  predecessors PRED (null for undirected graphs, in which they
+         *  are the successors). */
+        Node(long epoch, Neighbors succ, Neighbors pred) {
+            this.epoch = epoch;
+            this.succ = succ;
+            this.pred = pred;
+        }
+
+        /** Returns a copy of me created in epoch EPOCH. */
+        Node copy(long epoch) {
+            return new Node(epoch, new Neighbors(succ),
+                            pred == null ? null : new Neighbors(pred));
+        }
+
+        /** Returns my predecessors. */
+        Neighbors predecessors() {
+            return pred == null ? succ : pred;
+        }
+
+        /** The epoch in which I was created. */
+        private final long epoch;
+        /** Successor vertices, with the identifiers of their edges. */
+        private final Neighbors succ;
+        /** Predecessor vertices, or null if the same as succ. */
+        private final Neighbors pred;
+    }
+
+    /** Log2 of the number of vertex records per chunk. */
+    static final int CHUNK_BITS = 6;
+    /** Number of vertex records per chunk. */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /** Mask giving the index of a vertex within its chunk. */
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** An empty int array. */
+    private static final int[] NO_INTS = new int[0];
+    /** Record of an isolated vertex of a directed graph. */
+    private static final Node EMPTY_DIRECTED =
+        new Node(-1, new Neighbors(true), new Neighbors(false));
+    /** Record of an isolated vertex of an undirected graph. */
+    private static final Node EMPTY_UNDIRECTED =
+        new Node(-1, new Neighbors(true), null);
+
+    /** True iff I am directed. */
+    private final boolean _directed;
+    /** Directory of current vertex records, by chunk. */
+    private Node[][] _dir;
+    /** True iff _dir is not shared with any published version. */
+    private boolean _dirOwned;
+    /** Indices of the chunks of _dir not shared with any published
+     *  version. */
+    private final BitSet _owned = new BitSet();
+    /** Largest vertex number. */
+    private int _maxVertex;
+    /** Number of vertices. */
+    private int _vertexSize;
+    /** Number of edges. */
+    private int _edgeSize;
+    /** Unused vertex numbers less than _maxVertex. */
+    private final TreeSet<Integer> _freeVertices = new TreeSet<>();
+    /** Largest edge identifier issued. */
+    private int _nextEdgeId;
+    /** Stack of edge identifiers available for reuse. */
+    private int[] _freeIds = new int[16];
+    /** Number of entries in _freeIds. */
+    private int _freeIdCount;
+    /** Number of the last published version. */
+    private long _version;
+    /** Number of the current epoch: the number of publications. */
+    private long _epoch;
+    /** The last published version. */
+    private volatile Snapshot _current;
+}
@@ -0,0 +1,155 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Answers a stream of trip requests against one Trip, whose map is read
+ *  only once.  Each request is a line containing a comma-separated list
+ *  of locations; blank lines are ignored.  Requests are solved by a pool
+ *  of worker threads, but their reports are written in the order of the
+ *  requests, separated by blank lines.  A request that fails has its
+ *  partial report written as usual, followed by an error message on the
+ *  error stream, which is flushed at the same point.
+ *  @author Jacob Lin
+ */
+class Batch {
+
+    /** A batch of requests to TRIP, to be solved by THREADS workers. */
+    Batch(Trip trip, int threads) {
+        _trip = trip;
+        _threads = Math.max(1, threads);
+    }
+
+    /** Answer the requests in IN, writing reports to OUT and error
+     *  messages and a final summary to ERR. */
+    void run(BufferedReader in, PrintStream out, PrintStream err)
+        throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        try {
+            ArrayDeque<Future<Result>> pending = new ArrayDeque<>();
+            int line;
+            line = 0;
+            while (true) {
+                String request = in.readLine();
+                if (request == null) {
+                    break;
+                }
+                line += 1;
+                if (request.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> stops =
+                    Arrays.asList(Main.LISTSEP.split(request.trim()));
+                int number = line;
+                pending.add(pool.submit(() -> solve(number, stops)));
+                if (pending.size() >= MAX_PENDING * _threads) {
+                    write(pending.remove(), out, err);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.remove(), out, err);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        err.printf("trip: %d requests (%d failed) in %.3f s,"
+                   + " %.1f requests/s, %d threads%n",
+                   _requests, _failures, seconds,
+                   seconds == 0.0 ? 0.0 : _requests / seconds, _threads);
+        err.printf("trip: %s%n", _trip.routeCache());
+    }
+
+    /** Returns the number of requests answered. */
+    int requests() {
+        return _requests;
+    }
+
+    /** Returns the number of requests that failed. */
+    int failures() {
+        return _failures;
+    }
+
+    /** Returns the result of the request on line LINE, for a trip through
+     *  STOPS. */
+    private Result solve(int line, List<String> stops) {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(report);
+        String error;
+        error = null;
+        try {
+            _trip.makeTrip(stops, out);
+        } catch (IllegalArgumentException excp) {
+            error = String.format("line %d: %s", line, excp.getMessage());
+        }
+        out.flush();
+        return new Result(report.toByteArray(), error);
+    }
+
+    /** Write the result of RESULT to OUT and ERR. */
+    private void write(Future<Result> result, PrintStream out,
+                       PrintStream err) throws IOException {
+        Result r;
+        try {
+            r = result.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted");
+        } catch (ExecutionException excp) {
+            Throwable cause = excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        if (_requests > 0) {
+            out.println();
+        }
+        out.write(r.report, 0, r.report.length);
+        _requests += 1;
+        if (r.error != null) {
+            out.flush();
+            err.printf("trip: %s%n", r.error);
+            err.flush();
+            _failures += 1;
+        }
+    }
+
+    /** The outcome of one request. */
+    private static class Result {
+        /** A result with report REPORT and error message ERROR (null if
+         *  none). */
+        Result(byte[] report, String error) {
+            this.report = report;
+            this.error = error;
+        }
+
+        /** The text of the report. */
+        private final byte[] report;
+        /** The error message, or null. */
+        private final String error;
+    }
+
+    /** Number of requests per thread that may be in progress at once. */
+    private static final int MAX_PENDING = 4;
+
+    /** The trip planner. */
+    private final Trip _trip;
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Number of requests answered. */
+    private int _requests;
+    /** Number of requests that failed. */
+    private int _failures;
+}
@@ -0,0 +1,100 @@
+package trip;
+
+import java.io.PrintStream;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/** Computes matrices of road distances from many sources to many targets
+ *  in a Network.  Each row (or column) comes from a single search that
+ *  stops once it has settled all the locations at the other side, and
+ *  the searches run concurrently.  A matrix with fewer targets than
+ *  sources is computed by searching backward from the targets over the
+ *  reversed network, so that the number of searches is always the
+ *  smaller of the two.  Unreachable pairs have infinite distance.
+ *  @author Jacob Lin
+ */
+class DistanceMatrix {
+
+    /** A calculator for distances in NET. */
+    DistanceMatrix(Network net) {
+        _net = net;
+    }
+
+    /** Returns the matrix whose entry [i][j] is the distance from location
+     *  SOURCES[i] to location TARGETS[j]. */
+    double[][] compute(int[] sources, int[] targets) {
+        if (targets.length >= sources.length) {
+            return rows(_net, sources, targets);
+        }
+        double[][] columns = rows(reversed(), targets, sources);
+        double[][] result = new double[sources.length][targets.length];
+        for (int i = 0; i < sources.length; i += 1) {
+            for (int j = 0; j < targets.length; j += 1) {
+                result[i][j] = columns[j][i];
+            }
+        }
+        return result;
+    }
+
+    /** Write to OUT the matrix of distances from the locations SOURCES to
+     *  the locations TARGETS, whose names are SOURCENAMES and
+     *  TARGETNAMES, as comma-separated values.  The first line holds the
+     *  target names, and each other line a source name followed by its
+     *  distances, with empty fields for unreachable targets.  Distances
+     *  are written with a decimal point whatever the locale.  Rows are
+     *  computed a block at a time and written as each block is done, so
+     *  that memory use does not grow with the number of sources. */
+    void writeCsv(String[] sourceNames, int[] sources, String[] targetNames,
+                  int[] targets, PrintStream out) {
+        StringBuilder line = new StringBuilder();
+        for (String name : targetNames) {
+            line.append(',').append(name);
+        }
+        out.println(line);
+        int block = BLOCK_ROWS * Runtime.getRuntime().availableProcessors();
+        for (int i0 = 0; i0 < sources.length; i0 += block) {
+            int i1 = Math.min(sources.length, i0 + block);
+            double[][] dist =
+                rows(_net, Arrays.copyOfRange(sources, i0, i1), targets);
+            for (int i = i0; i < i1; i += 1) {
+                line.setLength(0);
+                line.append(sourceNames[i]);
+                for (double d : dist[i - i0]) {
+                    line.append(',');
+                    if (d != Double.POSITIVE_INFINITY) {
+                        line.append(String.format(Locale.ROOT, "%.3f", d));
+                    }
+                }
+                out.println(line);
+            }
+        }
+        out.flush();
+    }
+
+    /** Returns the matrix of distances in NET from ROOTS[i] to OTHERS[j],
+     *  computing its rows concurrently. */
+    private static double[][] rows(Network net, int[] roots, int[] others) {
+        double[][] result = new double[roots.length][];
+        IntStream.range(0, roots.length).parallel()
+            .forEach(i -> result[i] = net.search(roots[i], others));
+        return result;
+    }
+
+    /** Returns my network reversed, building it on first use. */
+    private synchronized Network reversed() {
+        if (_reversed == null) {
+            _reversed = _net.reverse();
+        }
+        return _reversed;
+    }
+
+    /** Number of rows per processor computed at once by writeCsv. */
+    private static final int BLOCK_ROWS = 4;
+
+    /** The network searched. */
+    private final Network _net;
+    /** _net with its roads reversed, or null if not yet needed. */
+    private Network _reversed;
+}
@@ -0,0 +1,244 @@
+package trip;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Landmark distance tables for the ALT (A*, landmarks, and triangle
+ *  inequality) heuristic.  For each of a few landmark locations L, the
+ *  table holds the road distance d(L, v) from L to every location v.
+ *  Since every road may be traveled in both directions at the same
+ *  length, d(L, v) = d(v, L), and the triangle inequality gives
+ *  |d(L, t) - d(L, v)| as a lower bound on the distance from v to t.
+ *  The largest such bound over all landmarks is a consistent A*
+ *  potential that, unlike straight-line distance, accounts for detours
+ *  around obstacles.
+ *
+ *  Distances are stored as floats, rounded down, and the bound is
+ *  computed so that rounding never makes it exceed the true distance.
+ *  Locations are numbered from 0, as in MapImage.  The tables of a
+ *  loaded image are read in place from the mapped file.
+ *
+ *  Landmarks are chosen by farthest selection: each new landmark is a
+ *  location as far as possible from those already chosen, starting with
+ *  the location farthest from some location in the largest connected
+ *  part of the map.  Locations that no landmark can reach count as
+ *  farthest, but only if the part of the map containing them is large
+ *  enough to deserve a landmark, so that isolated locations do not use
+ *  them up.  To allow the
+ *  searches from new landmarks to run in parallel, they are chosen in
+ *  batches, at most one from the region nearest each existing landmark,
+ *  so that the members of a batch are far from each other as well.  With
+ *  one thread, this is ordinary farthest selection.
+ *  @author Jacob Lin
+ */
+class Landmarks {
+
+    /** Landmarks LANDMARKS whose distance tables are DIST. */
+    Landmarks(int[] landmarks, float[][] dist) {
+        _landmarks = landmarks;
+        _dist = new FloatBuffer[dist.length];
+        for (int j = 0; j < dist.length; j += 1) {
+            _dist[j] = FloatBuffer.wrap(dist[j]);
+        }
+    }
+
+    /** Landmarks LANDMARKS whose distance tables are DIST, which are
+     *  used without copying. */
+    Landmarks(int[] landmarks, FloatBuffer[] dist) {
+        _landmarks = landmarks;
+        _dist = dist;
+    }
+
+    /** Returns up to K landmarks for IMAGE, using up to THREADS threads
+     *  to compute their distance tables. */
+    static Landmarks select(MapImage image, int k, int threads) {
+        int n = image.locations();
+        k = Math.min(k, n);
+        if (k == 0) {
+            return new Landmarks(new int[0], new float[0][]);
+        }
+        Network net = new Network(image);
+        int[] part = net.components();
+        int[] partSize = new int[n];
+        int largest = 0;
+        for (int v = 0; v < n; v += 1) {
+            partSize[part[v]] += 1;
+            if (partSize[part[v]] > partSize[part[largest]]) {
+                largest = v;
+            }
+        }
+        boolean[] eligible = new boolean[n];
+        for (int v = 0; v < n; v += 1) {
+            eligible[v] = partSize[part[v]] * k >= n;
+        }
+        double[] minDist = new double[n];
+        int[] cell = new int[n];
+        Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+        Arrays.fill(cell, -1);
+        ArrayList<Integer> chosen = new ArrayList<>();
+        ArrayList<float[]> tables = new ArrayList<>();
+        List<Integer> batch = List.of(farthest(net.search(largest)));
+        ExecutorService pool =
+            threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            while (!batch.isEmpty()) {
+                List<double[]> dists = searchAll(net, batch, pool);
+                for (int j = 0; j < batch.size(); j += 1) {
+                    double[] d = dists.get(j);
+                    for (int v = 0; v < n; v += 1) {
+                        if (d[v] < minDist[v]) {
+                            minDist[v] = d[v];
+                            cell[v] = chosen.size();
+                        }
+                    }
+                    chosen.add(batch.get(j));
+                    tables.add(toFloats(d));
+                }
+                batch = nextBatch(minDist, cell, eligible, chosen.size(),
+                                  Math.min(Math.max(1, threads),
+                                           k - chosen.size()));
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        int[] landmarks = new int[chosen.size()];
+        for (int j = 0; j < landmarks.length; j += 1) {
+            landmarks[j] = chosen.get(j);
+        }
+        return new Landmarks(landmarks, tables.toArray(new float[0][]));
+    }
+
+    /** Returns the number of landmarks. */
+    int size() {
+        return _landmarks.length;
+    }
+
+    /** Returns the location number of landmark #J. */
+    int landmark(int j) {
+        return _landmarks[j];
+    }
+
+    /** Returns the distance table of landmark #J, indexed by location
+     *  number.  Unreachable locations have infinite distance. */
+    float[] table(int j) {
+        float[] result = new float[_dist[j].limit()];
+        _dist[j].duplicate().get(result);
+        return result;
+    }
+
+    /** Returns a lower bound on the road distance from location V to
+     *  location T. */
+    double lowerBound(int v, int t) {
+        double result = 0.0;
+        for (FloatBuffer d : _dist) {
+            float a = d.get(t), b = d.get(v);
+            if (a != Float.POSITIVE_INFINITY
+                && b != Float.POSITIVE_INFINITY) {
+                result = Math.max(result,
+                                  Math.max((double) a - Math.nextUp(b),
+                                           (double) b - Math.nextUp(a)));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the reachable location whose distance in DIST is largest,
+     *  preferring smaller numbers. */
+    private static int farthest(double[] dist) {
+        int result = 0;
+        for (int v = 1; v < dist.length; v += 1) {
+            if (dist[v] != Double.POSITIVE_INFINITY
+                && (dist[result] == Double.POSITIVE_INFINITY
+                    || dist[v] > dist[result])) {
+                result = v;
+            }
+        }
+        return result;
+    }
+
+    /** Returns up to SIZE new landmarks, given the distances MINDIST of
+     *  each location from its nearest landmark, whose number is in CELL
+     *  (-1 if none), and the number, CHOSEN, of landmarks so far.  The
+     *  new landmarks are the farthest locations in the cells whose
+     *  farthest locations are farthest.  Only the reachable locations and
+     *  the locations marked in ELIGIBLE are considered. */
+    private static List<Integer> nextBatch(double[] minDist, int[] cell,
+                                           boolean[] eligible, int chosen,
+                                           int size) {
+        int[] far = new int[chosen + 1];
+        Arrays.fill(far, -1);
+        for (int v = 0; v < minDist.length; v += 1) {
+            int c = cell[v] + 1;
+            if (minDist[v] > 0
+                && (c > 0 || eligible[v])
+                && (far[c] == -1 || minDist[v] > minDist[far[c]])) {
+                far[c] = v;
+            }
+        }
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int v : far) {
+            if (v != -1) {
+                result.add(v);
+            }
+        }
+        result.sort((v, w) -> minDist[v] != minDist[w]
+                    ? Double.compare(minDist[w], minDist[v])
+                    : Integer.compare(v, w));
+        return result.subList(0, Math.min(size, result.size()));
+    }
+
+    /** Returns the distances from each location in SOURCES in NET,
+     *  computed by POOL if it is not null. */
+    private static List<double[]> searchAll(Network net,
+                                            List<Integer> sources,
+                                            ExecutorService pool) {
+        ArrayList<double[]> result = new ArrayList<>();
+        if (pool == null) {
+            for (int s : sources) {
+                result.add(net.search(s));
+            }
+            return result;
+        }
+        ArrayList<Future<double[]>> work = new ArrayList<>();
+        for (int s : sources) {
+            work.add(pool.submit(() -> net.search(s)));
+        }
+        try {
+            for (Future<double[]> f : work) {
+                result.add(f.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        }
+        return result;
+    }
+
+    /** Returns DIST as floats, each rounded down. */
+    private static float[] toFloats(double[] dist) {
+        float[] result = new float[dist.length];
+        for (int v = 0; v < dist.length; v += 1) {
+            float f = (float) dist[v];
+            result[v] = f > dist[v] ? Math.nextDown(f) : f;
+        }
+        return result;
+    }
+
+    /** Default number of landmarks. */
+    static final int DEFAULT_COUNT = 16;
+
+    /** Location numbers of the landmarks. */
+    private final int[] _landmarks;
+    /** Distance table of each landmark. */
+    private final FloatBuffer[] _dist;
+}
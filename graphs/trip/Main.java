@@ -1,10 +1,17 @@
 package trip;
 
+import java.io.BufferedReader;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.FileNotFoundException;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import java.util.regex.Pattern;
+import java.util.Arrays;
 import java.util.List;
 
 import ucb.util.CommandArgs;
@@ -19,19 +26,78 @@ public final class Main {
 
     /** Entry point for the CS61B trip program.  RAWARGS may contain options
      *  and targets:
-     *      [ -m MAP ] [ -o OUT ] [ REQUEST ]
+     *      [ -m MAP ] [ -o OUT ] [ --parallel ]
+     *          [ --optimize | --keep-last ] [ REQUEST ]
      *  where MAP (default Map) contains the map data, OUT (default standard
      *  output) takes the result, and REQUEST (default standard input) contains
-     *  the locations along the requested trip.
+     *  the locations along the requested trip.  A location may be given
+     *  by name or as @X:Y, meaning the location nearest the point (X, Y).
+     *  With --parallel, the legs of the trip are computed concurrently.
+     *  With --optimize, the stops after the first are visited in the order
+     *  that makes the trip shortest, as nearly as can be found quickly;
+     *  --keep-last does the same, but keeps the last stop last.
+     *  Alternatively, RAWARGS may be
+     *      [ -m MAP ] --compile IMAGE
+     *  which writes a binary image of the text map MAP to the file IMAGE.
+     *  An image may be given as MAP in place of the text map, and is much
+     *  faster to read.  Or RAWARGS may be
+     *      [ -m MAP ] [ -o OUT ] [ --parallel ]
+     *          [ --optimize | --keep-last ] --batch [ --threads N ]
+     *          [ REQUESTS ]
+     *  which answers many requests, one per line of the file REQUESTS
+     *  (default standard input), each a comma-separated list of locations.
+     *  They are solved by N worker threads (default, one per processor)
+     *  and reported in order, followed by a summary on the standard
+     *  error.  Finally, RAWARGS may be
+     *      [ -m MAP ] [ --parallel ] [ --optimize | --keep-last ]
+     *          --serve PORT
+     *  which answers requests from clients connecting to PORT on the local
+     *  host, as described in Server, until killed.  Or RAWARGS may be
+     *      [ -m MAP ] [ -o OUT ] --matrix [ SITES ]
+     *  which writes the matrix of road distances between locations as
+     *  comma-separated values, as described in DistanceMatrix.  The first
+     *  non-blank line of the file SITES (default standard input) lists
+     *  the sources, and the next, if any, the targets (default, the
+     *  sources), separated by commas.
      */
     public static void main(String... rawArgs) {
         String mapFileName;
         String outFileName;
         List<String> targets;
         CommandArgs args =
-            new CommandArgs("-m={0,1} -o={0,1} --={2,}", rawArgs);
-
-        if (!args.ok()) {
+            new CommandArgs("-m={0,1} -o={0,1} --compile={0,1} --parallel"
+                            + " --optimize --keep-last"
+                            + " --batch --threads={0,1} --serve={0,1}"
+                            + " --matrix --={0,}", rawArgs);
+        boolean compile = args.contains("--compile"),
+            batch = args.contains("--batch"),
+            serve = args.contains("--serve"),
+            matrix = args.contains("--matrix");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int port = 0;
+        int numTargets = args.get("--").size();
+
+        if (args.contains("--threads")) {
+            try {
+                threads = Integer.parseInt(args.getFirst("--threads"));
+            } catch (NumberFormatException excp) {
+                usage();
+            }
+        }
+        if (serve) {
+            try {
+                port = Integer.parseInt(args.getFirst("--serve"));
+            } catch (NumberFormatException excp) {
+                usage();
+            }
+        }
+        if (!args.ok() || threads < 1 || port < 0 || port > 0xffff
+            || (args.contains("--optimize") && args.contains("--keep-last"))
+            || (compile ? 1 : 0) + (batch ? 1 : 0) + (serve ? 1 : 0)
+               + (matrix ? 1 : 0) > 1
+            || ((compile || serve) && numTargets != 0)
+            || ((batch || matrix) && numTargets > 1)
+            || (!compile && !batch && !serve && !matrix && numTargets < 2)) {
             usage();
         }
 
@@ -42,10 +108,27 @@ public final class Main {
         setFiles(outFileName);
 
         Trip trip = new Trip();
+        trip.setParallel(args.contains("--parallel"));
+        trip.setReorder(args.contains("--optimize")
+                        || args.contains("--keep-last"),
+                        args.contains("--keep-last"));
 
         try {
+            if (compile) {
+                MapImage.compile(mapFileName)
+                    .write(args.getFirst("--compile"));
+                return;
+            }
             trip.readMap(mapFileName);
-            trip.makeTrip(targets);
+            if (batch) {
+                runBatch(trip, threads, targets);
+            } else if (serve) {
+                runServer(trip, port);
+            } else if (matrix) {
+                runMatrix(trip, targets);
+            } else {
+                trip.makeTrip(targets);
+            }
         } catch (IllegalArgumentException excp) {
             System.err.printf("trip: %s%n", excp.getMessage());
             System.exit(1);
@@ -53,6 +136,67 @@ public final class Main {
     }
 
 
+    /** Answer the requests in the file named by TARGETS.get(0), or on
+     *  the standard input if TARGETS is empty, on TRIP, using THREADS
+     *  worker threads. */
+    private static void runBatch(Trip trip, int threads,
+                                 List<String> targets) {
+        try (BufferedReader in =
+             targets.isEmpty()
+             ? new BufferedReader(new InputStreamReader(System.in))
+             : Files.newBufferedReader(Paths.get(targets.get(0)))) {
+            new Batch(trip, threads).run(in, System.out, System.err);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Write the distance matrix on TRIP for the sources and targets in
+     *  the file named by TARGETS.get(0), or on the standard input if
+     *  TARGETS is empty. */
+    private static void runMatrix(Trip trip, List<String> targets) {
+        List<String> sources, destinations;
+        sources = destinations = null;
+        try (BufferedReader in =
+             targets.isEmpty()
+             ? new BufferedReader(new InputStreamReader(System.in))
+             : Files.newBufferedReader(Paths.get(targets.get(0)))) {
+            String line;
+            while (destinations == null && (line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> sites = Arrays.asList(LISTSEP.split(line.trim()));
+                if (sources == null) {
+                    sources = sites;
+                } else {
+                    destinations = sites;
+                }
+            }
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+        if (sources == null) {
+            error("no sources given for distance matrix");
+        }
+        trip.distanceMatrix(sources,
+                            destinations == null ? sources : destinations,
+                            System.out);
+    }
+
+    /** Answer requests on TRIP from clients connecting to PORT on the
+     *  local host. */
+    private static void runServer(Trip trip, int port) {
+        Server server = new Server(trip);
+        try {
+            port = server.listen(port);
+            System.err.printf("trip: serving on port %d%n", port);
+            server.serve();
+        } catch (IOException excp) {
+            error("cannot serve on port %d: %s", port, excp.getMessage());
+        }
+    }
+
     /** Set System.in to read from INFILE, if non-null; otherwise, leaves
      *  System.in unchanged.  Set System.out to go to OUTFILE, if non-null;
      *  otherwise leaves System.out unchanged. */
@@ -79,7 +223,18 @@ public final class Main {
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.printf("Usage: java trip.Main [ -m MAPFILE ] [ -o OUTFILE ]"
-                          + " [ REQUESTFILE ]%n");
+                          + " [ OPTIONS ] [ REQUESTFILE ]%n"
+                          + "       java trip.Main [ -m MAPFILE ]"
+                          + " --compile IMAGEFILE%n"
+                          + "       java trip.Main [ -m MAPFILE ]"
+                          + " [ -o OUTFILE ] [ OPTIONS ] --batch"
+                          + " [ --threads N ] [ REQUESTFILE ]%n"
+                          + "       java trip.Main [ -m MAPFILE ]"
+                          + " [ OPTIONS ] --serve PORT%n"
+                          + "       java trip.Main [ -m MAPFILE ]"
+                          + " [ -o OUTFILE ] --matrix [ SITESFILE ]%n"
+                          + "OPTIONS: [ --parallel ]"
+                          + " [ --optimize | --keep-last ]%n");
         System.exit(1);
     }
 
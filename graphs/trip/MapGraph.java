@@ -0,0 +1,256 @@
+package trip;
+
+import graph.Graph;
+import graph.Iteration;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/** The read-only directed graph of the roads of a MapImage, built in bulk
+ *  in compressed adjacency form.  Vertex i + 1 is location #i of the
+ *  image, and each road gives an edge in each direction, as Trip.addRoad
+ *  does.  As there, two roads joining the same locations give a single
+ *  edge, carrying the later road.  Each edge records the road it follows
+ *  as an arc: twice the road number, plus one if the edge runs against
+ *  the road's direction.  Since every edge has a reverse, the
+ *  predecessors of a vertex are its successors.  Edge identifiers are
+ *  positions in the adjacency arrays, plus one.
+ *  @author Jacob Lin
+ */
+class MapGraph extends Graph {
+
+    /** The graph of the roads of IMAGE. */
+    MapGraph(MapImage image) {
+        int n = image.locations(), m = image.roads();
+        _start = new int[n + 1];
+        for (int r = 0; r < m; r += 1) {
+            _start[image.from(r) + 1] += 1;
+            _start[image.to(r) + 1] += 1;
+        }
+        for (int i = 0; i < n; i += 1) {
+            _start[i + 1] += _start[i];
+        }
+        _target = new int[2 * m];
+        _arc = new int[2 * m];
+        int[] next = Arrays.copyOf(_start, n);
+        for (int r = 0; r < m; r += 1) {
+            int i = image.from(r), j = image.to(r);
+            _target[next[i]] = j;
+            _arc[next[i]] = 2 * r;
+            next[i] += 1;
+            _target[next[j]] = i;
+            _arc[next[j]] = 2 * r + 1;
+            next[j] += 1;
+        }
+        removeDuplicates(next);
+    }
+
+    /** Merge the edges of each location that join it to the same
+     *  location, keeping the position of the first and the arc of the
+     *  last, and compact the adjacency arrays.  OWNER is scratch space
+     *  with one element per location. */
+    private void removeDuplicates(int[] owner) {
+        int n = _start.length - 1;
+        int[] position = new int[n];
+        int out, begin;
+        Arrays.fill(owner, -1);
+        out = begin = 0;
+        for (int i = 0; i < n; i += 1) {
+            int end = _start[i + 1];
+            _start[i] = out;
+            for (int e = begin; e < end; e += 1) {
+                int j = _target[e];
+                if (owner[j] == i) {
+                    _arc[position[j]] = _arc[e];
+                } else {
+                    owner[j] = i;
+                    position[j] = out;
+                    _target[out] = j;
+                    _arc[out] = _arc[e];
+                    out += 1;
+                }
+            }
+            begin = end;
+        }
+        _start[n] = out;
+    }
+
+    /** Returns the arc followed by the edge (U, V), or -1 if there is
+     *  none. */
+    int arc(int u, int v) {
+        int e = edgeId(u, v);
+        return e == 0 ? -1 : _arc[e - 1];
+    }
+
+    @Override
+    public int vertexSize() {
+        return _start.length - 1;
+    }
+
+    @Override
+    public int maxVertex() {
+        return vertexSize();
+    }
+
+    @Override
+    public int edgeSize() {
+        return _start[vertexSize()];
+    }
+
+    @Override
+    public boolean isDirected() {
+        return true;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return contains(v) ? _start[v] - _start[v - 1] : 0;
+    }
+
+    @Override
+    public int inDegree(int v) {
+        return outDegree(v);
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return u >= 1 && u <= vertexSize();
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return edgeId(u, v) != 0;
+    }
+
+    @Override
+    public int add() {
+        throw new UnsupportedOperationException("map graph is read-only");
+    }
+
+    @Override
+    public int add(int u, int v) {
+        throw new UnsupportedOperationException("map graph is read-only");
+    }
+
+    @Override
+    public void remove(int v) {
+        throw new UnsupportedOperationException("map graph is read-only");
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        throw new UnsupportedOperationException("map graph is read-only");
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        return new Iteration<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return _next <= vertexSize();
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _next += 1;
+                return _next - 1;
+            }
+
+            /** The next vertex. */
+            private int _next = 1;
+        };
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        if (!contains(v)) {
+            return new Targets(0, 0);
+        }
+        return new Targets(_start[v - 1], _start[v]);
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        return successors(v);
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                return _e < edgeSize();
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (_start[_u] <= _e) {
+                    _u += 1;
+                }
+                _e += 1;
+                return new int[] { _u, _target[_e - 1] + 1 };
+            }
+
+            /** Position of the next edge. */
+            private int _e;
+            /** Source vertex of the last edge delivered. */
+            private int _u;
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        if (!contains(u) || !contains(v)) {
+            return 0;
+        }
+        for (int e = _start[u - 1]; e < _start[u]; e += 1) {
+            if (_target[e] == v - 1) {
+                return e + 1;
+            }
+        }
+        return 0;
+    }
+
+    /** An iteration over the vertices at the ends of a range of
+     *  edges. */
+    private class Targets extends Iteration<Integer> {
+        /** An iteration over the targets of edges BEGIN .. END-1. */
+        Targets(int begin, int end) {
+            _e = begin;
+            _end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _e < _end;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _e += 1;
+            return _target[_e - 1] + 1;
+        }
+
+        /** Position of the next edge. */
+        private int _e;
+        /** Position after the last edge. */
+        private final int _end;
+    }
+
+    /** Position in _target and _arc of the first edge leaving each
+     *  location, followed by the number of edges. */
+    private final int[] _start;
+    /** The location at the end of each edge. */
+    private final int[] _target;
+    /** The arc followed by each edge. */
+    private final int[] _arc;
+}
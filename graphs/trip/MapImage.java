@@ -0,0 +1,471 @@
+package trip;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static trip.Main.error;
+
+/** The locations and roads of a map, held as columnar arrays, together
+ *  with a compact binary file format for them.  An image is compiled
+ *  once from a text map file, checking it as Trip.readMap does, and may
+ *  then be written out and loaded again without tokenizing anything.
+ *
+ *  An image file consists of big-endian values: the magic number and
+ *  version, the numbers of locations, roads, and strings, and the size
+ *  of the string data; the offsets of the strings in the string data,
+ *  followed by the data itself in UTF-8; and then the columns: the
+ *  x and y coordinates of the locations, and the starting location,
+ *  ending location, name, length, and direction of the roads.  Locations
+ *  are numbered from 0, and string #K is the name of location #K.  The
+ *  remaining strings are road names, each stored once however many roads
+ *  share it.  Since version 2, the columns are followed by the number of
+ *  landmarks, their location numbers, and their distance tables (see
+ *  Landmarks), one after the other.
+ *  @author Jacob Lin
+ */
+class MapImage {
+
+    /** Returns true iff the file named NAME is a map image, as opposed to
+     *  a text map. */
+    static boolean isImage(String name) {
+        try (RandomAccessFile file = new RandomAccessFile(name, "r")) {
+            return file.length() >= HEADER_SIZE && file.readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the image of the text map file named NAME.  Reports the
+     *  same errors as Trip.readMap. */
+    static MapImage compile(String name) {
+        MapImage result = new MapImage();
+        HashMap<String, Integer> sites = new HashMap<>();
+        HashMap<String, Integer> roadNames = new HashMap<>();
+        MapTokenizer inp =
+            new MapTokenizer(name, Runtime.getRuntime().availableProcessors());
+        inp.read(new MapTokenizer.Sink() {
+            @Override
+            public void location(String site, double x, double y) {
+                if (sites.containsKey(site)) {
+                    error("multiple entries for %s", site);
+                }
+                sites.put(site, result.addLocation(site, x, y));
+            }
+
+            @Override
+            public void road(String from, String road, double length,
+                             Direction dir, String to) {
+                Integer v0 = sites.get(from), v1 = sites.get(to);
+                if (v0 == null) {
+                    error("location %s not defined", from);
+                } else if (v1 == null) {
+                    error("location %s not defined", to);
+                }
+                Road.checkLength(length);
+                Integer k = roadNames.get(road);
+                if (k == null) {
+                    k = roadNames.size();
+                    roadNames.put(road, k);
+                }
+                result.addRoad(v0, v1, k, length, dir);
+            }
+        });
+        result.setRoadNames(roadNames);
+        result.encodeNames();
+        result._landmarks =
+            Landmarks.select(result, Landmarks.DEFAULT_COUNT,
+                             Runtime.getRuntime().availableProcessors());
+        return result;
+    }
+
+    /** Returns the image in the file named NAME, which must have been
+     *  written by write. */
+    static MapImage load(String name) {
+        MapImage result = new MapImage();
+        try (RandomAccessFile file = new RandomAccessFile(name, "r")) {
+            FileChannel in = file.getChannel();
+            if (in.size() > Integer.MAX_VALUE) {
+                error("map image %s is too large", name);
+            }
+            ByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0,
+                                    in.size());
+            result.read(buf, name);
+        } catch (BufferUnderflowException excp) {
+            error("map image %s is truncated", name);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Write me to the file named NAME. */
+    void write(String name) {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream
+                                  (new FileOutputStream(name), BUFFER_SIZE))) {
+            int strings = _names.length;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_locations);
+            out.writeInt(_roads);
+            out.writeInt(strings);
+            out.writeInt(_offsets[strings]);
+            for (int offset : _offsets) {
+                out.writeInt(offset);
+            }
+            out.write(_text, 0, _offsets[strings]);
+            for (int i = 0; i < _locations; i += 1) {
+                out.writeDouble(_x[i]);
+            }
+            for (int i = 0; i < _locations; i += 1) {
+                out.writeDouble(_y[i]);
+            }
+            for (int r = 0; r < _roads; r += 1) {
+                out.writeInt(_from[r]);
+            }
+            for (int r = 0; r < _roads; r += 1) {
+                out.writeInt(_to[r]);
+            }
+            for (int r = 0; r < _roads; r += 1) {
+                out.writeInt(_roadName[r]);
+            }
+            for (int r = 0; r < _roads; r += 1) {
+                out.writeDouble(_length[r]);
+            }
+            out.write(_dir, 0, _roads);
+            out.writeInt(_landmarks.size());
+            for (int j = 0; j < _landmarks.size(); j += 1) {
+                out.writeInt(_landmarks.landmark(j));
+            }
+            for (int j = 0; j < _landmarks.size(); j += 1) {
+                for (float d : _landmarks.table(j)) {
+                    out.writeFloat(d);
+                }
+            }
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Returns the number of locations. */
+    int locations() {
+        return _locations;
+    }
+
+    /** Returns the name of location #I. */
+    String locationName(int i) {
+        return string(i);
+    }
+
+    /** Returns the number of the location named NAME, or -1 if there is
+     *  none.  The first call builds a hash index of the location names,
+     *  which are not decoded. */
+    int locationNumber(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int[] index = nameIndex();
+        int mask = index.length - 1;
+        for (int h = spread(hash(key, 0, key.length)) & mask; index[h] != 0;
+             h = (h + 1) & mask) {
+            int i = index[h] - 1;
+            if (Arrays.equals(_text, _offsets[i], _offsets[i + 1],
+                              key, 0, key.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the x coordinate of location #I. */
+    double x(int i) {
+        return _x[i];
+    }
+
+    /** Returns the y coordinate of location #I. */
+    double y(int i) {
+        return _y[i];
+    }
+
+    /** Returns the number of roads. */
+    int roads() {
+        return _roads;
+    }
+
+    /** Returns the number of the location at which road #R starts. */
+    int from(int r) {
+        return _from[r];
+    }
+
+    /** Returns the number of the location at which road #R ends. */
+    int to(int r) {
+        return _to[r];
+    }
+
+    /** Returns the name of road #R. */
+    String roadName(int r) {
+        return string(_locations + _roadName[r]);
+    }
+
+    /** Returns the length of road #R. */
+    double length(int r) {
+        return _length[r];
+    }
+
+    /** Returns the direction of road #R. */
+    Direction direction(int r) {
+        return DIRECTIONS[_dir[r]];
+    }
+
+    /** Returns my landmarks, of which there may be none. */
+    Landmarks landmarks() {
+        return _landmarks;
+    }
+
+    /** Add a location named NAME at (X, Y), returning its number. */
+    private int addLocation(String name, double x, double y) {
+        if (_locations == _x.length) {
+            int n = Math.max(INITIAL_SIZE, 2 * _locations);
+            _names = Arrays.copyOf(_names, n);
+            _x = Arrays.copyOf(_x, n);
+            _y = Arrays.copyOf(_y, n);
+        }
+        _names[_locations] = name;
+        _x[_locations] = x;
+        _y[_locations] = y;
+        _locations += 1;
+        return _locations - 1;
+    }
+
+    /** Add a road from location #FROM to location #TO whose name is road
+     *  name #NAME, LENGTH miles long, in direction DIR. */
+    private void addRoad(int from, int to, int name, double length,
+                         Direction dir) {
+        if (_roads == _from.length) {
+            int n = Math.max(INITIAL_SIZE, 2 * _roads);
+            _from = Arrays.copyOf(_from, n);
+            _to = Arrays.copyOf(_to, n);
+            _roadName = Arrays.copyOf(_roadName, n);
+            _length = Arrays.copyOf(_length, n);
+            _dir = Arrays.copyOf(_dir, n);
+        }
+        _from[_roads] = from;
+        _to[_roads] = to;
+        _roadName[_roads] = name;
+        _length[_roads] = length;
+        _dir[_roads] = (byte) dir.ordinal();
+        _roads += 1;
+    }
+
+    /** Append the keys of ROADNAMES, which map road names to their
+     *  numbers, to the string table. */
+    private void setRoadNames(HashMap<String, Integer> roadNames) {
+        _names = Arrays.copyOf(_names, _locations + roadNames.size());
+        for (HashMap.Entry<String, Integer> e : roadNames.entrySet()) {
+            _names[_locations + e.getValue()] = e.getKey();
+        }
+    }
+
+    /** Set _text and _offsets to the UTF-8 encoding of _names. */
+    private void encodeNames() {
+        byte[][] text = new byte[_names.length][];
+        _offsets = new int[_names.length + 1];
+        for (int k = 0; k < _names.length; k += 1) {
+            text[k] = _names[k].getBytes(StandardCharsets.UTF_8);
+            _offsets[k + 1] = _offsets[k] + text[k].length;
+        }
+        _text = new byte[_offsets[_names.length]];
+        for (int k = 0; k < _names.length; k += 1) {
+            System.arraycopy(text[k], 0, _text, _offsets[k], text[k].length);
+        }
+    }
+
+    /** Returns string #K of the string table, decoding it on first
+     *  use.  Several threads may decode the same string at once, which
+     *  is harmless. */
+    private String string(int k) {
+        String result = _names[k];
+        if (result == null) {
+            result = new String(_text, _offsets[k],
+                                _offsets[k + 1] - _offsets[k],
+                                StandardCharsets.UTF_8);
+            _names[k] = result;
+        }
+        return result;
+    }
+
+    /** Returns the hash index of the location names, building it if
+     *  needed: an open-addressed table holding one plus each location
+     *  number, at the slot given by the hash of its name, or 0. */
+    private synchronized int[] nameIndex() {
+        if (_nameIndex == null) {
+            int size = Integer.highestOneBit(Math.max(1, 2 * _locations)) * 2;
+            int[] index = new int[size];
+            for (int i = 0; i < _locations; i += 1) {
+                int h = spread(hash(_text, _offsets[i], _offsets[i + 1]))
+                    & (size - 1);
+                while (index[h] != 0) {
+                    h = (h + 1) & (size - 1);
+                }
+                index[h] = i + 1;
+            }
+            _nameIndex = index;
+        }
+        return _nameIndex;
+    }
+
+    /** Returns a hash of the bytes TEXT[START .. END-1]. */
+    private static int hash(byte[] text, int start, int end) {
+        int h = 0;
+        for (int k = start; k < end; k += 1) {
+            h = 31 * h + text[k];
+        }
+        return h;
+    }
+
+    /** Returns H with its bits mixed, for indexing a table. */
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Set my contents from BUF, which holds the image file named
+     *  NAME. */
+    private void read(ByteBuffer buf, String name) {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            error("%s is not a map image", name);
+        }
+        int version = buf.getInt();
+        if (version < 1 || version > VERSION) {
+            error("map image %s has an unknown version", name);
+        }
+        _locations = buf.getInt();
+        _roads = buf.getInt();
+        int strings = buf.getInt(), size = buf.getInt();
+        if (_locations < 0 || _roads < 0 || strings < _locations
+            || size < 0) {
+            error("map image %s is corrupt", name);
+        }
+        _offsets = ints(buf, strings + 1);
+        _text = new byte[size];
+        buf.get(_text);
+        _names = new String[strings];
+        for (int k = 0; k < strings; k += 1) {
+            if (_offsets[k] < 0 || _offsets[k] > _offsets[k + 1]
+                || _offsets[k + 1] > size) {
+                error("map image %s is corrupt", name);
+            }
+        }
+        _x = doubles(buf, _locations);
+        _y = doubles(buf, _locations);
+        _from = ints(buf, _roads);
+        _to = ints(buf, _roads);
+        _roadName = ints(buf, _roads);
+        _length = doubles(buf, _roads);
+        _dir = new byte[_roads];
+        buf.get(_dir);
+        for (int r = 0; r < _roads; r += 1) {
+            if (_from[r] < 0 || _from[r] >= _locations
+                || _to[r] < 0 || _to[r] >= _locations
+                || _roadName[r] < 0 || _roadName[r] >= strings - _locations
+                || _dir[r] < 0 || _dir[r] >= DIRECTIONS.length) {
+                error("map image %s is corrupt", name);
+            }
+        }
+        if (version >= 2) {
+            int[] landmarks = ints(buf, buf.getInt());
+            FloatBuffer[] dist = new FloatBuffer[landmarks.length];
+            for (int j = 0; j < landmarks.length; j += 1) {
+                if (landmarks[j] < 0 || landmarks[j] >= _locations) {
+                    error("map image %s is corrupt", name);
+                }
+                dist[j] = floats(buf, _locations);
+            }
+            _landmarks = new Landmarks(landmarks, dist);
+        }
+    }
+
+    /** Returns the next N ints in BUF, advancing past them. */
+    private static int[] ints(ByteBuffer buf, int n) {
+        if (n < 0 || n > buf.remaining() / Integer.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        int[] result = new int[n];
+        buf.asIntBuffer().get(result);
+        buf.position(buf.position() + n * Integer.BYTES);
+        return result;
+    }
+
+    /** Returns the next N doubles in BUF, advancing past them. */
+    private static double[] doubles(ByteBuffer buf, int n) {
+        if (n > buf.remaining() / Double.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        double[] result = new double[n];
+        buf.asDoubleBuffer().get(result);
+        buf.position(buf.position() + n * Double.BYTES);
+        return result;
+    }
+
+    /** Returns a view of the next N floats in BUF, advancing past
+     *  them. */
+    private static FloatBuffer floats(ByteBuffer buf, int n) {
+        if (n > buf.remaining() / Float.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        FloatBuffer result = buf.slice().asFloatBuffer();
+        result.limit(n);
+        buf.position(buf.position() + n * Float.BYTES);
+        return result;
+    }
+
+    /** First word of an image file. */
+    static final int MAGIC = 0x54524950;
+    /** Version of the image format. */
+    static final int VERSION = 2;
+    /** Size of the header of an image file. */
+    private static final int HEADER_SIZE = 24;
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Initial length of the columns of a compiled image. */
+    private static final int INITIAL_SIZE = 64;
+    /** The directions, indexed by ordinal. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Number of locations. */
+    private int _locations;
+    /** Number of roads. */
+    private int _roads;
+    /** Location names, followed by the distinct road names, or null for
+     *  those not yet decoded from _text. */
+    private String[] _names = new String[0];
+    /** The UTF-8 encodings of the strings in _names, one after another. */
+    private byte[] _text;
+    /** The position in _text of each string, followed by the length of
+     *  _text. */
+    private int[] _offsets;
+    /** Hash index of the location names, or null if not yet built. */
+    private int[] _nameIndex;
+    /** Coordinates of each location. */
+    private double[] _x = new double[0], _y = new double[0];
+    /** Starting and ending locations of each road. */
+    private int[] _from = new int[0], _to = new int[0];
+    /** Index of the name of each road among the road names. */
+    private int[] _roadName = new int[0];
+    /** Length of each road. */
+    private double[] _length = new double[0];
+    /** Ordinal of the direction of each road. */
+    private byte[] _dir = new byte[0];
+    /** Landmarks for the ALT heuristic. */
+    private Landmarks _landmarks = new Landmarks(new int[0], new float[0][]);
+}
@@ -0,0 +1,512 @@
+package trip;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static trip.Main.error;
+
+/** Reads the L and R entries of a map file, handing them in order to a
+ *  Sink.  The file is read in large blocks through a FileChannel and
+ *  tokenized directly from the bytes; numbers are converted by hand
+ *  when they have few enough significant digits to be converted exactly,
+ *  and by Double.parseDouble otherwise.  Tokens are separated by
+ *  whitespace, as for a Scanner, so that an entry may span lines.
+ *
+ *  A large file is divided into chunks that end at line boundaries,
+ *  and when more than one thread is allowed, the chunks are parsed in
+ *  parallel, each on the assumption that it begins with a new entry.
+ *  The entries are then passed to the Sink strictly in file order.  If a
+ *  chunk ends in the middle of an entry, the parse of the following chunk
+ *  is discarded, and it is parsed again, starting with the unfinished
+ *  entry.  Thus entry numbers in error messages, and the order in which
+ *  errors are detected, are the same as for a sequential read.
+ *  @author Jacob Lin
+ */
+class MapTokenizer {
+
+    /** Receives the entries of a map. */
+    interface Sink {
+        /** Accept a location named NAME at (X, Y). */
+        void location(String name, double x, double y);
+
+        /** Accept a road named NAME, LENGTH miles long, running from the
+         *  location named FROM to the one named TO in direction DIR. */
+        void road(String from, String name, double length, Direction dir,
+                  String to);
+    }
+
+    /** A tokenizer for the map file named NAME that uses up to THREADS
+     *  threads. */
+    MapTokenizer(String name, int threads) {
+        this(name, threads, CHUNK_SIZE);
+    }
+
+    /** A tokenizer for the map file named NAME that uses up to THREADS
+     *  threads, dividing the file into chunks of about CHUNKSIZE
+     *  bytes. */
+    MapTokenizer(String name, int threads, int chunkSize) {
+        _name = name;
+        _threads = Math.max(1, threads);
+        _chunkSize = Math.max(1, chunkSize);
+    }
+
+    /** Read my file, passing each entry to SINK in order.  Reports errors
+     *  by means of Main.error. */
+    void read(Sink sink) {
+        try (RandomAccessFile file = new RandomAccessFile(_name, "r")) {
+            FileChannel in = file.getChannel();
+            long[] bounds = chunkBounds(in);
+            int chunks = bounds.length - 1;
+            int threads = Math.min(_threads, chunks);
+            ExecutorService pool =
+                threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            try {
+                ArrayDeque<Future<Chunk>> ahead = new ArrayDeque<>();
+                int submitted, entries;
+                long pending;
+                submitted = entries = 0;
+                pending = -1;
+                for (int k = 0; k < chunks; k += 1) {
+                    while (pool != null && submitted < chunks
+                           && submitted < k + LOOKAHEAD * threads) {
+                        long lo = bounds[submitted],
+                            hi = bounds[submitted + 1];
+                        ahead.add(pool.submit(() -> parse(in, lo, hi)));
+                        submitted += 1;
+                    }
+                    Chunk chunk;
+                    if (pool == null || pending >= 0) {
+                        if (pool != null) {
+                            ahead.remove().cancel(false);
+                        }
+                        long lo = pending >= 0 ? pending : bounds[k];
+                        chunk = parse(in, lo, bounds[k + 1]);
+                    } else {
+                        chunk = await(ahead.remove());
+                    }
+                    entries = chunk.apply(sink, entries);
+                    pending = chunk.tail();
+                }
+                if (pending >= 0) {
+                    error("entry incomplete at end of file");
+                }
+            } finally {
+                if (pool != null) {
+                    pool.shutdownNow();
+                }
+            }
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Returns the value of the decimal number in BUF[START .. END).
+     *  Throws InputMismatchException if it is not a number. */
+    static double parseDouble(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i += 1;
+        }
+        long mantissa = 0;
+        int digits, scale, exponent;
+        boolean any = false;
+        digits = scale = exponent = 0;
+        for (; i < end && isDigit(buf[i]); i += 1) {
+            any = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = 10 * mantissa + (buf[i] - '0');
+                digits += mantissa == 0 ? 0 : 1;
+            } else {
+                scale += 1;
+            }
+        }
+        if (i < end && buf[i] == '.') {
+            for (i += 1; i < end && isDigit(buf[i]); i += 1) {
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = 10 * mantissa + (buf[i] - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    scale -= 1;
+                }
+            }
+        }
+        if (any && i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i += 1;
+            boolean negExp = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negExp = buf[i] == '-';
+                i += 1;
+            }
+            if (i == end) {
+                any = false;
+            }
+            for (; i < end && isDigit(buf[i]); i += 1) {
+                exponent = Math.min(10 * exponent + (buf[i] - '0'),
+                                    MAX_EXPONENT);
+            }
+            exponent = negExp ? -exponent : exponent;
+        }
+        if (any && i == end) {
+            int e = scale + exponent;
+            if (mantissa < EXACT_LIMIT && Math.abs(e) < POWERS.length) {
+                double value = e >= 0 ? mantissa * POWERS[e]
+                    : mantissa / POWERS[-e];
+                return negative ? -value : value;
+            }
+        }
+        return slowParseDouble(buf, start, end);
+    }
+
+    /** Returns the value of the number in BUF[START .. END), as for
+     *  Double.parseDouble, except that hexadecimal numerals and type
+     *  suffixes are not accepted.  Throws InputMismatchException if
+     *  it is not a number. */
+    private static double slowParseDouble(byte[] buf, int start, int end) {
+        byte last = buf[end - 1];
+        if (last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+            throw new InputMismatchException();
+        }
+        String text =
+            new String(buf, start, end - start, StandardCharsets.ISO_8859_1);
+        if (text.indexOf('x') >= 0 || text.indexOf('X') >= 0) {
+            throw new InputMismatchException();
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException excp) {
+            throw new InputMismatchException();
+        }
+    }
+
+    /** Returns the offsets in IN that divide it into chunks of about
+     *  _chunkSize bytes, each but the last ending just after a newline.
+     *  The first is 0 and the last is the size of the file. */
+    private long[] chunkBounds(FileChannel in) throws IOException {
+        long size = in.size();
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long start = 0;
+        while (start < size) {
+            long end = start + _chunkSize;
+            if (end < size) {
+                end = nextLine(in, end, size);
+            } else {
+                end = size;
+            }
+            if (end - start > MAX_CHUNK) {
+                error("map file %s: line too long", _name);
+            }
+            bounds.add(end);
+            start = end;
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /** Returns the offset in IN just past the first newline at or after
+     *  POSITION, or SIZE if there is none. */
+    private static long nextLine(FileChannel in, long position, long size)
+        throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        while (position < size) {
+            probe.clear();
+            int n = in.read(probe, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i += 1) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /** Returns the parsed entries in IN from offset LO to HI, on the
+     *  assumption that an entry starts at LO. */
+    private static Chunk parse(FileChannel in, long lo, long hi)
+        throws IOException {
+        if (hi - lo > MAX_CHUNK) {
+            error("map entry too long at offset %d", lo);
+        }
+        byte[] buf = new byte[(int) (hi - lo)];
+        ByteBuffer dest = ByteBuffer.wrap(buf);
+        while (dest.hasRemaining()) {
+            if (in.read(dest, lo + dest.position()) < 0) {
+                throw new IOException("map file changed while reading");
+            }
+        }
+        return parse(buf, lo);
+    }
+
+    /** Returns the parsed entries in BUF, which starts at offset BASE in
+     *  the file, on the assumption that an entry starts at BASE. */
+    private static Chunk parse(byte[] buf, long base) {
+        Chunk result = new Chunk();
+        Tokens inp = new Tokens(buf);
+        int start;
+        start = 0;
+        try {
+            while (inp.hasNext()) {
+                start = inp.position();
+                switch (inp.nextType()) {
+                case 'L':
+                    result.add(new Entry(inp.next(), inp.nextDouble(),
+                                         inp.nextDouble()));
+                    break;
+                case 'R':
+                    result.add(new Entry(inp.next(), inp.next(),
+                                         inp.nextDouble(),
+                                         Direction.parse(inp.next()),
+                                         inp.next()));
+                    break;
+                default:
+                    result.fail("map entry #%d: unknown type");
+                    return result;
+                }
+            }
+        } catch (InputMismatchException excp) {
+            result.fail("bad entry #%d");
+        } catch (NoSuchElementException excp) {
+            result.setTail(base + start);
+        } catch (IllegalArgumentException excp) {
+            result.fail(excp);
+        }
+        return result;
+    }
+
+    /** Returns the result of FUTURE, rethrowing any exception it threw. */
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading map");
+        } catch (ExecutionException excp) {
+            Throwable cause = excp.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Returns true iff C is an ASCII digit. */
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Returns true iff C is a byte that Java considers whitespace. */
+    private static boolean isSpace(byte c) {
+        return c == ' ' || (c >= '\t' && c <= '\r') || (c >= 28 && c <= 31);
+    }
+
+    /** The whitespace-separated tokens of a byte array. */
+    private static class Tokens {
+        /** The tokens of BUF. */
+        Tokens(byte[] buf) {
+            _buf = buf;
+        }
+
+        /** Returns true iff another token remains. */
+        boolean hasNext() {
+            while (_pos < _buf.length && isSpace(_buf[_pos])) {
+                _pos += 1;
+            }
+            return _pos < _buf.length;
+        }
+
+        /** Returns the current position in the array. */
+        int position() {
+            return _pos;
+        }
+
+        /** Advance over the next token, returning its start.  Throws
+         *  NoSuchElementException if there is none. */
+        int advance() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int start = _pos;
+            while (_pos < _buf.length && !isSpace(_buf[_pos])) {
+                _pos += 1;
+            }
+            return start;
+        }
+
+        /** Returns the next token, which must be an entry type: either
+         *  'L', 'R', or 0 if it is neither. */
+        char nextType() {
+            int start = advance();
+            if (_pos - start == 1 && (_buf[start] == 'L'
+                                      || _buf[start] == 'R')) {
+                return (char) _buf[start];
+            }
+            return 0;
+        }
+
+        /** Returns the next token. */
+        String next() {
+            int start = advance();
+            return new String(_buf, start, _pos - start,
+                              StandardCharsets.UTF_8);
+        }
+
+        /** Returns the next token as a number. */
+        double nextDouble() {
+            int start = advance();
+            return parseDouble(_buf, start, _pos);
+        }
+
+        /** The bytes being tokenized. */
+        private final byte[] _buf;
+        /** Position of the next unread byte. */
+        private int _pos;
+    }
+
+    /** One entry of a map: a location or a road. */
+    private static class Entry {
+        /** A location named NAME at (X, Y). */
+        Entry(String name, double x, double y) {
+            _name = name;
+            _x = x;
+            _y = y;
+        }
+
+        /** A road named NAME from FROM to TO, LENGTH miles long,
+         *  in direction DIR. */
+        Entry(String from, String name, double length, Direction dir,
+              String to) {
+            _from = from;
+            _name = name;
+            _x = length;
+            _dir = dir;
+            _to = to;
+        }
+
+        /** Pass me to SINK. */
+        void apply(Sink sink) {
+            if (_dir == null) {
+                sink.location(_name, _x, _y);
+            } else {
+                sink.road(_from, _name, _x, _dir, _to);
+            }
+        }
+
+        /** Name of the location or road. */
+        private String _name;
+        /** End points of a road. */
+        private String _from, _to;
+        /** Coordinates of a location; the length of a road is _x. */
+        private double _x, _y;
+        /** Direction of a road, or null for a location. */
+        private Direction _dir;
+    }
+
+    /** The result of parsing part of a map file: its complete entries,
+     *  followed by an error or by an incomplete entry. */
+    private static class Chunk {
+        /** Append ENTRY. */
+        void add(Entry entry) {
+            _entries.add(entry);
+        }
+
+        /** Record that the entry following mine is erroneous, as described
+         *  by FORMAT, given its number. */
+        void fail(String format) {
+            _error = format;
+        }
+
+        /** Record that parsing the entry following mine threw EXCP. */
+        void fail(RuntimeException excp) {
+            _failure = excp;
+        }
+
+        /** Record that the entry starting at file offset TAIL is
+         *  incomplete. */
+        void setTail(long tail) {
+            _tail = tail;
+        }
+
+        /** Returns the file offset of a trailing incomplete entry, or -1
+         *  if none. */
+        long tail() {
+            return _tail;
+        }
+
+        /** Pass my entries to SINK, given that N entries precede them,
+         *  and report any error that follows them.  Returns the number of
+         *  entries passed so far. */
+        int apply(Sink sink, int n) {
+            for (Entry entry : _entries) {
+                n += 1;
+                entry.apply(sink);
+            }
+            if (_failure != null) {
+                throw _failure;
+            } else if (_error != null) {
+                error(_error, n + 1);
+            }
+            return n;
+        }
+
+        /** The complete entries. */
+        private final ArrayList<Entry> _entries = new ArrayList<>();
+        /** Format of the message for an error, or null. */
+        private String _error;
+        /** Exception thrown by an erroneous entry, or null. */
+        private RuntimeException _failure;
+        /** Offset of the incomplete entry at the end, or -1. */
+        private long _tail = -1;
+    }
+
+    /** Default size of a chunk. */
+    static final int CHUNK_SIZE = 1 << 24;
+    /** Largest possible chunk. */
+    private static final int MAX_CHUNK = Integer.MAX_VALUE - 8;
+    /** Number of bytes read at a time when looking for a line end. */
+    private static final int PROBE_SIZE = 1 << 16;
+    /** Number of chunks per thread that may be parsed ahead of the
+     *  entries being passed to the Sink. */
+    private static final int LOOKAHEAD = 2;
+    /** Number of significant digits kept in a mantissa. */
+    private static final int MAX_DIGITS = 18;
+    /** Bound on a mantissa that is exactly representable. */
+    private static final long EXACT_LIMIT = 1L << 53;
+    /** Bound on the magnitude of an exponent. */
+    private static final int MAX_EXPONENT = 100000;
+    /** The powers of ten that are exactly representable. */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Name of the map file. */
+    private final String _name;
+    /** Maximum number of threads used. */
+    private final int _threads;
+    /** Approximate size of a chunk. */
+    private final int _chunkSize;
+}
@@ -0,0 +1,225 @@
+package trip;
+
+import java.util.Arrays;
+
+/** A road network in compressed adjacency form, for searches that must
+ *  explore much of a map, where the general graph classes are too slow.
+ *  Locations are numbered from 0, and each road is an arc from one
+ *  location to another with a length.
+ *  @author Jacob Lin
+ */
+class Network {
+
+    /** The network of N locations with roads from FROM[r] to TO[r] of
+     *  length LENGTH[r], for each r less than the length of FROM. */
+    Network(int n, int[] from, int[] to, double[] length) {
+        int m = from.length;
+        _start = new int[n + 1];
+        for (int r = 0; r < m; r += 1) {
+            _start[from[r] + 1] += 1;
+        }
+        for (int v = 0; v < n; v += 1) {
+            _start[v + 1] += _start[v];
+        }
+        _target = new int[m];
+        _length = new double[m];
+        int[] next = Arrays.copyOf(_start, n);
+        for (int r = 0; r < m; r += 1) {
+            int u = from[r];
+            _target[next[u]] = to[r];
+            _length[next[u]] = length[r];
+            next[u] += 1;
+        }
+    }
+
+    /** The network of the roads in IMAGE, each traversable in both
+     *  directions. */
+    Network(MapImage image) {
+        this(image.locations(), ends(image, true), ends(image, false),
+             lengths(image));
+    }
+
+    /** Returns the network with the same locations as mine and each of
+     *  my roads reversed. */
+    Network reverse() {
+        int m = _target.length;
+        int[] from = new int[m], to = new int[m];
+        for (int u = 0; u < size(); u += 1) {
+            for (int e = _start[u]; e < _start[u + 1]; e += 1) {
+                from[e] = _target[e];
+                to[e] = u;
+            }
+        }
+        return new Network(size(), from, to, _length);
+    }
+
+    /** Returns the number of locations. */
+    int size() {
+        return _start.length - 1;
+    }
+
+    /** Returns the distances of all locations from SOURCE, computed by
+     *  Dijkstra's algorithm.  Unreachable locations have infinite
+     *  distance. */
+    double[] search(int source) {
+        return search(source, null, 0);
+    }
+
+    /** Returns the distances from SOURCE of the locations TARGETS, in the
+     *  same order, computed by Dijkstra's algorithm, which stops as soon
+     *  as all of them are settled. */
+    double[] search(int source, int[] targets) {
+        if (targets.length == 0) {
+            return new double[0];
+        }
+        boolean[] wanted = new boolean[size()];
+        int count;
+        count = 0;
+        for (int t : targets) {
+            if (!wanted[t]) {
+                wanted[t] = true;
+                count += 1;
+            }
+        }
+        double[] dist = search(source, wanted, count);
+        double[] result = new double[targets.length];
+        for (int j = 0; j < targets.length; j += 1) {
+            result[j] = dist[targets[j]];
+        }
+        return result;
+    }
+
+    /** Returns the number of the connected part of the network containing
+     *  each location: the smallest location in it.  Only meaningful if
+     *  every road may be traveled in both directions. */
+    int[] components() {
+        int n = size();
+        int[] result = new int[n];
+        Arrays.fill(result, -1);
+        int[] stack = new int[n];
+        for (int s = 0; s < n; s += 1) {
+            if (result[s] == -1) {
+                int top;
+                stack[0] = s;
+                top = 1;
+                result[s] = s;
+                while (top > 0) {
+                    top -= 1;
+                    int v = stack[top];
+                    for (int e = _start[v]; e < _start[v + 1]; e += 1) {
+                        if (result[_target[e]] == -1) {
+                            result[_target[e]] = s;
+                            stack[top] = _target[e];
+                            top += 1;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the distances of locations from SOURCE, as for
+     *  search(SOURCE), except that the search stops once the first COUNT
+     *  locations marked in WANTED (if it is not null) are settled, leaving
+     *  the distances of locations not yet settled as upper bounds. */
+    private double[] search(int source, boolean[] wanted, int count) {
+        int n = size();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        double[] heapKey = new double[64];
+        int[] heapVal = new int[64];
+        int size;
+        dist[source] = 0.0;
+        heapKey[0] = 0.0;
+        heapVal[0] = source;
+        size = 1;
+        while (size > 0) {
+            double d = heapKey[0];
+            int v = heapVal[0];
+            size -= 1;
+            siftDown(heapKey, heapVal, size, heapKey[size], heapVal[size]);
+            if (d > dist[v]) {
+                continue;
+            }
+            if (wanted != null && wanted[v]) {
+                count -= 1;
+                if (count == 0) {
+                    break;
+                }
+            }
+            for (int e = _start[v]; e < _start[v + 1]; e += 1) {
+                int w = _target[e];
+                double dw = d + _length[e];
+                if (dw < dist[w]) {
+                    dist[w] = dw;
+                    if (size == heapKey.length) {
+                        heapKey = Arrays.copyOf(heapKey, 2 * size);
+                        heapVal = Arrays.copyOf(heapVal, 2 * size);
+                    }
+                    int i = size;
+                    size += 1;
+                    while (i > 0 && dw < heapKey[(i - 1) / 2]) {
+                        heapKey[i] = heapKey[(i - 1) / 2];
+                        heapVal[i] = heapVal[(i - 1) / 2];
+                        i = (i - 1) / 2;
+                    }
+                    heapKey[i] = dw;
+                    heapVal[i] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /** Place (KEY, V) in the heap of SIZE entries in KEYS and VALS, whose
+     *  root is vacant. */
+    private static void siftDown(double[] keys, int[] vals, int size,
+                                 double key, int v) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int c = 2 * i + 1;
+            if (c + 1 < size && keys[c + 1] < keys[c]) {
+                c += 1;
+            }
+            if (keys[c] >= key) {
+                break;
+            }
+            keys[i] = keys[c];
+            vals[i] = vals[c];
+            i = c;
+        }
+        keys[i] = key;
+        vals[i] = v;
+    }
+
+    /** Returns the starting locations (if FROM) or the ending locations
+     *  of the roads of IMAGE, each taken in both directions. */
+    private static int[] ends(MapImage image, boolean from) {
+        int m = image.roads();
+        int[] result = new int[2 * m];
+        for (int r = 0; r < m; r += 1) {
+            result[2 * r] = from ? image.from(r) : image.to(r);
+            result[2 * r + 1] = from ? image.to(r) : image.from(r);
+        }
+        return result;
+    }
+
+    /** Returns the lengths of the roads of IMAGE, each taken in both
+     *  directions. */
+    private static double[] lengths(MapImage image) {
+        int m = image.roads();
+        double[] result = new double[2 * m];
+        for (int r = 0; r < m; r += 1) {
+            result[2 * r] = result[2 * r + 1] = image.length(r);
+        }
+        return result;
+    }
+
+    /** Index in _target of the first road leaving each location. */
+    private final int[] _start;
+    /** The location at the end of each road. */
+    private final int[] _target;
+    /** The length of each road. */
+    private final double[] _length;
+}
@@ -10,14 +10,19 @@ class Road {
     /** A Road whose name is NAME, going in DIRECTION, and of given
      *  LENGTH. */
     Road(String name, Direction direction, double length) {
-        if (length < 0) {
-            error("Road %s given negative length.", length);
-        }
+        checkLength(length);
         _name = name;
         _direction = direction;
         _length = length;
     }
 
+    /** Report an error if LENGTH is not a valid road length. */
+    static void checkLength(double length) {
+        if (length < 0) {
+            error("Road %s given negative length.", length);
+        }
+    }
+
     /** Return the direction of this road. */
     Direction direction() {
         return _direction;
@@ -0,0 +1,133 @@
+package trip;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A bounded cache of the routes found between pairs of map vertices.
+ *  Entries are evicted in least-recently-used order whenever there are
+ *  more than a given number of them, or when the routes they hold
+ *  contain more than a given total number of vertices.  Each entry is
+ *  tagged with the version of the map for which it was computed, and the
+ *  whole cache is discarded on the first access made with a different
+ *  version, so that a changed map never yields stale routes.  All
+ *  methods are synchronized, so that one cache may serve several
+ *  threads.
+ *  @author Jacob Lin
+ */
+class RouteCache {
+
+    /** A cache holding at most MAXENTRIES routes with at most MAXVERTICES
+     *  vertices in all. */
+    RouteCache(int maxEntries, long maxVertices) {
+        _maxEntries = maxEntries;
+        _maxVertices = maxVertices;
+        _routes = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Returns the cached route from vertex FROM to vertex TO in version
+     *  VERSION of the map, or null if there is none. */
+    synchronized List<Integer> get(int from, int to, long version) {
+        checkVersion(version);
+        List<Integer> route = _routes.get(key(from, to));
+        if (route == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return route;
+    }
+
+    /** Record ROUTE as the route from vertex FROM to vertex TO in version
+     *  VERSION of the map, evicting other routes as needed.  ROUTE must
+     *  not be changed afterwards.  Routes too long to cache are
+     *  ignored. */
+    synchronized void put(int from, int to, long version,
+                          List<Integer> route) {
+        checkVersion(version);
+        if (_maxEntries <= 0 || route.size() > _maxVertices) {
+            return;
+        }
+        List<Integer> old =
+            _routes.put(key(from, to), Collections.unmodifiableList(route));
+        if (old != null) {
+            _vertices -= old.size();
+        }
+        _vertices += route.size();
+        while (_routes.size() > _maxEntries || _vertices > _maxVertices) {
+            Map.Entry<Long, List<Integer>> eldest =
+                _routes.entrySet().iterator().next();
+            _vertices -= eldest.getValue().size();
+            _routes.remove(eldest.getKey());
+            _evictions += 1;
+        }
+    }
+
+    /** Remove all routes. */
+    synchronized void clear() {
+        _routes.clear();
+        _vertices = 0;
+    }
+
+    /** Returns the number of routes cached. */
+    synchronized int size() {
+        return _routes.size();
+    }
+
+    /** Returns the number of successful lookups. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of failed lookups. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Returns the number of routes evicted to make room for others. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = _hits + _misses;
+        return String.format("route cache: %d hits, %d misses (%.1f%%),"
+                             + " %d evictions, %d routes",
+                             _hits, _misses,
+                             lookups == 0 ? 0.0 : 100.0 * _hits / lookups,
+                             _evictions, _routes.size());
+    }
+
+    /** Discard my contents if they are not for map version VERSION. */
+    private void checkVersion(long version) {
+        if (version != _version) {
+            clear();
+            _version = version;
+        }
+    }
+
+    /** Returns the key for the route from FROM to TO. */
+    private static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    /** Default maximum number of routes. */
+    static final int DEFAULT_ENTRIES = 1024;
+    /** Default maximum total number of vertices on all routes. */
+    static final long DEFAULT_VERTICES = 1L << 22;
+
+    /** Maximum number of routes. */
+    private final int _maxEntries;
+    /** Maximum total number of vertices on all routes. */
+    private final long _maxVertices;
+    /** The routes, in order of last use. */
+    private final LinkedHashMap<Long, List<Integer>> _routes;
+    /** Total number of vertices on all routes. */
+    private long _vertices;
+    /** Map version of the routes. */
+    private long _version;
+    /** Lookup statistics. */
+    private long _hits, _misses, _evictions;
+}
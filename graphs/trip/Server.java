@@ -0,0 +1,155 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Answers trip requests from clients connected to a TCP socket on the
+ *  local host, against one Trip whose map is read only once.  The
+ *  protocol is line-oriented.  Each request is a line containing a
+ *  comma-separated list of locations, as for Batch; blank lines are
+ *  ignored.  The reply is the report of the trip, followed, if the
+ *  request failed, by a line "error: MESSAGE", and then by a line
+ *  containing only a period.  A client may make any number of requests
+ *  on one connection, which ends when the client closes it.  Each
+ *  connection is served by its own thread, and all share the Trip.
+ *  @author Jacob Lin
+ */
+class Server {
+
+    /** A server answering requests to TRIP. */
+    Server(Trip trip) {
+        _trip = trip;
+    }
+
+    /** Listen on PORT of the loopback address (any free port if PORT is
+     *  0).  Returns the port number. */
+    synchronized int listen(int port) throws IOException {
+        _socket = new ServerSocket(port, BACKLOG,
+                                   InetAddress.getLoopbackAddress());
+        return _socket.getLocalPort();
+    }
+
+    /** Accept and serve connections until close() is called.  Requires
+     *  that listen() has been called. */
+    void serve() throws IOException {
+        ServerSocket socket;
+        synchronized (this) {
+            socket = _socket;
+        }
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            while (true) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException excp) {
+                    if (socket.isClosed()) {
+                        break;
+                    }
+                    throw excp;
+                }
+                pool.execute(() -> converse(client));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Stop accepting connections.  Those in progress are allowed to
+     *  finish. */
+    synchronized void close() throws IOException {
+        if (_socket != null) {
+            _socket.close();
+        }
+    }
+
+    /** Returns the number of requests answered. */
+    synchronized int requests() {
+        return _requests;
+    }
+
+    /** Returns the number of requests that failed. */
+    synchronized int failures() {
+        return _failures;
+    }
+
+    /** Answer the requests from CLIENT until it closes its connection. */
+    private void converse(Socket client) {
+        try (Socket s = client;
+             BufferedReader in =
+                 new BufferedReader(new InputStreamReader(
+                     s.getInputStream(), StandardCharsets.UTF_8))) {
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                String request = in.readLine();
+                if (request == null) {
+                    break;
+                }
+                if (request.trim().isEmpty()) {
+                    continue;
+                }
+                out.write(answer(request.trim()));
+                out.flush();
+            }
+        } catch (IOException excp) {
+            /* The client went away; nothing more to do. */
+        }
+    }
+
+    /** Returns the reply to REQUEST. */
+    private byte[] answer(String request) {
+        List<String> stops = Arrays.asList(Main.LISTSEP.split(request));
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(reply, false,
+                                          StandardCharsets.UTF_8);
+        boolean failed;
+        failed = false;
+        try {
+            _trip.makeTrip(stops, out);
+        } catch (IllegalArgumentException excp) {
+            out.printf("error: %s%n", excp.getMessage());
+            failed = true;
+        }
+        out.println(".");
+        out.flush();
+        synchronized (this) {
+            _requests += 1;
+            if (failed) {
+                _failures += 1;
+            }
+        }
+        return reply.toByteArray();
+    }
+
+    /** Maximum number of connections waiting to be accepted. */
+    private static final int BACKLOG = 64;
+
+    /** The trip planner. */
+    private final Trip _trip;
+    /** The socket on which connections are accepted. */
+    private ServerSocket _socket;
+    /** Number of requests answered. */
+    private int _requests;
+    /** Number of requests that failed. */
+    private int _failures;
+}
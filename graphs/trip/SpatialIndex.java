@@ -0,0 +1,251 @@
+package trip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A static two-dimensional k-d tree over a set of points, each of which
+ *  carries an integer identifier, such as the vertex number of a
+ *  Location.  The tree is kept implicitly in arrays: the points in each
+ *  range of the arrays are split at their median on alternate axes, the
+ *  median point standing at the middle of the range.  Building takes
+ *  O(N log N) time; finding the K points nearest a given position takes
+ *  O(log N + K) expected time for well-distributed points, and listing
+ *  the points in a rectangle takes O(sqrt N + R) time for R results.
+ *  Equidistant points are ordered by identifier.
+ *  @author Jacob Lin
+ */
+class SpatialIndex {
+
+    /** An index of the N points (X[i], Y[i]) with identifiers ID[i].  The
+     *  arrays are not retained. */
+    SpatialIndex(double[] x, double[] y, int[] id, int n) {
+        _x = Arrays.copyOf(x, n);
+        _y = Arrays.copyOf(y, n);
+        _id = Arrays.copyOf(id, n);
+        build(0, n, 0);
+    }
+
+    /** Returns the number of points. */
+    int size() {
+        return _id.length;
+    }
+
+    /** Returns the identifiers of the K points nearest (X, Y), nearest
+     *  first.  There are fewer than K if there are fewer than K
+     *  points. */
+    int[] nearest(double x, double y, int k) {
+        k = Math.min(k, size());
+        Nearest found = new Nearest(x, y, k);
+        if (k > 0) {
+            nearest(found, 0, size(), 0);
+        }
+        return found.result();
+    }
+
+    /** Returns the identifiers of the points (X, Y) with XLO <= X <= XHI
+     *  and YLO <= Y <= YHI, in no particular order. */
+    List<Integer> range(double xlo, double ylo, double xhi, double yhi) {
+        ArrayList<Integer> result = new ArrayList<>();
+        range(result, xlo, ylo, xhi, yhi, 0, size(), 0);
+        return result;
+    }
+
+    /** Arrange the points in [LO .. HI) into a subtree split on axis
+     *  DEPTH % 2. */
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi, mid, depth % 2 == 0 ? _x : _y);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /** Permute the points in [LO .. HI) so that the point at K has rank K
+     *  among them by coordinate KEY, those before it having no greater
+     *  keys and those after it no smaller ones. */
+    private void select(int lo, int hi, int k, double[] key) {
+        hi -= 1;
+        while (lo < hi) {
+            double pivot = key[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) {
+                    i += 1;
+                }
+                while (key[j] > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Exchange points I and J. */
+    private void swap(int i, int j) {
+        double t = _x[i];
+        _x[i] = _x[j];
+        _x[j] = t;
+        t = _y[i];
+        _y[i] = _y[j];
+        _y[j] = t;
+        int s = _id[i];
+        _id[i] = _id[j];
+        _id[j] = s;
+    }
+
+    /** Add the points in the subtree [LO .. HI), split on axis DEPTH % 2,
+     *  to FOUND if they are among the nearest. */
+    private void nearest(Nearest found, int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        found.offer(_x[mid], _y[mid], _id[mid]);
+        double diff =
+            depth % 2 == 0 ? found._cx - _x[mid] : found._cy - _y[mid];
+        if (diff < 0) {
+            nearest(found, lo, mid, depth + 1);
+            if (diff * diff <= found.bound()) {
+                nearest(found, mid + 1, hi, depth + 1);
+            }
+        } else {
+            nearest(found, mid + 1, hi, depth + 1);
+            if (diff * diff <= found.bound()) {
+                nearest(found, lo, mid, depth + 1);
+            }
+        }
+    }
+
+    /** Add to RESULT the points in the subtree [LO .. HI), split on axis
+     *  DEPTH % 2, that lie in the rectangle [XLO, XHI] x [YLO, YHI]. */
+    private void range(List<Integer> result, double xlo, double ylo,
+                       double xhi, double yhi, int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double x = _x[mid], y = _y[mid];
+        if (xlo <= x && x <= xhi && ylo <= y && y <= yhi) {
+            result.add(_id[mid]);
+        }
+        double v = depth % 2 == 0 ? x : y,
+            min = depth % 2 == 0 ? xlo : ylo,
+            max = depth % 2 == 0 ? xhi : yhi;
+        if (min <= v) {
+            range(result, xlo, ylo, xhi, yhi, lo, mid, depth + 1);
+        }
+        if (v <= max) {
+            range(result, xlo, ylo, xhi, yhi, mid + 1, hi, depth + 1);
+        }
+    }
+
+    /** The best candidates found so far by a nearest-neighbor search,
+     *  kept in a binary heap whose root is the worst of them. */
+    private static class Nearest {
+        /** A search for the K points nearest (X, Y). */
+        Nearest(double x, double y, int k) {
+            _cx = x;
+            _cy = y;
+            _dist = new double[k];
+            _ids = new int[k];
+        }
+
+        /** Consider the point (PX, PY) with identifier ID. */
+        void offer(double px, double py, int id) {
+            double dx = px - _cx, dy = py - _cy;
+            double d = dx * dx + dy * dy;
+            if (_size < _ids.length) {
+                int i = _size;
+                _size += 1;
+                while (i > 0 && worse(d, id, (i - 1) / 2)) {
+                    _dist[i] = _dist[(i - 1) / 2];
+                    _ids[i] = _ids[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                _dist[i] = d;
+                _ids[i] = id;
+            } else if (worse(_dist[0], _ids[0], d, id)) {
+                int i = 0;
+                while (2 * i + 1 < _size) {
+                    int c = 2 * i + 1;
+                    if (c + 1 < _size && worse(_dist[c + 1], _ids[c + 1],
+                                               _dist[c], _ids[c])) {
+                        c += 1;
+                    }
+                    if (!worse(_dist[c], _ids[c], d, id)) {
+                        break;
+                    }
+                    _dist[i] = _dist[c];
+                    _ids[i] = _ids[c];
+                    i = c;
+                }
+                _dist[i] = d;
+                _ids[i] = id;
+            }
+        }
+
+        /** Returns the squared distance beyond which no point can be
+         *  among the nearest. */
+        double bound() {
+            return _size < _ids.length ? Double.POSITIVE_INFINITY : _dist[0];
+        }
+
+        /** Returns the identifiers found, nearest first. */
+        int[] result() {
+            Integer[] order = new Integer[_size];
+            for (int i = 0; i < _size; i += 1) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> worse(_dist[i], _ids[i],
+                                               _dist[j], _ids[j]) ? 1
+                        : worse(_dist[j], _ids[j], _dist[i], _ids[i]) ? -1
+                        : 0);
+            int[] result = new int[_size];
+            for (int i = 0; i < _size; i += 1) {
+                result[i] = _ids[order[i]];
+            }
+            return result;
+        }
+
+        /** Returns true iff the candidate (D, ID) is worse than heap
+         *  entry K. */
+        private boolean worse(double d, int id, int k) {
+            return worse(d, id, _dist[k], _ids[k]);
+        }
+
+        /** Returns true iff a point at squared distance D1 with
+         *  identifier ID1 is farther than one at D2 with ID2. */
+        private static boolean worse(double d1, int id1, double d2,
+                                     int id2) {
+            return d1 > d2 || (d1 == d2 && id1 > id2);
+        }
+
+        /** Position searched from. */
+        private final double _cx, _cy;
+        /** Squared distances of the candidates. */
+        private final double[] _dist;
+        /** Identifiers of the candidates. */
+        private final int[] _ids;
+        /** Number of candidates. */
+        private int _size;
+    }
+
+    /** Coordinates of the points, in tree order. */
+    private final double[] _x, _y;
+    /** Identifiers of the points, in tree order. */
+    private final int[] _id;
+}
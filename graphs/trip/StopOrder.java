@@ -0,0 +1,225 @@
+package trip;
+
+import java.util.Arrays;
+
+/** Heuristic solutions to the open traveling-salesman problem: given a
+ *  matrix of travel costs between N stops, find an order in which to
+ *  visit them all, starting with stop 0 and, optionally, ending with
+ *  stop N-1, whose total cost is small.  The order is built by the
+ *  nearest-neighbor rule and then improved by local search, applying
+ *  2-opt moves (reversing a run of stops) and Or-opt moves (moving a run
+ *  of up to three stops elsewhere, possibly reversed) until neither
+ *  helps.  Costs need not be symmetric.  Infinite costs, for stops that
+ *  cannot reach each other, are treated as a penalty larger than any
+ *  trip over finite costs, so that as few of them as possible are used.
+ *  Ties are broken by stop number, so the result is deterministic.
+ *  @author Jacob Lin
+ */
+class StopOrder {
+
+    /** An optimizer for the stops whose costs are COST, where COST[i][j]
+     *  is the cost of going from stop i to stop j.  If KEEPLAST, the last
+     *  stop must be visited last. */
+    StopOrder(double[][] cost, boolean keepLast) {
+        int n = cost.length;
+        double worst = 0.0;
+        for (double[] row : cost) {
+            for (double c : row) {
+                if (c != Double.POSITIVE_INFINITY) {
+                    worst = Math.max(worst, c);
+                }
+            }
+        }
+        double penalty = 1.0 + 2.0 * n * worst;
+        _cost = new double[n][];
+        for (int i = 0; i < n; i += 1) {
+            _cost[i] = cost[i].clone();
+            for (int j = 0; j < n; j += 1) {
+                if (_cost[i][j] == Double.POSITIVE_INFINITY) {
+                    _cost[i][j] = penalty;
+                }
+            }
+        }
+        _epsilon = 1e-9 * Math.max(1.0, worst);
+        _keepLast = keepLast && n > 1;
+        _tour = nearestNeighbor();
+        _forward = new double[n];
+        _backward = new double[n];
+    }
+
+    /** Returns the stops in the order found, a permutation of 0 .. N-1
+     *  that starts with 0 (and ends with N-1, if required). */
+    int[] order() {
+        updateSums();
+        boolean improved;
+        do {
+            improved = twoOpt() || orOpt();
+        } while (improved);
+        return _tour.clone();
+    }
+
+    /** Returns the total cost of visiting the stops in ORDER, using my
+     *  costs. */
+    double cost(int[] order) {
+        double result = 0.0;
+        for (int k = 1; k < order.length; k += 1) {
+            result += _cost[order[k - 1]][order[k]];
+        }
+        return result;
+    }
+
+    /** Returns a tour built by starting at stop 0 and repeatedly going to
+     *  the cheapest unvisited stop, leaving the last for last if
+     *  required. */
+    private int[] nearestNeighbor() {
+        int n = _cost.length;
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        if (n == 0) {
+            return tour;
+        }
+        visited[0] = true;
+        int free = _keepLast ? n - 1 : n;
+        for (int k = 1; k < free; k += 1) {
+            int here = tour[k - 1], next = -1;
+            for (int j = 1; j < free; j += 1) {
+                if (!visited[j]
+                    && (next == -1 || _cost[here][j] < _cost[here][next])) {
+                    next = j;
+                }
+            }
+            tour[k] = next;
+            visited[next] = true;
+        }
+        if (_keepLast) {
+            tour[n - 1] = n - 1;
+        }
+        return tour;
+    }
+
+    /** Apply the first improving 2-opt move found, if any.  Returns true
+     *  iff there was one. */
+    private boolean twoOpt() {
+        int n = _tour.length, last = movableEnd();
+        for (int i = 1; i < last; i += 1) {
+            for (int j = i + 1; j <= last; j += 1) {
+                double delta =
+                    cost(_tour[i - 1], _tour[j]) - cost(_tour[i - 1], _tour[i])
+                    + (_backward[j] - _backward[i])
+                    - (_forward[j] - _forward[i]);
+                if (j + 1 < n) {
+                    delta += cost(_tour[i], _tour[j + 1])
+                        - cost(_tour[j], _tour[j + 1]);
+                }
+                if (delta < -_epsilon) {
+                    reverse(i, j);
+                    updateSums();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Apply the first improving Or-opt move found, if any.  Returns true
+     *  iff there was one. */
+    private boolean orOpt() {
+        int n = _tour.length, last = movableEnd();
+        for (int len = 1; len <= MAX_SEGMENT; len += 1) {
+            for (int i = 1; i + len - 1 <= last; i += 1) {
+                int j = i + len - 1;
+                int a = _tour[i - 1], s = _tour[i], e = _tour[j];
+                double removed = -cost(a, s);
+                if (j + 1 < n) {
+                    removed += cost(a, _tour[j + 1]) - cost(e, _tour[j + 1]);
+                }
+                double inner = _backward[j] - _backward[i]
+                    - (_forward[j] - _forward[i]);
+                for (int p = 0; p <= last; p += 1) {
+                    if (p >= i - 1 && p <= j) {
+                        continue;
+                    }
+                    int x = _tour[p];
+                    boolean end = p + 1 == n;
+                    double gap = end ? 0.0 : cost(x, _tour[p + 1]);
+                    double ahead = removed - gap + cost(x, s)
+                        + (end ? 0.0 : cost(e, _tour[p + 1]));
+                    double reversed = removed - gap + cost(x, e) + inner
+                        + (end ? 0.0 : cost(s, _tour[p + 1]));
+                    if (ahead < -_epsilon || reversed < -_epsilon) {
+                        move(i, j, p, reversed < ahead);
+                        updateSums();
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the largest position in the tour whose stop may be
+     *  moved. */
+    private int movableEnd() {
+        return _keepLast ? _tour.length - 2 : _tour.length - 1;
+    }
+
+    /** Returns the cost of going from stop U to stop V. */
+    private double cost(int u, int v) {
+        return _cost[u][v];
+    }
+
+    /** Reverse the stops at positions I .. J of the tour. */
+    private void reverse(int i, int j) {
+        for (; i < j; i += 1, j -= 1) {
+            int t = _tour[i];
+            _tour[i] = _tour[j];
+            _tour[j] = t;
+        }
+    }
+
+    /** Move the stops at positions I .. J of the tour so that they follow
+     *  the stop now at position P, which is outside I-1 .. J, reversing
+     *  them if REVERSED. */
+    private void move(int i, int j, int p, boolean reversed) {
+        int[] run = Arrays.copyOfRange(_tour, i, j + 1);
+        if (reversed) {
+            for (int k = 0; k < run.length / 2; k += 1) {
+                int t = run[k];
+                run[k] = run[run.length - 1 - k];
+                run[run.length - 1 - k] = t;
+            }
+        }
+        int len = run.length;
+        if (p < i) {
+            System.arraycopy(_tour, p + 1, _tour, p + 1 + len, i - p - 1);
+            System.arraycopy(run, 0, _tour, p + 1, len);
+        } else {
+            System.arraycopy(_tour, j + 1, _tour, i, p - j);
+            System.arraycopy(run, 0, _tour, p - len + 1, len);
+        }
+    }
+
+    /** Recompute _forward and _backward for the current tour. */
+    private void updateSums() {
+        for (int k = 1; k < _tour.length; k += 1) {
+            _forward[k] = _forward[k - 1] + cost(_tour[k - 1], _tour[k]);
+            _backward[k] = _backward[k - 1] + cost(_tour[k], _tour[k - 1]);
+        }
+    }
+
+    /** Longest run of stops moved by an Or-opt move. */
+    private static final int MAX_SEGMENT = 3;
+
+    /** Cost of going between each pair of stops, with penalties in place
+     *  of infinities. */
+    private final double[][] _cost;
+    /** Smallest change in cost counted as an improvement. */
+    private final double _epsilon;
+    /** True iff the last stop must stay last. */
+    private final boolean _keepLast;
+    /** The current order of the stops. */
+    private final int[] _tour;
+    /** _forward[k] is the cost of the tour up to position K, and
+     *  _backward[k] the cost of traveling that part in reverse. */
+    private final double[] _forward, _backward;
+}
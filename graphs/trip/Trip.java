@@ -1,17 +1,18 @@
 package trip;
 
 import graph.DirectedGraph;
+import graph.Graph;
 import graph.LabeledGraph;
-import graph.SimpleShortestPaths;
+import graph.SparseShortestPaths;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.PrintStream;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.InputMismatchException;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static trip.Main.error;
 
@@ -21,61 +22,348 @@ import static trip.Main.error;
  */
 class Trip {
 
-    /** Read map file named NAME into out map graph. */
+    /** Read map file named NAME into out map graph.  The file may be
+     *  either a text map or a map image written by MapImage. */
     void readMap(String name) {
-        int n;
-        n = 0;
+        if (MapImage.isImage(name)) {
+            loadImage(MapImage.load(name));
+        } else {
+            readText(name);
+        }
+    }
+
+    /** Read the text map file named NAME into my map graph. */
+    private void readText(String name) {
+        MapTokenizer inp =
+            new MapTokenizer(name, Runtime.getRuntime().availableProcessors());
+        inp.read(new MapTokenizer.Sink() {
+            @Override
+            public void location(String site, double x, double y) {
+                addLocation(site, x, y);
+            }
+
+            @Override
+            public void road(String from, String road, double length,
+                             Direction dir, String to) {
+                addRoad(from, road, length, dir, to);
+            }
+        });
+    }
+
+    /** Returns a spatial index of the positions of the locations in my
+     *  map, identified by their vertex numbers, building it if the map has
+     *  changed since it was last built. */
+    private synchronized SpatialIndex locationIndex() {
+        if (_index == null || _indexVersion != _version) {
+            int n = _map.vertexSize();
+            double[] x = new double[n], y = new double[n];
+            int[] id = new int[n];
+            int k;
+            k = 0;
+            for (int v : _map.vertices()) {
+                Location loc = _map.getLabel(v);
+                x[k] = loc.x();
+                y[k] = loc.y();
+                id[k] = v;
+                k += 1;
+            }
+            _index = new SpatialIndex(x, y, id, n);
+            _indexVersion = _version;
+        }
+        return _index;
+    }
+
+    /** Returns the vertices of the (at most) K locations nearest (X, Y),
+     *  nearest first. */
+    int[] nearest(double x, double y, int k) {
+        return locationIndex().nearest(x, y, k);
+    }
+
+    /** Returns the names of the locations within the rectangle [XLO, XHI]
+     *  x [YLO, YHI], in alphabetical order. */
+    List<String> locationsWithin(double xlo, double ylo,
+                                 double xhi, double yhi) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int v : locationIndex().range(xlo, ylo, xhi, yhi)) {
+            result.add(_map.getLabel(v).toString());
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** Returns the vertex of the location denoted by STOP, or null if
+     *  there is none.  STOP is either the name of a location or has the
+     *  form @X:Y, denoting the location nearest the point (X, Y). */
+    private Integer resolve(String stop) {
+        Matcher m = COORDS.matcher(stop);
+        if (!m.matches()) {
+            return vertex(stop);
+        }
+        double x, y;
         try {
-            Scanner inp = new Scanner(new File(name));
-            while (inp.hasNext()) {
-                n += 1;
-                switch (inp.next()) {
-                case "L":
-                    addLocation(inp.next(), inp.nextDouble(), inp.nextDouble());
-                    break;
-                case "R":
-                    addRoad(inp.next(), inp.next(), inp.nextDouble(),
-                            Direction.parse(inp.next()), inp.next());
-                    break;
-                default:
-                    error("map entry #%d: unknown type", n);
-                    break;
-                }
+            x = Double.parseDouble(m.group(1));
+            y = Double.parseDouble(m.group(2));
+        } catch (NumberFormatException excp) {
+            return null;
+        }
+        if (!Double.isFinite(x) || !Double.isFinite(y)) {
+            return null;
+        }
+        int[] v = nearest(x, y, 1);
+        return v.length == 0 ? null : v[0];
+    }
+
+    /** Returns the vertex of the location named NAME, or null if there is
+     *  none. */
+    private Integer vertex(String name) {
+        if (_image != null) {
+            int i = _image.locationNumber(name);
+            return i < 0 ? null : i + 1;
+        }
+        return _sites.get(name);
+    }
+
+    /** Build my map from IMAGE.  If my map is empty, it becomes a view of
+     *  IMAGE, built in bulk from its columns, in which location #i is
+     *  vertex i + 1.  Otherwise, the locations and roads of IMAGE are
+     *  added to it. */
+    private void loadImage(MapImage image) {
+        if (_map.vertexSize() > 0) {
+            addImage(image);
+            return;
+        }
+        _version += 1;
+        _image = image;
+        _map = new ImageMap(image);
+        if (image.landmarks().size() > 0) {
+            _landmarks = image.landmarks();
+            _locationIndex = new int[image.locations() + 1];
+            for (int i = 0; i < image.locations(); i += 1) {
+                _locationIndex[i + 1] = i;
+            }
+        }
+    }
+
+    /** Add the locations and roads of IMAGE to my map, one at a time. */
+    private void addImage(MapImage image) {
+        _version += 1;
+        int[] vertex = new int[image.locations()];
+        for (int i = 0; i < vertex.length; i += 1) {
+            String site = image.locationName(i);
+            vertex[i] =
+                _map.add(new Location(site, image.x(i), image.y(i)));
+            _sites.put(site, vertex[i]);
+        }
+        if (image.landmarks().size() > 0) {
+            _landmarks = image.landmarks();
+            _locationIndex = new int[_map.maxVertex() + 1];
+            for (int i = 0; i < vertex.length; i += 1) {
+                _locationIndex[vertex[i]] = i;
             }
-        } catch (IOException excp) {
-            error(excp.getMessage());
-        } catch (InputMismatchException excp) {
-            error("bad entry #%d", n);
-        } catch (NoSuchElementException excp) {
-            error("entry incomplete at end of file");
+        }
+        for (int r = 0; r < image.roads(); r += 1) {
+            int v0 = vertex[image.from(r)], v1 = vertex[image.to(r)];
+            String road = image.roadName(r);
+            Direction dir = image.direction(r);
+            double length = image.length(r);
+            _map.add(v0, v1, new Road(road, dir, length));
+            _map.add(v1, v0, new Road(road, dir.reverse(), length));
         }
     }
 
     /** Produce a report on the standard output of a shortest journey from
      *  DESTS.get(0), then DESTS.get(1), .... */
     void makeTrip(List<String> dests) {
+        makeTrip(dests, System.out);
+    }
+
+    /** Produce a report on OUT of a shortest journey from DESTS.get(0),
+     *  then DESTS.get(1), ....  May be called by several threads at
+     *  once. */
+    void makeTrip(List<String> dests, PrintStream out) {
         if (dests.size() < 2) {
             error("must have at least two locations for a trip");
         }
 
-        System.out.printf("From %s:%n%n", dests.get(0));
+        int[] stops = new int[dests.size()];
+        int known;
+        for (known = 0; known < stops.length; known += 1) {
+            Integer v = resolve(dests.get(known));
+            if (v == null) {
+                break;
+            }
+            stops[known] = v;
+        }
+        int reported = known;
+        if (_reorder && known == stops.length) {
+            stops = reorder(stops);
+        } else if (_reorder) {
+            reported = Math.min(known, 1);
+        }
+        out.printf("From %s:%n%n",
+                   known == 0 ? dests.get(0) : _map.getLabel(stops[0]));
+        List<List<Integer>> legs = legs(Arrays.copyOf(stops, reported));
         int step;
 
         step = 1;
-        for (int i = 1; i < dests.size(); i += 1) {
-            Integer
-                from = _sites.get(dests.get(i - 1)),
-                to = _sites.get(dests.get(i));
-            if (from == null) {
-                error("No location named %s", dests.get(i - 1));
-            } else if (to == null) {
-                error("No location named %s", dests.get(i));
+        for (int i = 1; i < reported; i += 1) {
+            step = reportSegment(step, stops[i - 1], legs.get(i - 1), out);
+        }
+        if (known < stops.length) {
+            error("No location named %s", dests.get(known));
+        }
+    }
+
+    /** If PARALLEL, compute the legs of each trip concurrently.  The
+     *  report is the same either way. */
+    void setParallel(boolean parallel) {
+        _parallel = parallel;
+    }
+
+    /** If REORDER, visit the stops of each trip after the first in the
+     *  order that makes the trip shortest, as nearly as StopOrder can
+     *  find it, keeping the last stop last if KEEPLAST.  When reordering,
+     *  no legs are reported for a trip with an unknown stop. */
+    void setReorder(boolean reorder, boolean keepLast) {
+        _reorder = reorder;
+        _keepLast = keepLast;
+    }
+
+    /** Returns the vertices STOPS in the order in which a short trip
+     *  visits them, starting with STOPS[0] and, if setReorder was told to
+     *  keep the last stop, ending with the last. */
+    int[] reorder(int[] stops) {
+        int[] order = new StopOrder(distances(stops), _keepLast).order();
+        int[] result = new int[stops.length];
+        for (int k = 0; k < order.length; k += 1) {
+            result[k] = stops[order[k]];
+        }
+        return result;
+    }
+
+    /** Returns the matrix of road distances between the vertices STOPS:
+     *  entry [i][j] is the length of a shortest path from STOPS[i] to
+     *  STOPS[j], or infinity if there is none. */
+    double[][] distances(int[] stops) {
+        int[] index = networkIndex(stops);
+        return distanceMatrix().compute(index, index);
+    }
+
+    /** Write to OUT, as comma-separated values, the matrix of road
+     *  distances from each location in SOURCES to each location in
+     *  TARGETS, as described in DistanceMatrix.writeCsv.  Locations may
+     *  be given as for makeTrip. */
+    void distanceMatrix(List<String> sources, List<String> targets,
+                        PrintStream out) {
+        int[] from = resolveAll(sources), to = resolveAll(targets);
+        distanceMatrix().writeCsv(names(from), networkIndex(from),
+                                  names(to), networkIndex(to), out);
+    }
+
+    /** Returns the vertices of the locations STOPS, given as for
+     *  makeTrip. */
+    private int[] resolveAll(List<String> stops) {
+        int[] result = new int[stops.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            Integer v = resolve(stops.get(i));
+            if (v == null) {
+                error("No location named %s", stops.get(i));
+            }
+            result[i] = v;
+        }
+        return result;
+    }
+
+    /** Returns the names of the locations at VERTICES. */
+    private String[] names(int[] vertices) {
+        String[] result = new String[vertices.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _map.getLabel(vertices[i]).toString();
+        }
+        return result;
+    }
+
+    /** Returns the locations of the Network in distanceMatrix()
+     *  corresponding to VERTICES. */
+    private static int[] networkIndex(int[] vertices) {
+        int[] result = new int[vertices.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = vertices[i] - 1;
+        }
+        return result;
+    }
+
+    /** Returns a DistanceMatrix for my map as a Network, in which
+     *  location i is vertex i + 1 of _map, building it if the map has
+     *  changed since it was last built. */
+    private synchronized DistanceMatrix distanceMatrix() {
+        if (_matrix == null || _matrixVersion != _version) {
+            int n = _map.maxVertex();
+            int m = _map.edgeSize();
+            int[] from = new int[m], to = new int[m];
+            double[] length = new double[m];
+            int r;
+            r = 0;
+            for (int v : _map.vertices()) {
+                for (int w : _map.successors(v)) {
+                    from[r] = v - 1;
+                    to[r] = w - 1;
+                    length[r] = _map.length(v, w);
+                    r += 1;
+                }
             }
-            TripPlan plan = new TripPlan(from, to);
-            plan.setPaths();
-            List<Integer> segment = plan.pathTo(to);
-            step = reportSegment(step, from, segment);
+            _matrix = new DistanceMatrix(new Network(n, from, to, length));
+            _matrixVersion = _version;
         }
+        return _matrix;
+    }
+
+    /** Returns the vertices of shortest paths from STOPS[0] to STOPS[1],
+     *  from STOPS[1] to STOPS[2], and so on, in that order.  Paths are
+     *  taken from the route cache where possible, and the others are
+     *  computed concurrently if setParallel(true) has been called. */
+    List<List<Integer>> legs(int[] stops) {
+        ArrayList<List<Integer>> result = new ArrayList<>();
+        ArrayList<Integer> missing = new ArrayList<>();
+        for (int i = 1; i < stops.length; i += 1) {
+            List<Integer> segment =
+                _routes.get(stops[i - 1], stops[i], _version);
+            if (segment == null) {
+                missing.add(i - 1);
+            }
+            result.add(segment);
+        }
+        if (_parallel && missing.size() > 1) {
+            missing.parallelStream()
+                .forEach(i -> result.set(i, search(stops[i], stops[i + 1])));
+        } else {
+            for (int i : missing) {
+                result.set(i, search(stops[i], stops[i + 1]));
+            }
+        }
+        for (int i : missing) {
+            _routes.put(stops[i], stops[i + 1], _version, result.get(i));
+        }
+        return result;
+    }
+
+    /** Returns the vertices of a shortest path from vertex FROM to vertex
+     *  TO, taking it from the route cache if possible. */
+    List<Integer> route(int from, int to) {
+        return legs(new int[] { from, to }).get(0);
+    }
+
+    /** Returns the vertices of a shortest path from vertex FROM to vertex
+     *  TO.  May be called by several threads at once. */
+    private List<Integer> search(int from, int to) {
+        TripPlan plan = new TripPlan(from, to);
+        plan.setPaths();
+        return plan.pathTo(to);
+    }
+
+    /** Returns the cache of routes found by makeTrip. */
+    RouteCache routeCache() {
+        return _routes;
     }
 
     /** Print out a written description of the location sequence SEGMENT,
@@ -93,6 +381,12 @@ class Trip {
      *  Adjacent roads with the same name and direction are combined.
      *  */
     int reportSegment(int seq, int from, List<Integer> segment) {
+        return reportSegment(seq, from, segment, System.out);
+    }
+
+    /** As for reportSegment(SEQ, FROM, SEGMENT), but prints on OUT. */
+    int reportSegment(int seq, int from, List<Integer> segment,
+                      PrintStream out) {
         for (int k = 0; k < segment.size() - 1; k++) {
             Road thisRoad = _map.getLabel(segment.get(k),
                     segment.get(k + 1));
@@ -111,12 +405,12 @@ class Trip {
                 }
             }
             if (k == segment.size() - 2) {
-                System.out.printf("%s. Take %s %s for %.1f miles to %s.%n",
+                out.printf("%s. Take %s %s for %.1f miles to %s.%n",
                         seq, roadName,
                         dir.fullName(), length,
                         _map.getLabel(segment.get(k + 1)));
             } else {
-                System.out.printf("%s. Take %s %s for %.1f miles.%n",
+                out.printf("%s. Take %s %s for %.1f miles.%n",
                         seq, roadName, dir.fullName(), length);
             }
             seq++;
@@ -126,11 +420,13 @@ class Trip {
 
     /** Add a new location named NAME at (X, Y). */
     private void addLocation(String name, double x, double y) {
+        thaw();
         if (_sites.containsKey(name)) {
             error("multiple entries for %s", name);
         }
         int v = _map.add(new Location(name, x, y));
         _sites.put(name, v);
+        _version += 1;
     }
 
     /** Add a stretch of road named NAME from the Location named FROM
@@ -139,6 +435,7 @@ class Trip {
      *  to FROM. */
     private void addRoad(String from, String name, double length,
                          Direction dir, String to) {
+        thaw();
         Integer v0 = _sites.get(from),
             v1 = _sites.get(to);
 
@@ -149,42 +446,161 @@ class Trip {
         }
         _map.add(v0, v1, new Road(name, dir, length));
         _map.add(v1, v0, new Road(name, dir.reverse(), length));
+        _version += 1;
     }
 
+    /** If my map is a view of a map image, replace it with an ordinary
+     *  RoadMap having the same contents, so that it may be changed. */
+    private void thaw() {
+        if (_image != null) {
+            MapImage image = _image;
+            _image = null;
+            _map = new RoadMap();
+            addImage(image);
+        }
+    }
+
+    /** Form of a stop given by position rather than name. */
+    private static final Pattern COORDS =
+        Pattern.compile("@\\s*([^:\\s]+)\\s*:\\s*([^:\\s]+)\\s*");
+
     /** Represents the network of Locations and Roads. */
     private RoadMap _map = new RoadMap();
-    /** Mapping of Location names to corresponding map vertices. */
+    /** Mapping of Location names to corresponding map vertices, unless
+     *  _map is a view of _image. */
     private HashMap<String, Integer> _sites = new HashMap<>();
+    /** The map image of which _map is a view, or null if it is not. */
+    private MapImage _image;
+    /** Number of changes made to _map. */
+    private long _version;
+    /** Routes found in _map. */
+    private final RouteCache _routes =
+        new RouteCache(RouteCache.DEFAULT_ENTRIES, RouteCache.DEFAULT_VERTICES);
+    /** Landmarks for the ALT heuristic, or null if there are none. */
+    private Landmarks _landmarks;
+    /** The location number in _landmarks of each vertex of _map. */
+    private int[] _locationIndex;
+    /** Search state reused by the TripPlans of successive segments, one
+     *  for each thread that computes them. */
+    private final ThreadLocal<SparseShortestPaths.Workspace> _workspaces =
+        ThreadLocal.withInitial(SparseShortestPaths.Workspace::new);
+    /** Index of the positions of the locations in _map, or null if it
+     *  has not been built. */
+    private SpatialIndex _index;
+    /** The value of _version when _index was built. */
+    private long _indexVersion;
+    /** Distance calculator for my map, or null if it has not been
+     *  built. */
+    private DistanceMatrix _matrix;
+    /** The value of _version when _matrix was built. */
+    private long _matrixVersion;
+    /** True iff the stops of each trip are reordered. */
+    private boolean _reorder;
+    /** True iff reordering keeps the last stop last. */
+    private boolean _keepLast;
+    /** True iff the legs of a trip are computed concurrently. */
+    private boolean _parallel;
 
     /** A labeled directed graph of Locations whose edges are labeled by
      *  Roads. */
     private static class RoadMap extends LabeledGraph<Location, Road> {
         /** An empty RoadMap. */
         RoadMap() {
-            super(new DirectedGraph());
+            this(new DirectedGraph());
+        }
+
+        /** A RoadMap over the graph G. */
+        RoadMap(Graph G) {
+            super(G);
+        }
+
+        /** Returns the length of the road from U to V, which must be one
+         *  of my edges. */
+        double length(int u, int v) {
+            return getLabel(u, v).length();
         }
     }
 
+    /** A read-only RoadMap of the locations and roads of a map image,
+     *  whose labels are made from the image's columns when asked for. */
+    private static class ImageMap extends RoadMap {
+        /** The map of IMAGE. */
+        ImageMap(MapImage image) {
+            this(image, new MapGraph(image));
+        }
+
+        /** The map of IMAGE, whose graph is G. */
+        private ImageMap(MapImage image, MapGraph G) {
+            super(G);
+            _image = image;
+            _graph = G;
+        }
+
+        @Override
+        public Location getLabel(int v) {
+            checkMyVertex(v);
+            return new Location(_image.locationName(v - 1),
+                                _image.x(v - 1), _image.y(v - 1));
+        }
+
+        @Override
+        public Road getLabel(int u, int v) {
+            int arc = arc(u, v);
+            Direction dir = _image.direction(arc / 2);
+            return new Road(_image.roadName(arc / 2),
+                            arc % 2 == 0 ? dir : dir.reverse(),
+                            _image.length(arc / 2));
+        }
+
+        @Override
+        double length(int u, int v) {
+            return _image.length(arc(u, v) / 2);
+        }
+
+        /** Returns the arc of the edge (U, V), which must be one of my
+         *  edges. */
+        private int arc(int u, int v) {
+            int arc = _graph.arc(u, v);
+            if (arc < 0) {
+                throw new IllegalArgumentException("no such edge");
+            }
+            return arc;
+        }
+
+        /** The image. */
+        private final MapImage _image;
+        /** The graph of the image's roads. */
+        private final MapGraph _graph;
+    }
+
     /** Paths in _map from a given location. */
-    private class TripPlan extends SimpleShortestPaths {
+    private class TripPlan extends SparseShortestPaths {
         /** A plan for travel from START to DEST according to _map. */
         TripPlan(int start, int dest) {
-            super(_map, start, dest);
+            super(_map, start, dest, _workspaces.get());
             _finalLocation = _map.getLabel(dest);
+            _finalIndex = _landmarks == null ? 0 : _locationIndex[dest];
         }
 
         @Override
         protected double getWeight(int u, int v) {
-            return _map.getLabel(u, v).length();
+            return _map.length(u, v);
         }
 
         @Override
         protected double estimatedDistance(int v) {
-            return _map.getLabel(v).dist(_finalLocation);
+            double h = _map.getLabel(v).dist(_finalLocation);
+            if (_landmarks != null) {
+                h = Math.max(h, _landmarks.lowerBound(_locationIndex[v],
+                                                      _finalIndex));
+            }
+            return h;
         }
 
         /** Location of the destination. */
         private final Location _finalLocation;
+        /** Location number of the destination in _landmarks. */
+        private final int _finalIndex;
 
     }
 
@@ -5,6 +5,23 @@ package trip;
  * may not be part of your trip package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
 import org.junit.Test;
 import ucb.junit.textui;
 import static org.junit.Assert.*;
@@ -22,5 +39,659 @@ public class UnitTest {
         int i = 2;
         assertEquals(3, i + 1);
     }
+    /** Returns the entries of map file NAME, as read by a MapTokenizer
+     *  with THREADS threads and chunks of CHUNKSIZE bytes, or the error
+     *  message that results. */
+    private static List<String> readEntries(String name, int threads,
+                                            int chunkSize) {
+        List<String> result = new ArrayList<>();
+        MapTokenizer inp = new MapTokenizer(name, threads, chunkSize);
+        try {
+            inp.read(new MapTokenizer.Sink() {
+                @Override
+                public void location(String site, double x, double y) {
+                    result.add(String.format("L %s %s %s", site, x, y));
+                }
+
+                @Override
+                public void road(String from, String road, double length,
+                                 Direction dir, String to) {
+                    result.add(String.format("R %s %s %s %s %s", from, road,
+                                             length, dir, to));
+                }
+            });
+        } catch (IllegalArgumentException excp) {
+            result.add(excp.getMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void mapTokenizer() throws IOException {
+        Random rand = new Random(41);
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i += 1) {
+            String sep = rand.nextInt(10) == 0 ? "\n  " : " ";
+            if (i < 20 || rand.nextBoolean()) {
+                double x = rand.nextInt(200000) / 100.0 - 1000,
+                    y = rand.nextDouble() * 1e6;
+                text.append(String.format("L%sP%d%s%s %s%n", sep, i, sep,
+                                          x, y));
+                expected.add(String.format("L P%d %s %s", i, x, y));
+            } else {
+                double len = rand.nextInt(10000) / 10.0;
+                int a = rand.nextInt(20), b = rand.nextInt(20);
+                text.append(String.format("R P%d%sI-%d %s%sNS\tP%d%n", a,
+                                          sep, i, len, sep, b));
+                expected.add(String.format("R P%d I-%d %s NS P%d", a, i, len,
+                                           b));
+            }
+        }
+        Path map = Files.createTempFile("trip", ".map");
+        try {
+            Files.write(map, text.toString().getBytes(StandardCharsets.UTF_8));
+            String name = map.toString();
+            assertEquals(expected, readEntries(name, 1, 1 << 20));
+            assertEquals(expected, readEntries(name, 4, 37));
+            assertEquals(expected, readEntries(name, 1, 1));
+
+            text.append("R P1 I-5 3.0 NS P2\n");
+            text.append("L Q 1.0 2.x\nL Z 1 1\n");
+            Files.write(map, text.toString().getBytes(StandardCharsets.UTF_8));
+            List<String> bad = readEntries(name, 4, 50);
+            assertEquals(2002, bad.size());
+            assertEquals("bad entry #2002", bad.get(2001));
+
+            Files.write(map, "L A 0 0\nL B 0 1\nX\n".getBytes());
+            assertEquals("map entry #3: unknown type",
+                         readEntries(name, 3, 4).get(2));
+            Files.write(map, "L A 0 0\nR A\nroad 1 SN B\nR A".getBytes());
+            List<String> partial = readEntries(name, 2, 3);
+            assertEquals(3, partial.size());
+            assertEquals("entry incomplete at end of file", partial.get(2));
+        } finally {
+            Files.delete(map);
+        }
+
+        String[] numbers = {
+            "0", "-0", "+12", "3.25", "1e3", "-7.5E-3", ".5", "5.",
+            "123456789012345678901234", "0.1", "1e22", "1e23", "4.9e-324",
+            "9007199254740993", "2.2250738585072014E-308", "NaN"
+        };
+        for (String num : numbers) {
+            byte[] buf = num.getBytes();
+            assertEquals(num, Double.parseDouble(num),
+                         MapTokenizer.parseDouble(buf, 0, buf.length), 0.0);
+        }
+        for (int i = 0; i < 10000; i += 1) {
+            String num = String.format("%d.%0" + (1 + rand.nextInt(8)) + "d",
+                                       rand.nextInt(100000) - 50000,
+                                       rand.nextInt(1000));
+            byte[] buf = num.getBytes();
+            assertEquals(num, Double.parseDouble(num),
+                         MapTokenizer.parseDouble(buf, 0, buf.length), 0.0);
+        }
+        for (String num : new String[] { "1.5f", "0x10", "1e", "-", "a" }) {
+            byte[] buf = num.getBytes();
+            try {
+                MapTokenizer.parseDouble(buf, 0, buf.length);
+                fail(num);
+            } catch (java.util.InputMismatchException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void mapImage() throws IOException {
+        Path map = Files.createTempFile("trip", ".map"),
+            image = Files.createTempFile("trip", ".mapbin");
+        try {
+            Files.write(map, ("L A 0 0\nL B 3 4\nL C -1.5 2e1\n"
+                              + "R A I-80 5 WE B\nR B I-80 2.5 SN C\n"
+                              + "R C Main_St 1 EW A\n").getBytes());
+            assertFalse(MapImage.isImage(map.toString()));
+            MapImage.compile(map.toString()).write(image.toString());
+            assertTrue(MapImage.isImage(image.toString()));
+            MapImage img = MapImage.load(image.toString());
+            assertEquals(3, img.locations());
+            assertEquals("C", img.locationName(2));
+            assertEquals(-1.5, img.x(2), 0.0);
+            assertEquals(20.0, img.y(2), 0.0);
+            assertEquals(3, img.roads());
+            assertEquals(1, img.from(1));
+            assertEquals(2, img.to(1));
+            assertEquals("I-80", img.roadName(1));
+            assertSame(img.roadName(0), img.roadName(1));
+            assertEquals("Main_St", img.roadName(2));
+            assertEquals(Direction.EW, img.direction(2));
+            assertEquals(2.5, img.length(1), 0.0);
+
+            byte[] bytes = Files.readAllBytes(image);
+            Files.write(image, Arrays.copyOf(bytes, bytes.length - 5));
+            try {
+                MapImage.load(image.toString());
+                fail("truncated image accepted");
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().endsWith("is truncated"));
+            }
+
+            Files.write(map, "L A 0 0\nR A I-80 5 WE B\n".getBytes());
+            try {
+                MapImage.compile(map.toString());
+                fail("undefined location accepted");
+            } catch (IllegalArgumentException excp) {
+                assertEquals("location B not defined", excp.getMessage());
+            }
+        } finally {
+            Files.delete(map);
+            Files.delete(image);
+        }
+    }
+
+    @Test
+    public void landmarks() throws IOException {
+        int n = 20;
+        Path map = tempMap(gridMap(n, n / 2, new Random(43))
+                           + "L Island 100 100\n"),
+            image = Files.createTempFile("trip", ".mapbin");
+        try {
+            MapImage compiled = MapImage.compile(map.toString());
+            Landmarks marks = compiled.landmarks();
+            assertEquals(Landmarks.DEFAULT_COUNT, marks.size());
+            int island = n * n;
+            for (int j = 0; j < marks.size(); j += 1) {
+                assertTrue(marks.landmark(j) != island);
+                float[] d = marks.table(j);
+                assertEquals(0.0f, d[marks.landmark(j)], 0.0f);
+                assertEquals(Float.POSITIVE_INFINITY, d[island], 0.0f);
+                for (int k = 0; k < marks.size(); k += 1) {
+                    int a = marks.landmark(j), b = marks.landmark(k);
+                    assertTrue(marks.lowerBound(a, b) <= d[b] + 1e-4);
+                    assertEquals(d[b], marks.lowerBound(a, b), 1e-3);
+                }
+            }
+            assertEquals(0.0, marks.lowerBound(0, island), 0.0);
+
+            compiled.write(image.toString());
+            Landmarks loaded = MapImage.load(image.toString()).landmarks();
+            assertEquals(marks.size(), loaded.size());
+            for (int j = 0; j < marks.size(); j += 1) {
+                assertEquals(marks.landmark(j), loaded.landmark(j));
+                assertTrue(Arrays.equals(marks.table(j), loaded.table(j)));
+            }
+        } finally {
+            Files.delete(map);
+            Files.delete(image);
+        }
+    }
+
+    @Test
+    public void routeCache() {
+        RouteCache cache = new RouteCache(2, 7);
+        cache.put(1, 2, 1, List.of(1, 2));
+        cache.put(2, 3, 1, List.of(2, 3));
+        assertEquals(List.of(1, 2), cache.get(1, 2, 1));
+        cache.put(3, 4, 1, List.of(3, 4));
+        assertNull(cache.get(2, 3, 1));
+        assertEquals(List.of(3, 4), cache.get(3, 4, 1));
+        cache.put(5, 9, 1, List.of(5, 6, 7, 8, 9));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(1, 2, 1));
+        cache.put(1, 9, 1, List.of(1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertNull(cache.get(1, 9, 1));
+        assertEquals(List.of(5, 6, 7, 8, 9), cache.get(5, 9, 1));
+        assertNull(cache.get(5, 9, 2));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.hits());
+        assertEquals(4, cache.misses());
+        assertEquals(2, cache.evictions());
+    }
+
+    /** A map of four locations, A to D, joined in that order by
+     *  roads of length 1. */
+    private static final String LINE_MAP =
+        "L A 0 0\nL B 1 0\nL C 2 0\nL D 2 1\n"
+        + "R A Main 1 WE B\nR B Main 1 WE C\nR C Side 1 SN D\n";
+
+    /** Returns the text of a map of an N x N grid of locations P<i>_<j>
+     *  at (i, j), each joined to its neighbors by roads whose lengths,
+     *  between 1 and 2, are drawn from RAND.  For j > 0, there are no
+     *  roads from P<WALL>_<j> or from the location before it in its
+     *  column, cutting the grid in two but for column 0. */
+    private static String gridMap(int n, int wall, Random rand) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            for (int j = 0; j < n; j += 1) {
+                text.append(String.format("L P%d_%d %d %d%n", i, j, i, j));
+            }
+        }
+        for (int i = 0; i < n; i += 1) {
+            for (int j = 0; j < n; j += 1) {
+                boolean cut = i == wall && j > 0;
+                if (j + 1 < n && !cut) {
+                    text.append(String.format("R P%d_%d S%d 1.%d SN P%d_%d%n",
+                                              i, j, i, rand.nextInt(10),
+                                              i, j + 1));
+                }
+                if (i + 1 < n && !cut && !(i + 1 == wall && j > 0)) {
+                    text.append(String.format("R P%d_%d A%d 1.%d WE P%d_%d%n",
+                                              i, j, j, rand.nextInt(10),
+                                              i + 1, j));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /** Returns a new temporary file containing the map TEXT.  The caller
+     *  deletes it. */
+    private static Path tempMap(String text) throws IOException {
+        Path map = Files.createTempFile("trip", ".map");
+        Files.write(map, text.getBytes());
+        return map;
+    }
+
+    /** Returns the report of the trip through STOPS on the map in file
+     *  MAP, computing its legs concurrently iff PARALLEL. */
+    private static String tripReport(Path map, List<String> stops,
+                                     boolean parallel) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(bytes, true));
+            Trip trip = new Trip();
+            trip.setParallel(parallel);
+            trip.readMap(map.toString());
+            trip.makeTrip(stops);
+        } catch (IllegalArgumentException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
 
+    @Test
+    public void parallelLegs() throws IOException {
+        Random rand = new Random(45);
+        int n = 15;
+        Path map = tempMap(gridMap(n, -1, rand));
+        try {
+            List<String> stops = new ArrayList<>();
+            for (int k = 0; k < 60; k += 1) {
+                stops.add(String.format("P%d_%d", rand.nextInt(n),
+                                        rand.nextInt(n)));
+            }
+            String sequential = tripReport(map, stops, false);
+            assertTrue(sequential.startsWith("From " + stops.get(0)));
+            assertEquals(sequential, tripReport(map, stops, true));
+
+            stops.set(40, "Nowhere");
+            String partial = tripReport(map, stops, true);
+            assertEquals(partial, tripReport(map, stops, false));
+            assertTrue(partial.endsWith("No location named Nowhere"
+                                        + System.lineSeparator()));
+        } finally {
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void batch() throws IOException {
+        Path map = tempMap(LINE_MAP);
+        try {
+            String[] requests = {
+                "A, D", "D,A", "", "B , C, A", "A, Nowhere", "C"
+            };
+            StringBuilder expected = new StringBuilder();
+            for (String request : requests) {
+                if (!request.isEmpty()) {
+                    if (expected.length() > 0) {
+                        expected.append(System.lineSeparator());
+                    }
+                    expected.append(tripReport(map,
+                                               Arrays.asList(Main.LISTSEP
+                                                             .split(request)),
+                                               false));
+                }
+            }
+            Trip trip = new Trip();
+            trip.readMap(map.toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(),
+                err = new ByteArrayOutputStream();
+            Batch batch = new Batch(trip, 3);
+            batch.run(new BufferedReader(new StringReader(
+                          String.join("\n", requests))),
+                      new PrintStream(out, true), new PrintStream(err, true));
+            String errors = err.toString();
+            assertEquals(5, batch.requests());
+            assertEquals(2, batch.failures());
+            assertTrue(errors.contains("line 5: No location named Nowhere"));
+            assertTrue(errors.contains(
+                "line 6: must have at least two locations for a trip"));
+            assertEquals(expected.toString()
+                         .replace("No location named Nowhere"
+                                  + System.lineSeparator(), "")
+                         .replace("must have at least two locations for a"
+                                  + " trip" + System.lineSeparator(), ""),
+                         out.toString());
+        } finally {
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void spatialIndex() throws IOException {
+        Random rand = new Random(47);
+        int n = 500;
+        double[] x = new double[n], y = new double[n];
+        int[] id = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            x[i] = rand.nextInt(40);
+            y[i] = rand.nextInt(40);
+            id[i] = 3 * i;
+        }
+        SpatialIndex index = new SpatialIndex(x, y, id, n);
+        assertEquals(n, index.size());
+        for (int q = 0; q < 200; q += 1) {
+            double qx = rand.nextDouble() * 50 - 5,
+                qy = rand.nextDouble() * 50 - 5;
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i += 1) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> {
+                double di = Math.hypot(x[i] - qx, y[i] - qy),
+                    dj = Math.hypot(x[j] - qx, y[j] - qy);
+                return di != dj ? Double.compare(di, dj)
+                    : Integer.compare(i, j);
+            });
+            int k = 1 + rand.nextInt(10);
+            int[] expected = new int[k];
+            for (int i = 0; i < k; i += 1) {
+                expected[i] = id[order[i]];
+            }
+            assertTrue(Arrays.equals(expected, index.nearest(qx, qy, k)));
+
+            double xlo = qx, ylo = qy,
+                xhi = qx + rand.nextInt(15), yhi = qy + rand.nextInt(15);
+            List<Integer> inside = new ArrayList<>();
+            for (int i = 0; i < n; i += 1) {
+                if (xlo <= x[i] && x[i] <= xhi
+                    && ylo <= y[i] && y[i] <= yhi) {
+                    inside.add(id[i]);
+                }
+            }
+            List<Integer> found = index.range(xlo, ylo, xhi, yhi);
+            found.sort(null);
+            assertEquals(inside, found);
+        }
+        assertEquals(n, index.nearest(0, 0, 2 * n).length);
+
+        Path map = tempMap(LINE_MAP);
+        try {
+            assertEquals(tripReport(map, Arrays.asList("A", "D"), false),
+                         tripReport(map, Arrays.asList("@-0.3:0.2",
+                                                       "@ 1.9 : 1.4"),
+                                    false));
+            assertTrue(tripReport(map, Arrays.asList("A", "@x:1"), false)
+                       .endsWith("No location named @x:1"
+                                 + System.lineSeparator()));
+            Trip trip = new Trip();
+            trip.readMap(map.toString());
+            assertEquals(Arrays.asList("B", "C"),
+                         trip.locationsWithin(0.5, -1, 2, 0.5));
+        } finally {
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void server() throws Exception {
+        Path map = tempMap(LINE_MAP);
+        Server server = null;
+        try {
+            Trip trip = new Trip();
+            trip.readMap(map.toString());
+            server = new Server(trip);
+            int port = server.listen(0);
+            Server running = server;
+            Thread serving = new Thread(() -> {
+                try {
+                    running.serve();
+                } catch (IOException excp) {
+                    throw new IllegalStateException(excp);
+                }
+            });
+            serving.start();
+
+            String[] requests = { "A, D", "", "D,B", "A, Nowhere" };
+            Socket[] clients = {
+                new Socket(InetAddress.getLoopbackAddress(), port),
+                new Socket(InetAddress.getLoopbackAddress(), port)
+            };
+            for (Socket client : clients) {
+                PrintStream out =
+                    new PrintStream(client.getOutputStream(), true);
+                for (String request : requests) {
+                    out.println(request);
+                }
+            }
+            for (Socket client : clients) {
+                BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream()));
+                for (String request : requests) {
+                    if (request.isEmpty()) {
+                        continue;
+                    }
+                    StringBuilder reply = new StringBuilder();
+                    String line;
+                    while (!(line = in.readLine()).equals(".")) {
+                        reply.append(line).append(System.lineSeparator());
+                    }
+                    String expected =
+                        tripReport(map, Arrays.asList(Main.LISTSEP
+                                                      .split(request)),
+                                   false);
+                    if (request.contains("Nowhere")) {
+                        expected = expected.replace("No location",
+                                                    "error: No location");
+                    }
+                    assertEquals(expected, reply.toString());
+                }
+                client.close();
+            }
+            server.close();
+            serving.join();
+            assertEquals(6, server.requests());
+            assertEquals(2, server.failures());
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void stopOrder() throws IOException {
+        Random rand = new Random(49);
+        for (int trial = 0; trial < 50; trial += 1) {
+            int n = 2 + rand.nextInt(8);
+            double[][] cost = new double[n][n];
+            for (int i = 0; i < n; i += 1) {
+                for (int j = 0; j < n; j += 1) {
+                    cost[i][j] = i == j ? 0.0
+                        : rand.nextInt(20) == 0 ? Double.POSITIVE_INFINITY
+                        : rand.nextInt(100);
+                }
+            }
+            for (boolean keepLast : new boolean[] { false, true }) {
+                StopOrder stops = new StopOrder(cost, keepLast);
+                int[] order = stops.order();
+                int[] sorted = order.clone();
+                Arrays.sort(sorted);
+                for (int i = 0; i < n; i += 1) {
+                    assertEquals(i, sorted[i]);
+                }
+                assertEquals(0, order[0]);
+                if (keepLast) {
+                    assertEquals(n - 1, order[n - 1]);
+                }
+                int[] given = new int[n];
+                for (int i = 0; i < n; i += 1) {
+                    given[i] = i;
+                }
+                assertTrue(stops.cost(order) <= stops.cost(given));
+            }
+        }
+
+        double[][] line = new double[12][12];
+        int[] position = { 0, 7, 3, 11, 1, 9, 5, 2, 10, 4, 8, 6 };
+        for (int i = 0; i < 12; i += 1) {
+            for (int j = 0; j < 12; j += 1) {
+                line[i][j] = Math.abs(position[i] - position[j]);
+            }
+        }
+        int[] order = new StopOrder(line, false).order();
+        for (int k = 0; k < 12; k += 1) {
+            assertEquals(k, position[order[k]]);
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10; i += 1) {
+            text.append(String.format("L P%d %d 0%n", i, i));
+            if (i > 0) {
+                text.append(String.format("R P%d Main 1 WE P%d%n", i - 1, i));
+            }
+        }
+        Path map = tempMap(text.toString());
+        try {
+            Trip trip = new Trip();
+            trip.readMap(map.toString());
+            trip.setReorder(true, true);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            trip.makeTrip(Arrays.asList("P0", "P7", "P2", "P5", "P9"),
+                          new PrintStream(bytes, true));
+            assertEquals(tripReport(map, Arrays.asList("P0", "P2", "P5",
+                                                       "P7", "P9"), false),
+                         bytes.toString());
+            trip.setReorder(true, false);
+            bytes.reset();
+            trip.makeTrip(Arrays.asList("P3", "P8", "P0", "P5"),
+                          new PrintStream(bytes, true));
+            assertEquals(tripReport(map, Arrays.asList("P3", "P0", "P5",
+                                                       "P8"), false),
+                         bytes.toString());
+        } finally {
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void distanceMatrix() throws IOException {
+        Random rand = new Random(50);
+        int n = 300, m = 900;
+        int[] from = new int[m], to = new int[m];
+        double[] length = new double[m];
+        for (int r = 0; r < m; r += 1) {
+            from[r] = rand.nextInt(n);
+            to[r] = rand.nextInt(n);
+            length[r] = rand.nextInt(100) / 10.0;
+        }
+        Network net = new Network(n, from, to, length);
+        DistanceMatrix matrix = new DistanceMatrix(net);
+        int[][] sizes = { { 5, 12 }, { 12, 5 }, { 1, 1 }, { 3, 0 } };
+        for (int[] size : sizes) {
+            int[] sources = new int[size[0]], targets = new int[size[1]];
+            for (int i = 0; i < sources.length; i += 1) {
+                sources[i] = rand.nextInt(n);
+            }
+            for (int j = 0; j < targets.length; j += 1) {
+                targets[j] = rand.nextInt(n);
+            }
+            double[][] dist = matrix.compute(sources, targets);
+            assertEquals(sources.length, dist.length);
+            for (int i = 0; i < sources.length; i += 1) {
+                double[] all = net.search(sources[i]);
+                assertEquals(targets.length, dist[i].length);
+                for (int j = 0; j < targets.length; j += 1) {
+                    assertEquals(all[targets[j]], dist[i][j], 1e-9);
+                }
+            }
+        }
+
+        Path map = tempMap(LINE_MAP.replace("R B Main 1 ", "R B Main 1.5 ")
+                           + "L E 5 5\n");
+        try {
+            Trip trip = new Trip();
+            trip.readMap(map.toString());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Locale locale = Locale.getDefault();
+            Locale.setDefault(Locale.GERMANY);
+            try {
+                trip.distanceMatrix(Arrays.asList("A", "@2:0.9"),
+                                    Arrays.asList("B", "D", "E"),
+                                    new PrintStream(bytes, true));
+            } finally {
+                Locale.setDefault(locale);
+            }
+            assertEquals(String.format(",B,D,E%nA,1.000,3.500,%n"
+                                       + "D,2.500,0.000,%n"),
+                         bytes.toString());
+            assertTrue(Arrays.deepEquals(new double[][] {
+                        { 0.0, 2.5 }, { 2.5, 0.0 } },
+                    trip.distances(new int[] { 1, 3 })));
+        } finally {
+            Files.delete(map);
+        }
+    }
+
+    @Test
+    public void imageTrip() throws IOException {
+        Random rand = new Random(51);
+        int n = 8;
+        Path map = tempMap(gridMap(n, n / 2, rand)
+                           + "R P0_0 Dup 9.5 WE P1_0\n"
+                           + "R P1_0 Back 1.1 EW P0_0\n"
+                           + "L Island 20 20\n"),
+            image = Files.createTempFile("trip", ".mapbin"),
+            extra = tempMap("L Z 30 30\nR Island Ferry 2 WE Z\n");
+        try {
+            MapImage.compile(map.toString()).write(image.toString());
+            List<String> stops = new ArrayList<>();
+            for (int k = 0; k < 12; k += 1) {
+                stops.add(String.format("P%d_%d", rand.nextInt(n),
+                                        rand.nextInt(n)));
+            }
+            stops.add(1, "P1_0");
+            stops.add(1, "P0_0");
+            stops.add("@3.2:4.1");
+            String report = tripReport(map, stops, false);
+            assertTrue(report.contains("Back"));
+            assertEquals(report, tripReport(image, stops, false));
+            stops.add("Island");
+            assertEquals(tripReport(map, stops, false),
+                         tripReport(image, stops, false));
+            stops.set(3, "Nowhere");
+            assertEquals(tripReport(map, stops, false),
+                         tripReport(image, stops, false));
+
+            Trip trip = new Trip();
+            trip.readMap(image.toString());
+            assertEquals(Arrays.asList("P1_1", "P1_2"),
+                         trip.locationsWithin(0.5, 0.5, 1.5, 2.5));
+            trip.readMap(extra.toString());
+            assertEquals(Arrays.asList("Island", "Z"),
+                         trip.locationsWithin(19, 19, 31, 31));
+            assertEquals(2.0, trip.distances(new int[] {
+                        n * n + 1, n * n + 2 })[0][1], 0.0);
+        } finally {
+            Files.delete(map);
+            Files.delete(image);
+            Files.delete(extra);
+        }
+    }
 }